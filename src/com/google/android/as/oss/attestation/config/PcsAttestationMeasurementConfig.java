@@ -25,7 +25,10 @@ public abstract class PcsAttestationMeasurementConfig {
   public static Builder builder() {
     return new AutoValue_PcsAttestationMeasurementConfig.Builder()
         .setEnableAttestationMeasurement(false)
-        .setScheduleAttestationJob(false);
+        .setScheduleAttestationJob(false)
+        .setKeyAliasPoolSize(1)
+        .setPrefetchAttestationKey(false)
+        .setPrefetchedChallengeTtlSeconds(60L);
   }
 
   public abstract boolean enableAttestationMeasurement();
@@ -40,6 +43,15 @@ public abstract class PcsAttestationMeasurementConfig {
 
   public abstract long delaySeconds();
 
+  /** Number of key store aliases used for attestations, and of attestations run concurrently. */
+  public abstract int keyAliasPoolSize();
+
+  /** Whether a challenge is fetched and a key pair generated ahead of the next attestation. */
+  public abstract boolean prefetchAttestationKey();
+
+  /** How long a prefetched challenge may be used for, in seconds. */
+  public abstract long prefetchedChallengeTtlSeconds();
+
   /** Builder for {@link PcsAttestationMeasurementConfig}. */
   @AutoValue.Builder
   public abstract static class Builder {
@@ -55,6 +67,12 @@ public abstract class PcsAttestationMeasurementConfig {
 
     public abstract Builder setDelaySeconds(long value);
 
+    public abstract Builder setKeyAliasPoolSize(int value);
+
+    public abstract Builder setPrefetchAttestationKey(boolean value);
+
+    public abstract Builder setPrefetchedChallengeTtlSeconds(long value);
+
     public abstract PcsAttestationMeasurementConfig build();
   }
 }
@@ -21,6 +21,7 @@ import com.google.android.as.oss.common.config.AbstractConfigReader;
 import com.google.android.as.oss.common.config.FlagListener;
 import com.google.android.as.oss.common.config.FlagManager;
 import com.google.android.as.oss.common.config.FlagManager.BooleanFlag;
+import com.google.android.as.oss.common.config.FlagManager.IntegerFlag;
 import com.google.android.as.oss.common.config.FlagManager.LongFlag;
 
 /** ConfigReader for {@link PcsAttestationMeasurementConfig}. */
@@ -46,6 +47,15 @@ class PcsAttestationMeasurementConfigReader
   static final LongFlag DELAY_SECONDS =
       LongFlag.create("PcsAttestationMeasurement__delay_seconds_from_hour", 5L);
 
+  static final IntegerFlag KEY_ALIAS_POOL_SIZE =
+      IntegerFlag.create("PcsAttestationMeasurement__key_alias_pool_size", 1);
+
+  static final BooleanFlag PREFETCH_ATTESTATION_KEY =
+      BooleanFlag.create("PcsAttestationMeasurement__prefetch_attestation_key", false);
+
+  static final LongFlag PREFETCHED_CHALLENGE_TTL_SECONDS =
+      LongFlag.create("PcsAttestationMeasurement__prefetched_challenge_ttl_s", 60L);
+
   private final FlagManager flagManager;
 
   static PcsAttestationMeasurementConfigReader create(FlagManager flagManager) {
@@ -74,6 +84,9 @@ class PcsAttestationMeasurementConfigReader
         .setMinDelaySeconds(flagManager.get(MIN_DELAY_SECONDS))
         .setMaxDelaySeconds(flagManager.get(MAX_DELAY_SECONDS))
         .setDelaySeconds(flagManager.get(DELAY_SECONDS))
+        .setKeyAliasPoolSize(flagManager.get(KEY_ALIAS_POOL_SIZE))
+        .setPrefetchAttestationKey(flagManager.get(PREFETCH_ATTESTATION_KEY))
+        .setPrefetchedChallengeTtlSeconds(flagManager.get(PREFETCHED_CHALLENGE_TTL_SECONDS))
         .build();
   }
 
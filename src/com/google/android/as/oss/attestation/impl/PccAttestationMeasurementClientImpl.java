@@ -21,12 +21,17 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.os.SystemClock;
 import android.security.keystore.KeyGenParameterSpec;
 import android.security.keystore.KeyProperties;
-import android.util.Pair;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import com.google.android.as.oss.attestation.AttestationMeasurementRequest;
 import com.google.android.as.oss.attestation.PccAttestationMeasurementClient;
 import com.google.android.as.oss.attestation.api.proto.AttestationMeasurementResponse;
+import com.google.android.as.oss.attestation.config.PcsAttestationMeasurementConfig;
+import com.google.android.as.oss.common.config.ConfigReader;
 import com.google.android.as.oss.logging.PcsAtomsProto.IntelligenceCountReported;
 import com.google.android.as.oss.logging.PcsStatsEnums.CountMetricId;
 import com.google.android.as.oss.logging.PcsStatsLog;
@@ -36,8 +41,10 @@ import com.google.android.as.oss.networkusage.db.NetworkUsageLogUtils;
 import com.google.common.collect.ImmutableList;
 import com.google.common.flogger.GoogleLogger;
 import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.internal.android.keyattestation.v1.Challenge;
 import com.google.internal.android.keyattestation.v1.GenerateChallengeRequest;
 import com.google.internal.android.keyattestation.v1.KeyAttestationServiceGrpc;
@@ -57,7 +64,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Generates a key attestation record for attestation measurement in PCS.
@@ -68,6 +78,12 @@ import java.util.concurrent.Executor;
  * <p>Call {@link #requestAttestationMeasurement(AttestationMeasurementRequest)} to execute an
  * attestation request. If attestation is not possible, then the corresponding error is returned in
  * a failed future.
+ *
+ * <p>Key pairs are generated under a pool of Android KeyStore aliases, so that as many attestations
+ * as there are aliases can run concurrently. An alias is leased from generation until the response
+ * is signed, which keeps other attestations from overwriting the key while it is in use. When
+ * enabled, a challenge is fetched and a key pair generated ahead of the next attestation without a
+ * content binding, which then only has to encode the prepared key.
  */
 public class PccAttestationMeasurementClientImpl implements PccAttestationMeasurementClient {
   private final Executor executor;
@@ -76,12 +92,25 @@ public class PccAttestationMeasurementClientImpl implements PccAttestationMeasur
 
   private final PcsStatsLog pcsStatsLogger;
   private final Context context;
+  private final ConfigReader<PcsAttestationMeasurementConfig> configReader;
+  private final BlockingQueue<String> freeAliases = new LinkedBlockingQueue<>();
+
+  private final Object prefetchLock = new Object();
+
+  @GuardedBy("prefetchLock")
+  @Nullable
+  private PreparedKey preparedKey;
+
+  @GuardedBy("prefetchLock")
+  private boolean prefetching = false;
 
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
   private static final String ANDROID_KEY_STORE = "AndroidKeyStore";
-  // Alias of the entry under which the generated key will appear in Android KeyStore. This alis is
-  // constant so, new keys will overwrite older keys on generation.
+  // Alias of the entries under which the generated keys will appear in Android KeyStore. Aliases
+  // are reused from a fixed pool so, new keys will overwrite older keys on generation.
   private static final String ANDROID_KEY_STORE_ALIAS = "PcsAttestationKey";
+  // How long an attestation waits for a free alias before dropping the prepared key pair.
+  private static final long ALIAS_WAIT_MILLIS = 100;
   // TODO: Distinguish package names for Attestation request
   private static final String PACKAGE_NAME = "com.google.android.as";
   private static final String DEVICE_ID_FEATURE_NAME = "android.software.device_id_attestation";
@@ -91,17 +120,33 @@ public class PccAttestationMeasurementClientImpl implements PccAttestationMeasur
   private static final ImmutableList<String> SUPPORTED_KEY_ALGORITHMS =
       ImmutableList.of(KeyProperties.KEY_ALGORITHM_EC, KeyProperties.KEY_ALGORITHM_RSA);
 
+  /**
+   * @param executor executor running key generation. It should have as many threads as there are
+   *     aliases in the pool for attestations to run concurrently.
+   */
   public PccAttestationMeasurementClientImpl(
       Executor executor,
       ManagedChannel channel,
       NetworkUsageLogRepository networkUsageLogRepository,
       PcsStatsLog pcsStatsLogger,
-      Context context) {
+      Context context,
+      ConfigReader<PcsAttestationMeasurementConfig> configReader) {
     this.executor = executor;
     this.managedChannel = channel;
     this.networkUsageLogRepository = networkUsageLogRepository;
     this.pcsStatsLogger = pcsStatsLogger;
     this.context = context;
+    this.configReader = configReader;
+    int aliasPoolSize = Math.max(1, configReader.getConfig().keyAliasPoolSize());
+    for (int i = 0; i < aliasPoolSize; i++) {
+      freeAliases.add(aliasName(i));
+    }
+  }
+
+  /** Returns the alias at {@code index} in the pool, the first one is the legacy alias. */
+  @VisibleForTesting
+  static String aliasName(int index) {
+    return index == 0 ? ANDROID_KEY_STORE_ALIAS : ANDROID_KEY_STORE_ALIAS + "_" + index;
   }
 
   /** {@inheritDoc} */
@@ -128,10 +173,37 @@ public class PccAttestationMeasurementClientImpl implements PccAttestationMeasur
                 checkArgument(
                     !contentBinding.isEmpty(), "Content binding should not be an empty string."));
 
+    KeyParams keyParams = keyParams(attestationMeasurementRequest);
+    if (attestationMeasurementRequest.contentBinding().isPresent()) {
+      return requestAttestationWithChallenge(attestationMeasurementRequest, keyParams);
+    }
+    // The prepared key is taken on the executor, so that its alias is leased and returned by the
+    // same task. An alias leased outside of a running task could be waited on by every executor
+    // thread in acquireAlias(), and never be returned.
+    return Futures.submitAsync(
+        () -> {
+          PreparedKey preparedKey = takePreparedKey(keyParams);
+          if (preparedKey == null) {
+            return requestAttestationWithChallenge(attestationMeasurementRequest, keyParams);
+          }
+          prefetchKeyIfEnabled(keyParams);
+          return respond(attestationMeasurementRequest, keyParams, preparedKey.key());
+        },
+        executor);
+  }
+
+  /** Requests a challenge and generates a new key pair attested with it. */
+  private ListenableFuture<AttestationMeasurementResponse> requestAttestationWithChallenge(
+      AttestationMeasurementRequest attestationMeasurementRequest, KeyParams keyParams) {
     return Futures.transformAsync(
         requestChallenge(attestationMeasurementRequest),
-        attestationChallenge ->
-            requestAttestationInternal(attestationMeasurementRequest, attestationChallenge),
+        attestationChallenge -> {
+          if (attestationMeasurementRequest.contentBinding().isEmpty()) {
+            prefetchKeyIfEnabled(keyParams);
+          }
+          return requestAttestationInternal(
+              attestationMeasurementRequest, keyParams, attestationChallenge);
+        },
         executor);
   }
 
@@ -140,33 +212,54 @@ public class PccAttestationMeasurementClientImpl implements PccAttestationMeasur
    * corresponding {@link AttestationMeasurementResponse}.
    *
    * @param attestationMeasurementRequest: Attestation measurement request parameters.
+   * @param keyParams: Parameters of the key pair to generate.
    * @param challenge: Attestation challenge obtained from the attestation validation service.
    */
   private ListenableFuture<AttestationMeasurementResponse> requestAttestationInternal(
-      AttestationMeasurementRequest attestationMeasurementRequest, Challenge challenge) {
+      AttestationMeasurementRequest attestationMeasurementRequest,
+      KeyParams keyParams,
+      Challenge challenge) {
     // Record challenge request in network usage log
     if (attestationMeasurementRequest.contentBinding().isEmpty()) {
       insertNetworkUsageLogRow(challenge.getSerializedSize());
     }
 
-    byte[] attestationChallenge = challenge.getChallenge().toByteArray();
+    AttestedKey attestedKey;
+    try {
+      attestedKey =
+          generateKeyPairWithAttestation(keyParams, challenge.getChallenge().toByteArray());
+    } catch (GeneralSecurityException e) {
+      logger.atWarning().withCause(e).log(
+          "Encountered a security exception while performing attestation measurement.");
+      return Futures.immediateFailedFuture(e);
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log(
+          "Encountered an IO exception while performing attestation measurement.");
+      return Futures.immediateFailedFuture(e);
+    }
+    return respond(attestationMeasurementRequest, keyParams, attestedKey);
+  }
 
+  /**
+   * Generates the {@link AttestationMeasurementResponse} for the attested key pair, and returns its
+   * alias to the pool.
+   */
+  private ListenableFuture<AttestationMeasurementResponse> respond(
+      AttestationMeasurementRequest attestationMeasurementRequest,
+      KeyParams keyParams,
+      AttestedKey attestedKey) {
     AttestationMeasurementResponse.Builder attestationResponseBuilder =
         AttestationMeasurementResponse.newBuilder();
 
     // Try to generate an attestation response
     try {
-      String keyAlgorithm =
-          attestationMeasurementRequest.keyAlgorithm().orElse(KeyProperties.KEY_ALGORITHM_RSA);
-      Pair<KeyPair, List<Certificate>> keyPairWithAttestation =
-          generateKeyPairWithAttestation(
-              attestationMeasurementRequest, attestationChallenge, keyAlgorithm);
-      KeyPair keyPair = keyPairWithAttestation.first;
+      String keyAlgorithm = keyParams.keyAlgorithm();
+      KeyPair keyPair = attestedKey.keyPair();
       // Add public key to response
       attestationResponseBuilder.setPublicKey(
           ByteString.copyFrom(Objects.requireNonNull(keyPair.getPublic().getEncoded())));
 
-      List<Certificate> attestationRecord = keyPairWithAttestation.second;
+      List<Certificate> attestationRecord = attestedKey.attestationRecord();
       // Encode attestation record
       List<ByteString> encodedAttestationRecord = encodeCertificate(attestationRecord);
       attestationResponseBuilder.addAllKeyAttestationCertificateChain(encodedAttestationRecord);
@@ -186,10 +279,8 @@ public class PccAttestationMeasurementClientImpl implements PccAttestationMeasur
       logger.atWarning().withCause(e).log(
           "Encountered a security exception while performing attestation measurement.");
       return Futures.immediateFailedFuture(e);
-    } catch (IOException e) {
-      logger.atWarning().withCause(e).log(
-          "Encountered an IO exception while performing attestation measurement.");
-      return Futures.immediateFailedFuture(e);
+    } finally {
+      freeAliases.add(attestedKey.alias());
     }
     pcsStatsLogger.logIntelligenceCountReported(
         IntelligenceCountReported.newBuilder()
@@ -211,61 +302,184 @@ public class PccAttestationMeasurementClientImpl implements PccAttestationMeasur
                           .asBytes()))
               .build());
     }
+    return requestChallengeFromServer();
+  }
+
+  private ListenableFuture<Challenge> requestChallengeFromServer() {
     KeyAttestationServiceFutureStub futureStub =
         KeyAttestationServiceGrpc.newFutureStub(managedChannel);
     return futureStub.generateChallenge(GenerateChallengeRequest.getDefaultInstance());
   }
 
+  private KeyParams keyParams(AttestationMeasurementRequest attestationMeasurementRequest) {
+    boolean includeDeviceProperties =
+        (context.getPackageManager().hasSystemFeature(DEVICE_ID_FEATURE_NAME)
+            && attestationMeasurementRequest.includeIdAttestation().orElse(false));
+    return new KeyParams(
+        attestationMeasurementRequest.keyAlgorithm().orElse(KeyProperties.KEY_ALGORITHM_RSA),
+        includeDeviceProperties);
+  }
+
+  /**
+   * Fetches a challenge and generates a key pair for the next attestation with the same {@code
+   * keyParams}, unless prefetching is disabled or a key pair is already prepared.
+   */
+  private void prefetchKeyIfEnabled(KeyParams keyParams) {
+    if (!configReader.getConfig().prefetchAttestationKey()) {
+      return;
+    }
+    synchronized (prefetchLock) {
+      if (prefetching || preparedKey != null) {
+        return;
+      }
+      prefetching = true;
+    }
+
+    ListenableFuture<PreparedKey> prefetchFuture =
+        Futures.transformAsync(
+            requestChallengeFromServer(),
+            challenge -> {
+              long fetchedAtMillis = SystemClock.elapsedRealtime();
+              insertNetworkUsageLogRow(challenge.getSerializedSize());
+              AttestedKey key =
+                  generateKeyPairWithAttestation(keyParams, challenge.getChallenge().toByteArray());
+              return Futures.immediateFuture(new PreparedKey(keyParams, key, fetchedAtMillis));
+            },
+            executor);
+    Futures.addCallback(
+        prefetchFuture,
+        new FutureCallback<PreparedKey>() {
+          @Override
+          public void onSuccess(PreparedKey result) {
+            synchronized (prefetchLock) {
+              prefetching = false;
+              preparedKey = result;
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            synchronized (prefetchLock) {
+              prefetching = false;
+            }
+            logger.atWarning().withCause(t).log("Failed to prepare the next attestation key.");
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Returns the prepared key pair if it matches {@code keyParams} and its challenge is still
+   * fresh. Expired key pairs are dropped.
+   */
+  @Nullable
+  private PreparedKey takePreparedKey(KeyParams keyParams) {
+    long ttlMillis =
+        TimeUnit.SECONDS.toMillis(configReader.getConfig().prefetchedChallengeTtlSeconds());
+    synchronized (prefetchLock) {
+      if (preparedKey == null) {
+        return null;
+      }
+      if (SystemClock.elapsedRealtime() - preparedKey.fetchedAtMillis() >= ttlMillis) {
+        dropPreparedKeyLocked();
+        return null;
+      }
+      if (!preparedKey.keyParams().equals(keyParams)) {
+        return null;
+      }
+      PreparedKey result = preparedKey;
+      preparedKey = null;
+      return result;
+    }
+  }
+
+  @GuardedBy("prefetchLock")
+  private void dropPreparedKeyLocked() {
+    if (preparedKey != null) {
+      freeAliases.add(preparedKey.key().alias());
+      preparedKey = null;
+    }
+  }
+
+  /**
+   * Leases a free alias, waiting for one if all are in use. A prepared key pair is dropped while
+   * waiting, so it can't hold on to the last alias.
+   *
+   * <p>Only called on {@link #executor}. Every other leased alias belongs either to a task running
+   * on another executor thread, which returns it before it ends, or to the prepared key pair, so
+   * the wait always ends.
+   */
+  private String acquireAlias() throws IOException {
+    try {
+      String alias;
+      while ((alias = freeAliases.poll(ALIAS_WAIT_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+        synchronized (prefetchLock) {
+          dropPreparedKeyLocked();
+        }
+      }
+      return alias;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for an attestation key alias.", e);
+    }
+  }
+
   /**
    * This creates a key generation request, specifying a key alias and key generation parameters for
    * an RSA key pair. It also set the attestationChallenge provided by the validation server, to
    * indicate that attestation is requested.
    *
-   * <p>This is a synchronous method since we generate key pairs under the same alias
-   * (ANDROID_KEY_STORE_ALIAS).
+   * <p>The key pair is generated under an alias leased from the pool, which the caller must return
+   * once it is done with the key pair. The alias is returned right away if the generation fails.
    *
    * <p>Once the generation request is complete, the {@link KeyPair} is obtained as well as the
    * attestation {@link Certificate}. The {@link Certificate} is stored in the AndroidKeyStore.
    */
   @SuppressLint("NewApi")
-  private synchronized Pair<KeyPair, List<Certificate>> generateKeyPairWithAttestation(
-      AttestationMeasurementRequest attestationMeasurementRequest,
-      byte[] attestationChallenge,
-      String keyAlgorithm)
+  private AttestedKey generateKeyPairWithAttestation(
+      KeyParams keyParams, byte[] attestationChallenge)
       throws GeneralSecurityException, IOException {
+    String alias = acquireAlias();
+    try {
+      KeyGenParameterSpec keyGenParameterSpec =
+          getKeyGenParameterSpec(
+              alias,
+              attestationChallenge,
+              keyParams.includeDeviceProperties(),
+              keyParams.keyAlgorithm());
+      KeyPairGenerator keyPairGenerator = getKeyPairGeneratorInstance(keyParams.keyAlgorithm());
+      keyPairGenerator.initialize(keyGenParameterSpec);
 
-    boolean includeDeviceProperties =
-        (context.getPackageManager().hasSystemFeature(DEVICE_ID_FEATURE_NAME)
-            && attestationMeasurementRequest.includeIdAttestation().orElse(false));
+      // Generate the key pair. This will result in calls to both generate_key() and
+      // attest_key() at the keymaster2 HAL.
+      KeyPair keyPair = keyPairGenerator.generateKeyPair();
 
-    KeyGenParameterSpec keyGenParameterSpec =
-        getKeyGenParameterSpec(attestationChallenge, includeDeviceProperties, keyAlgorithm);
-    KeyPairGenerator keyPairGenerator = getKeyPairGeneratorInstance(keyAlgorithm);
-    keyPairGenerator.initialize(keyGenParameterSpec);
-
-    // Generate the key pair. This will result in calls to both generate_key() and
-    // attest_key() at the keymaster2 HAL.
-    KeyPair keyPair = keyPairGenerator.generateKeyPair();
-
-    // Get the certificate chain
-    KeyStore keyStore = KeyStore.getInstance(ANDROID_KEY_STORE);
-    keyStore.load(null);
-    Certificate[] certs = keyStore.getCertificateChain(ANDROID_KEY_STORE_ALIAS);
-    List<Certificate> attestationRecord;
-    if (certs == null) {
-      attestationRecord = new ArrayList<>();
-    } else {
-      attestationRecord = Arrays.asList(certs);
-    }
+      // Get the certificate chain
+      KeyStore keyStore = KeyStore.getInstance(ANDROID_KEY_STORE);
+      keyStore.load(null);
+      Certificate[] certs = keyStore.getCertificateChain(alias);
+      List<Certificate> attestationRecord;
+      if (certs == null) {
+        attestationRecord = new ArrayList<>();
+      } else {
+        attestationRecord = Arrays.asList(certs);
+      }
 
-    return Pair.create(keyPair, attestationRecord);
+      return new AttestedKey(alias, keyPair, attestationRecord);
+    } catch (GeneralSecurityException | IOException | RuntimeException e) {
+      freeAliases.add(alias);
+      throw e;
+    }
   }
 
   private KeyGenParameterSpec getKeyGenParameterSpec(
-      byte[] attestationChallenge, boolean includeDeviceProperties, String keyAlgorithm) {
+      String alias,
+      byte[] attestationChallenge,
+      boolean includeDeviceProperties,
+      String keyAlgorithm) {
     KeyGenParameterSpec.Builder keyGenParameterSpecBuilder =
         new KeyGenParameterSpec.Builder(
-                ANDROID_KEY_STORE_ALIAS, KeyProperties.PURPOSE_SIGN | KeyProperties.PURPOSE_VERIFY)
+                alias, KeyProperties.PURPOSE_SIGN | KeyProperties.PURPOSE_VERIFY)
             .setDigests(KeyProperties.DIGEST_SHA256)
             // Request ID Attestation
             .setDevicePropertiesAttestationIncluded(includeDeviceProperties)
@@ -322,6 +536,15 @@ public class PccAttestationMeasurementClientImpl implements PccAttestationMeasur
     return encodedAttestationRecord;
   }
 
+  /** Parameters of a generated key pair. */
+  private record KeyParams(String keyAlgorithm, boolean includeDeviceProperties) {}
+
+  /** A generated key pair with its attestation record, and the alias it is leased under. */
+  private record AttestedKey(String alias, KeyPair keyPair, List<Certificate> attestationRecord) {}
+
+  /** A key pair generated ahead of an attestation, with a prefetched challenge. */
+  private record PreparedKey(KeyParams keyParams, AttestedKey key, long fetchedAtMillis) {}
+
   /** Helper method to insert download into network usage log. */
   private void insertNetworkUsageLogRow(long downloadSize) {
     NetworkUsageEntity networkUsageEntity =
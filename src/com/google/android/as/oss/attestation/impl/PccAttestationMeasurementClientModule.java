@@ -20,9 +20,12 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 
 import android.content.Context;
 import com.google.android.as.oss.attestation.PccAttestationMeasurementClient;
+import com.google.android.as.oss.attestation.config.PcsAttestationMeasurementConfig;
 import com.google.android.as.oss.common.ExecutorAnnotations.AttestationExecutorQualifier;
+import com.google.android.as.oss.common.config.ConfigReader;
 import com.google.android.as.oss.logging.PcsStatsLog;
 import com.google.android.as.oss.networkusage.db.NetworkUsageLogRepository;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import dagger.Module;
 import dagger.Provides;
 import dagger.hilt.InstallIn;
@@ -50,14 +53,28 @@ final class PccAttestationMeasurementClientModule {
       @AttestationExecutorQualifier Executor attestationExecutor,
       NetworkUsageLogRepository networkUsageLogRepository,
       PcsStatsLog pcsStatsLogger,
-      @ApplicationContext Context context) {
+      @ApplicationContext Context context,
+      ConfigReader<PcsAttestationMeasurementConfig> configReader) {
     ManagedChannel managedChannel =
         OkHttpChannelBuilder.forAddress(ATTESTATION_API_HOST, ATTESTATION_API_PORT)
             .executor(Executors.newSingleThreadExecutor())
             .idleTimeout(1, MINUTES)
             .build();
+    // Attestations only run concurrently if there are as many threads as aliases.
+    int keyAliasPoolSize = configReader.getConfig().keyAliasPoolSize();
+    Executor executor =
+        keyAliasPoolSize > 1
+            ? Executors.newFixedThreadPool(
+                keyAliasPoolSize,
+                new ThreadFactoryBuilder().setNameFormat("pcs-attestation-%d").build())
+            : attestationExecutor;
     return new PccAttestationMeasurementClientImpl(
-        attestationExecutor, managedChannel, networkUsageLogRepository, pcsStatsLogger, context);
+        executor,
+        managedChannel,
+        networkUsageLogRepository,
+        pcsStatsLogger,
+        context,
+        configReader);
   }
 
   private PccAttestationMeasurementClientModule() {}
@@ -69,5 +69,10 @@ public abstract class ExecutorAnnotations {
   @Retention(RetentionPolicy.RUNTIME)
   public @interface GenAiExecutorQualifier {}
 
+  /** Annotation to bind {@link Executor} used for batching Network Usage Log writes. */
+  @Qualifier
+  @Retention(RetentionPolicy.RUNTIME)
+  public @interface NetworkUsageLogExecutorQualifier {}
+
   private ExecutorAnnotations() {}
 }
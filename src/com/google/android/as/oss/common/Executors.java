@@ -52,5 +52,11 @@ public class Executors {
               /* corePoolSize= */ 1,
               new ThreadFactoryBuilder().setNameFormat("pcs-aic-%d").build()));
 
+  public static final ListeningScheduledExecutorService NETWORK_USAGE_LOG_EXECUTOR =
+      MoreExecutors.listeningDecorator(
+          java.util.concurrent.Executors.newScheduledThreadPool(
+              /* corePoolSize= */ 1,
+              new ThreadFactoryBuilder().setNameFormat("pcs-nul-%d").build()));
+
   private Executors() {}
 }
@@ -21,6 +21,7 @@ import com.google.android.as.oss.common.ExecutorAnnotations.FlExecutorQualifier;
 import com.google.android.as.oss.common.ExecutorAnnotations.GenAiExecutorQualifier;
 import com.google.android.as.oss.common.ExecutorAnnotations.GeneralExecutorQualifier;
 import com.google.android.as.oss.common.ExecutorAnnotations.IoExecutorQualifier;
+import com.google.android.as.oss.common.ExecutorAnnotations.NetworkUsageLogExecutorQualifier;
 import com.google.android.as.oss.common.ExecutorAnnotations.PirExecutorQualifier;
 import com.google.android.as.oss.common.ExecutorAnnotations.ProtectedDownloadExecutorQualifier;
 import com.google.android.as.oss.common.ExecutorAnnotations.VirtualMachineExecutorQualifier;
@@ -115,5 +116,12 @@ abstract class ExecutorsModule {
     return Executors.GENAI_EXECUTOR;
   }
 
+  @Provides
+  @Singleton
+  @NetworkUsageLogExecutorQualifier
+  static ListeningScheduledExecutorService networkUsageLogExecutorService() {
+    return Executors.NETWORK_USAGE_LOG_EXECUTOR;
+  }
+
   private ExecutorsModule() {}
 }
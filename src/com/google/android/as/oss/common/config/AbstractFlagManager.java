@@ -25,9 +25,17 @@ import com.google.common.flogger.GoogleLogger;
 import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-/** Simple base implementation of a {@link FlagManager}. */
+/**
+ * Simple base implementation of a {@link FlagManager}.
+ *
+ * <p>Parsed values of non-trivial flag types are memoized per flag name, along with the raw value
+ * and default they were parsed from, so a flag is only parsed again once its raw value changes.
+ */
 public abstract class AbstractFlagManager implements FlagManager {
   private static final class LazyLogger {
     private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
@@ -36,6 +44,8 @@ public abstract class AbstractFlagManager implements FlagManager {
   private static final Splitter STRING_LIST_SPLITTER =
       Splitter.on(",").trimResults().omitEmptyStrings();
 
+  private final ConcurrentHashMap<String, ParsedFlag> parsedFlags = new ConcurrentHashMap<>();
+
   @Override
   public Boolean get(BooleanFlag flag, Boolean defaultOverride) {
     final String property = getProperty(flag.name());
@@ -62,12 +72,18 @@ public abstract class AbstractFlagManager implements FlagManager {
     if (property == null) {
       return defaultOverride;
     }
-    try {
-      return Integer.parseInt(property);
-    } catch (NumberFormatException e) {
-      logReadWarning(flag.name(), "integer", e);
-      return defaultOverride;
-    }
+    return parse(
+        flag.name(),
+        property,
+        defaultOverride,
+        value -> {
+          try {
+            return Integer.parseInt(value);
+          } catch (NumberFormatException e) {
+            logReadWarning(flag.name(), "integer", e);
+            return defaultOverride;
+          }
+        });
   }
 
   @Override
@@ -76,12 +92,18 @@ public abstract class AbstractFlagManager implements FlagManager {
     if (property == null) {
       return defaultOverride;
     }
-    try {
-      return Long.parseLong(property);
-    } catch (NumberFormatException e) {
-      logReadWarning(flag.name(), "long", e);
-      return defaultOverride;
-    }
+    return parse(
+        flag.name(),
+        property,
+        defaultOverride,
+        value -> {
+          try {
+            return Long.parseLong(value);
+          } catch (NumberFormatException e) {
+            logReadWarning(flag.name(), "long", e);
+            return defaultOverride;
+          }
+        });
   }
 
   @Override
@@ -90,12 +112,18 @@ public abstract class AbstractFlagManager implements FlagManager {
     if (property == null) {
       return defaultOverride;
     }
-    try {
-      return Float.parseFloat(property);
-    } catch (NumberFormatException e) {
-      logReadWarning(flag.name(), "float", e);
-      return defaultOverride;
-    }
+    return parse(
+        flag.name(),
+        property,
+        defaultOverride,
+        value -> {
+          try {
+            return Float.parseFloat(value);
+          } catch (NumberFormatException e) {
+            logReadWarning(flag.name(), "float", e);
+            return defaultOverride;
+          }
+        });
   }
 
   @Override
@@ -111,21 +139,24 @@ public abstract class AbstractFlagManager implements FlagManager {
       return defaultOverride;
     }
 
-    T value;
-    try {
-      value = Enum.valueOf(flag.type(), property);
-    } catch (IllegalArgumentException e) {
-      LazyLogger.logger
-          .atWarning()
-          .withCause(e)
-          .log(
-              "Received flag value '%s' is not in the values list for enum '%s'. Falling back to"
-                  + " defaults.",
-              property, flag.type().getName());
-      return defaultOverride;
-    }
-
-    return value;
+    return parse(
+        flag.name(),
+        property,
+        defaultOverride,
+        value -> {
+          try {
+            return Enum.valueOf(flag.type(), value);
+          } catch (IllegalArgumentException e) {
+            LazyLogger.logger
+                .atWarning()
+                .withCause(e)
+                .log(
+                    "Received flag value '%s' is not in the values list for enum '%s'. Falling"
+                        + " back to defaults.",
+                    value, flag.type().getName());
+            return defaultOverride;
+          }
+        });
   }
 
   @Override
@@ -134,21 +165,35 @@ public abstract class AbstractFlagManager implements FlagManager {
     if (property == null) {
       return defaultOverride;
     }
-    return ImmutableList.copyOf(STRING_LIST_SPLITTER.split(property));
+    return parse(
+        flag.name(),
+        property,
+        defaultOverride,
+        value -> ImmutableList.copyOf(STRING_LIST_SPLITTER.split(value)));
   }
 
   @Override
   public <ResultT extends MessageLite> ResultT get(
       ProtoFlag<ResultT> flag, ResultT defaultOverride) {
-    try {
-      return getProtoFlag(flag.name(), defaultOverride, flag.merge());
-    } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
-      LazyLogger.logger
-          .atSevere()
-          .withCause(e)
-          .log("Failed to parse proto. Flag name = %s.", flag.name());
+    String base64Proto = getProperty(flag.name());
+    if (isNullOrEmpty(base64Proto)) {
       return defaultOverride;
     }
+    return parse(
+        flag.name(),
+        base64Proto,
+        defaultOverride,
+        value -> {
+          try {
+            return parseProtoFlag(value, defaultOverride, flag.merge());
+          } catch (InvalidProtocolBufferException | IllegalArgumentException e) {
+            LazyLogger.logger
+                .atSevere()
+                .withCause(e)
+                .log("Failed to parse proto. Flag name = %s.", flag.name());
+            return defaultOverride;
+          }
+        });
   }
 
   /** Returns the raw string value for a given flag name. */
@@ -161,14 +206,29 @@ public abstract class AbstractFlagManager implements FlagManager {
         .log("Failed to get a property for name %s with type %s, returning safe value", name, type);
   }
 
+  /**
+   * Returns the value parsed from {@code property}, reusing the last parsed value of the flag if it
+   * was parsed from the same property and default.
+   */
+  @SuppressWarnings("unchecked") // Flag names are unique, so the cached value has type T.
+  private <T> T parse(
+      String flagName, String property, T defaultOverride, Function<String, T> parser) {
+    ParsedFlag cached = parsedFlags.get(flagName);
+    if (cached != null
+        && cached.property().equals(property)
+        && (cached.defaultOverride() == defaultOverride
+            || Objects.equals(cached.defaultOverride(), defaultOverride))) {
+      return (T) cached.value();
+    }
+    T value = parser.apply(property);
+    parsedFlags.put(flagName, new ParsedFlag(property, defaultOverride, value));
+    return value;
+  }
+
   @SuppressWarnings("unchecked") // Guaranteed by runtime.
-  private <ResultT extends MessageLite> ResultT getProtoFlag(
-      String flagName, ResultT defaultOverride, boolean merge)
+  private static <ResultT extends MessageLite> ResultT parseProtoFlag(
+      String base64Proto, ResultT defaultOverride, boolean merge)
       throws InvalidProtocolBufferException {
-    String base64Proto = getProperty(flagName);
-    if (isNullOrEmpty(base64Proto)) {
-      return defaultOverride;
-    }
     byte[] decodedProto = Base64.decode(base64Proto, Base64.DEFAULT);
     if (merge) {
       return (ResultT)
@@ -181,4 +241,6 @@ public abstract class AbstractFlagManager implements FlagManager {
             .getParserForType()
             .parseFrom(decodedProto, ExtensionRegistryLite.getEmptyRegistry());
   }
+
+  private record ParsedFlag(String property, Object defaultOverride, Object value) {}
 }
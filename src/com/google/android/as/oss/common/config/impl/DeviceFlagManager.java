@@ -30,16 +30,27 @@ import com.google.android.as.oss.common.config.MulticastListenable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.flogger.GoogleLogger;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-/** Instance that wraps {@link DeviceConfig}, which manages Android system-configurable flags. */
+/**
+ * Instance that wraps {@link DeviceConfig}, which manages Android system-configurable flags.
+ *
+ * <p>Raw values are cached after their first read and dropped once DeviceConfig reports a change to
+ * them, so most reads don't go through DeviceConfig and its Binder identity switch.
+ */
 // TODO: make this package-private.
 public class DeviceFlagManager extends AbstractFlagManager {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
   private final String namespace;
   private final DeviceConfigProxy deviceConfig;
   private final MulticastListenable<FlagListener> listenable;
+  private final ConcurrentHashMap<String, Optional<String>> cachedProperties =
+      new ConcurrentHashMap<>();
+  // Incremented before changed properties are dropped from the cache.
+  private final AtomicLong propertiesVersion = new AtomicLong();
 
   private static final Object LOCK = new Object();
   private static final PoisonedState poisonedState = new PoisonedState();
@@ -121,12 +132,25 @@ public class DeviceFlagManager extends AbstractFlagManager {
 
   @Override
   public @Nullable String getProperty(String name) {
+    Optional<String> cached = cachedProperties.get(name);
+    if (cached != null) {
+      return cached.orElse(null);
+    }
+
+    long version = propertiesVersion.get();
+    Optional<String> property;
     long binderIdentity = Binder.clearCallingIdentity();
     try {
-      return deviceConfig.getProperty(namespace, name);
+      property = Optional.ofNullable(deviceConfig.getProperty(namespace, name));
     } finally {
       Binder.restoreCallingIdentity(binderIdentity);
     }
+    cachedProperties.put(name, property);
+    if (propertiesVersion.get() != version) {
+      // The property may have changed while it was being read, don't keep a stale value.
+      cachedProperties.remove(name, property);
+    }
+    return property.orElse(null);
   }
 
   @Override
@@ -149,6 +173,8 @@ public class DeviceFlagManager extends AbstractFlagManager {
         listenerExecutor,
         properties -> {
           ImmutableList<String> changedFlags = ImmutableList.copyOf(properties.getKeyset());
+          propertiesVersion.incrementAndGet();
+          changedFlags.forEach(cachedProperties::remove);
           listenable.notify(listener -> listener.onUpdated(changedFlags));
         });
   }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.common.security;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.SystemClock;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.as.oss.common.security.api.PackageSecurityInfoList;
+import com.google.common.flogger.GoogleLogger;
+import io.grpc.binder.SecurityPolicy;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the decisions of {@link SecurityPolicyUtils#isCallerAuthorized}.
+ *
+ * <p>Decisions are keyed by calling UID, allowlist and whether test keys are allowed, so decisions
+ * made for an older allowlist config are never reused for a newer one. The {@link SecurityPolicy}
+ * objects of an allowlist, along with their decoded signatures, are built once and reused.
+ *
+ * <p>All decisions are dropped when a package is added, replaced or removed, since a UID may then
+ * belong to another package or signature. As a safety net they also expire after {@link
+ * #DECISION_TTL}. Nothing is cached if the package broadcast receiver couldn't be registered.
+ */
+final class AuthorizationDecisionCache {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  @VisibleForTesting static final int MAX_DECISIONS = 256;
+  @VisibleForTesting static final int MAX_ALLOWLISTS = 16;
+  @VisibleForTesting static final Duration DECISION_TTL = Duration.ofMinutes(5);
+
+  static final AuthorizationDecisionCache INSTANCE = new AuthorizationDecisionCache();
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final Map<DecisionKey, Decision> decisions = newLruMap(MAX_DECISIONS);
+
+  @GuardedBy("lock")
+  private final Map<PolicyKey, List<SecurityPolicy>> policies = newLruMap(MAX_ALLOWLISTS);
+
+  // Incremented on every package change, so decisions made across a change aren't cached.
+  @GuardedBy("lock")
+  private long packagesGeneration = 0;
+
+  @GuardedBy("lock")
+  private boolean enabled = true;
+
+  @GuardedBy("lock")
+  private boolean receiverRegistered = false;
+
+  private final BroadcastReceiver packageChangedReceiver =
+      new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+          synchronized (lock) {
+            packagesGeneration++;
+            decisions.clear();
+          }
+        }
+      };
+
+  boolean isCallerAuthorized(
+      PackageSecurityInfoList packageSecurityInfoList,
+      Context context,
+      int uid,
+      boolean allowTestKeys) {
+    DecisionKey decisionKey = new DecisionKey(uid, packageSecurityInfoList, allowTestKeys);
+    PolicyKey policyKey = new PolicyKey(packageSecurityInfoList, allowTestKeys);
+    long generation;
+    List<SecurityPolicy> securityPolicies;
+    synchronized (lock) {
+      if (!enabled || !registerReceiverIfNeeded(context)) {
+        return SecurityPolicyUtils.anyAuthorizes(
+            SecurityPolicyUtils.makeSecurityPolicies(
+                packageSecurityInfoList, context, allowTestKeys),
+            uid);
+      }
+      Decision decision = decisions.get(decisionKey);
+      if (decision != null && decision.expiresAtMillis() > SystemClock.elapsedRealtime()) {
+        return decision.authorized();
+      }
+      generation = packagesGeneration;
+      securityPolicies = policies.get(policyKey);
+    }
+
+    if (securityPolicies == null) {
+      securityPolicies =
+          SecurityPolicyUtils.makeSecurityPolicies(
+              packageSecurityInfoList, context.getApplicationContext(), allowTestKeys);
+    }
+    boolean authorized = SecurityPolicyUtils.anyAuthorizes(securityPolicies, uid);
+
+    synchronized (lock) {
+      policies.put(policyKey, securityPolicies);
+      if (generation == packagesGeneration) {
+        decisions.put(
+            decisionKey,
+            new Decision(authorized, SystemClock.elapsedRealtime() + DECISION_TTL.toMillis()));
+      }
+    }
+    return authorized;
+  }
+
+  /** Enables or disables caching, dropping everything cached so far. */
+  @VisibleForTesting
+  void setEnabled(boolean enabled) {
+    synchronized (lock) {
+      this.enabled = enabled;
+      decisions.clear();
+      policies.clear();
+    }
+  }
+
+  @GuardedBy("lock")
+  private boolean registerReceiverIfNeeded(Context context) {
+    if (receiverRegistered) {
+      return true;
+    }
+    IntentFilter filter = new IntentFilter();
+    filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+    filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+    filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+    filter.addDataScheme("package");
+    try {
+      context.getApplicationContext().registerReceiver(packageChangedReceiver, filter);
+      receiverRegistered = true;
+    } catch (RuntimeException e) {
+      // Without package change notifications cached decisions could go stale, don't cache.
+      logger.atWarning().withCause(e).log("Failed to register the package change receiver");
+      enabled = false;
+    }
+    return receiverRegistered;
+  }
+
+  private static <K, V> Map<K, V> newLruMap(int maxSize) {
+    return new LinkedHashMap<K, V>(/* initialCapacity= */ 16, /* loadFactor= */ 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  private record DecisionKey(
+      int uid, PackageSecurityInfoList packageSecurityInfoList, boolean allowTestKeys) {}
+
+  private record PolicyKey(
+      PackageSecurityInfoList packageSecurityInfoList, boolean allowTestKeys) {}
+
+  private record Decision(boolean authorized, long expiresAtMillis) {}
+}
@@ -16,6 +16,8 @@
 
 package com.google.android.as.oss.common.security;
 
+import static java.util.stream.Collectors.toList;
+
 import android.content.Context;
 import android.content.pm.Signature;
 import android.os.Build;
@@ -129,6 +131,9 @@ public class SecurityPolicyUtils {
    * Checks if the caller is authorized based on a list of security information. It iterates through
    * security policies, returning true if any policy grants authorization.
    *
+   * <p>Decisions are cached per calling UID and list, until a package is added, replaced or
+   * removed.
+   *
    * @return {@code true} if the caller is authorized by any policy, {@code false} otherwise.
    */
   public static boolean isCallerAuthorized(
@@ -136,10 +141,23 @@ public class SecurityPolicyUtils {
       Context context,
       int uid,
       boolean allowTestKeys) {
+    return AuthorizationDecisionCache.INSTANCE.isCallerAuthorized(
+        packageSecurityInfoList, context, uid, allowTestKeys);
+  }
+
+  /** Makes the valid {@link SecurityPolicy} objects of a {@link PackageSecurityInfoList}. */
+  static List<SecurityPolicy> makeSecurityPolicies(
+      PackageSecurityInfoList packageSecurityInfoList, Context context, boolean allowTestKeys) {
     return packageSecurityInfoList.getPackageSecurityInfosList().stream()
         .flatMap(
             packageSecurityInfo ->
                 Stream.ofNullable(makeSecurityPolicy(packageSecurityInfo, context, allowTestKeys)))
+        .collect(toList());
+  }
+
+  /** Returns true if any of the policies authorizes the uid. */
+  static boolean anyAuthorizes(List<SecurityPolicy> securityPolicies, int uid) {
+    return securityPolicies.stream()
         .anyMatch(securityPolicy -> securityPolicy.checkAuthorization(uid).isOk());
   }
 
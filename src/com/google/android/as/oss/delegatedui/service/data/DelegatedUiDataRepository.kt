@@ -28,9 +28,11 @@ import com.google.android.`as`.oss.delegatedui.api.infra.dataservice.DelegatedUi
 import com.google.android.`as`.oss.delegatedui.api.infra.dataservice.DelegatedUiGetTemplateDataResponse
 import com.google.android.`as`.oss.delegatedui.api.infra.dataservice.delegatedUiGetTemplateDataRequest
 import com.google.android.`as`.oss.delegatedui.api.integration.templates.DelegatedUiTemplateType
+import com.google.android.`as`.oss.delegatedui.service.common.ConnectLifecycle
 import com.google.android.`as`.oss.delegatedui.service.common.DelegatedUiExceptions
 import com.google.android.`as`.oss.delegatedui.service.common.DelegatedUiLifecycle
 import com.google.android.`as`.oss.delegatedui.service.common.DelegatedUiRenderSpec
+import com.google.android.`as`.oss.delegatedui.service.common.PrepareLifecycle
 import com.google.android.`as`.oss.delegatedui.service.data.serviceconnection.Annotations.DelegatedUiDataService
 import com.google.android.`as`.oss.delegatedui.utils.ParcelableOverRpcDelegate.Companion.delegateListOf
 import com.google.android.`as`.oss.delegatedui.utils.ParcelableOverRpcDelegate.Companion.delegateOf
@@ -70,6 +72,7 @@ internal constructor(
       DelegatedUiDataServiceGrpcKt.DelegatedUiDataServiceCoroutineStub,
     >,
   private val parcelableOverRpcUtils: ParcelableOverRpcUtils,
+  private val preparedTemplateDataCache: PreparedTemplateDataCache,
 ) : DelegatedUiDataRepository {
   private val templateEntries =
     DelegatedUiTemplateType.entries.filterNot { it == DelegatedUiTemplateType.UNRECOGNIZED }
@@ -83,8 +86,23 @@ internal constructor(
       services[dataProvider]
         ?: throw DelegatedUiExceptions.InvalidDataProviderServiceError(dataProvider)
 
-    val templateData = fetchTemplateData(service, spec)
-    return DelegatedUiDataResponses(templateData)
+    if (lifecycle is ConnectLifecycle) {
+      preparedTemplateDataCache.take(spec)?.let {
+        logger
+          .atInfo()
+          .log(
+            "[DelegatedUILifecycle] DUI-Service reusing prepared template data for session: %s",
+            spec.sessionUuid,
+          )
+        return it
+      }
+    }
+
+    val responses = DelegatedUiDataResponses(fetchTemplateData(service, spec))
+    if (lifecycle is PrepareLifecycle) {
+      preparedTemplateDataCache.put(spec, responses)
+    }
+    return responses
   }
 
   private suspend fun fetchTemplateData(
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.`as`.oss.delegatedui.service.data
+
+import android.content.res.Configuration
+import androidx.annotation.GuardedBy
+import androidx.annotation.VisibleForTesting
+import com.google.android.`as`.oss.delegatedui.api.common.DelegatedUiClientId
+import com.google.android.`as`.oss.delegatedui.api.common.DelegatedUiDataProviderInfo
+import com.google.android.`as`.oss.delegatedui.api.common.DelegatedUiIngressData
+import com.google.android.`as`.oss.delegatedui.service.common.DelegatedUiRenderSpec
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.TimeMark
+import kotlin.time.TimeSource
+
+/**
+ * Holds the template data fetched while preparing a session, until the session is created.
+ *
+ * The create request of a prepared session takes the data out of the cache instead of fetching it
+ * again, as long as it asks for the same data. Every entry is used at most once, so later renders
+ * of the session always fetch fresh data. Entries of sessions which are never created are dropped
+ * after [MAX_AGE], or once more than [MAX_ENTRIES] sessions are prepared.
+ */
+@Singleton
+class PreparedTemplateDataCache
+@Inject
+internal constructor() {
+  private val timeSource: TimeSource = TimeSource.Monotonic
+
+  private val lock = Any()
+
+  @GuardedBy("lock")
+  private val entries =
+    object : LinkedHashMap<String, Entry>() {
+      override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry>): Boolean =
+        size > MAX_ENTRIES
+    }
+
+  /** Keeps the data fetched for the prepare request of [spec]. */
+  fun put(spec: DelegatedUiRenderSpec, responses: DelegatedUiDataResponses) {
+    synchronized(lock) {
+      entries[spec.sessionUuid] = Entry(spec.dataKey(), responses, timeSource.markNow())
+    }
+  }
+
+  /**
+   * Returns the data prepared for the session of [spec] and removes it from the cache, or null if
+   * there is none or it was fetched for different inputs.
+   */
+  fun take(spec: DelegatedUiRenderSpec): DelegatedUiDataResponses? {
+    val entry = synchronized(lock) { entries.remove(spec.sessionUuid) } ?: return null
+    if (entry.preparedAt.elapsedNow() > MAX_AGE || entry.dataKey != spec.dataKey()) {
+      return null
+    }
+    return entry.responses
+  }
+
+  /** The inputs of a [DelegatedUiRenderSpec] which the fetched template data depends on. */
+  private data class DataKey(
+    val configuration: Configuration,
+    val clientId: DelegatedUiClientId,
+    val dataProviderInfo: DelegatedUiDataProviderInfo,
+    val ingressData: DelegatedUiIngressData,
+  )
+
+  private class Entry(
+    val dataKey: DataKey,
+    val responses: DelegatedUiDataResponses,
+    val preparedAt: TimeMark,
+  )
+
+  private fun DelegatedUiRenderSpec.dataKey() =
+    DataKey(configuration, clientId, dataProviderInfo, dataSpec.ingressData)
+
+  companion object {
+    @VisibleForTesting const val MAX_ENTRIES = 8
+    @VisibleForTesting val MAX_AGE: Duration = 30.seconds
+  }
+}
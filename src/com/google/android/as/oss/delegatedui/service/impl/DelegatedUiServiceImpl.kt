@@ -87,6 +87,7 @@ import dagger.hilt.android.qualifiers.ApplicationContext
 import io.grpc.Status
 import io.grpc.StatusException
 import java.time.InstantSource
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executor
 import javax.inject.Inject
 import kotlin.coroutines.resume
@@ -134,7 +135,7 @@ internal constructor(
    *
    * Any emissions of [ExternalRequest] into that flow will be handled by the corresponding session.
    */
-  private val activeSessions = mutableMapOf<String, MutableSharedFlow<ExternalRequest>>()
+  private val activeSessions = ConcurrentHashMap<String, MutableSharedFlow<ExternalRequest>>()
 
   override suspend fun prepareDelegatedUiSession(
     request: DelegatedUiPrepareRequest
@@ -39,4 +39,6 @@ data class FeedbackConfig(
   val enableDefaultDonationOptInL0: Boolean,
   // Whether to enable Blueflax feedback.
   val enableBlueflaxFeedback: Boolean = false,
+  // Whether failed feedback uploads are kept on disk and retried in the background.
+  val enableUploadRetryQueue: Boolean = false,
 )
@@ -80,6 +80,7 @@ class FeedbackConfigReader(
       enableDefaultDonationOptInL1 = defaultDonationOptInL1Enabled,
       enableDefaultDonationOptInL0 = defaultDonationOptInL0Enabled,
       enableBlueflaxFeedback = flagManager.get(FeedbackFlags.ENABLE_BLUEFLAX_FEEDBACK),
+      enableUploadRetryQueue = flagManager.get(FeedbackFlags.ENABLE_UPLOAD_RETRY_QUEUE),
     )
   }
 
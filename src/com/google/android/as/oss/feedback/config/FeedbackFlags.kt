@@ -39,4 +39,5 @@ object FeedbackFlags {
   val ENABLE_DEFAULT_DONATION_OPT_IN_L0 =
     BooleanFlag.create("${PREFIX}enable_default_donation_opt_in_l0", false)
   val ENABLE_BLUEFLAX_FEEDBACK = BooleanFlag.create("${PREFIX}enable_blueflax_feedback", false)
+  val ENABLE_UPLOAD_RETRY_QUEUE = BooleanFlag.create("${PREFIX}enable_upload_retry_queue", false)
 }
@@ -59,5 +59,9 @@ import com.google.android.`as`.oss.feedback.api.gateway.LogFeedbackV2Request
  * ```
  */
 interface FeedbackHttpClient {
+  /**
+   * Uploads the feedback. Returns true once it was delivered, or queued to be retried in the
+   * background, in which case the caller must not send it again.
+   */
   fun uploadFeedback(request: LogFeedbackV2Request): Boolean
 }
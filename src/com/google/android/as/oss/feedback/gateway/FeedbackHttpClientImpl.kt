@@ -17,6 +17,8 @@
 package com.google.android.`as`.oss.feedback.gateway
 
 import android.content.Context
+import android.util.JsonWriter
+import com.google.android.`as`.oss.common.config.ConfigReader
 import com.google.android.`as`.oss.feedback.api.gateway.BlueflaxCUJ
 import com.google.android.`as`.oss.feedback.api.gateway.FeedbackCUJ
 import com.google.android.`as`.oss.feedback.api.gateway.LogFeedbackV2Request
@@ -28,6 +30,7 @@ import com.google.android.`as`.oss.feedback.api.gateway.RuntimeConfig
 import com.google.android.`as`.oss.feedback.api.gateway.SpoonFeedbackDataDonation
 import com.google.android.`as`.oss.feedback.api.gateway.UserDataDonationOption
 import com.google.android.`as`.oss.feedback.blueflax.utils.BlueflaxDataHelper
+import com.google.android.`as`.oss.feedback.config.FeedbackConfig
 import com.google.android.`as`.oss.feedback.messagearmour.utils.MessageArmourDataHelper
 import com.google.android.`as`.oss.feedback.quartz.utils.QuartzDataHelper
 import com.google.android.`as`.oss.networkusage.db.ConnectionDetails.ConnectionType
@@ -38,13 +41,27 @@ import com.google.common.annotations.VisibleForTesting
 import com.google.common.flogger.GoogleLogger
 import dagger.hilt.android.qualifiers.ApplicationContext
 import java.io.IOException
+import java.io.OutputStreamWriter
+import java.io.StringWriter
+import java.io.Writer
 import javax.inject.Inject
+import javax.inject.Qualifier
+import okhttp3.MediaType
 import okhttp3.MediaType.Companion.toMediaType
 import okhttp3.OkHttpClient
 import okhttp3.Request
-import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.asRequestBody
+import okio.BufferedSink
 
-/** Http client implementation that handles Feedback Https requests to APEX backend. */
+/**
+ * Http client implementation that handles Feedback Https requests to APEX backend.
+ *
+ * Requests share one [OkHttpClient] so uploads reuse pooled connections, and their bodies are
+ * streamed to the connection instead of being built in memory. When the upload retry queue is
+ * enabled, bodies are staged in [FeedbackUploadQueue] first so that uploads which fail with a
+ * transient error are retried by [FeedbackUploadWorker].
+ */
 class FeedbackHttpClientImpl
 @Inject
 internal constructor(
@@ -52,28 +69,27 @@ internal constructor(
   private val messageArmourDataHelper: MessageArmourDataHelper,
   private val blueflaxDataHelper: BlueflaxDataHelper,
   private val networkUsageLogRepository: NetworkUsageLogRepository,
+  private val configReader: ConfigReader<FeedbackConfig>,
+  private val uploadQueue: FeedbackUploadQueue,
+  @FeedbackOkHttpClient private val client: OkHttpClient,
   @ApplicationContext private val context: Context,
 ) : FeedbackHttpClient {
 
+  /** Injection qualifier for the [OkHttpClient] shared by all feedback uploads. */
+  @Qualifier @Retention(AnnotationRetention.RUNTIME) annotation class FeedbackOkHttpClient
+
+  /** Outcome of a single upload attempt. */
+  enum class UploadResult {
+    SUCCEEDED,
+    /** The server refused the request, sending it again would fail the same way. */
+    REJECTED,
+    /** The upload failed because of the network or a transient server error. */
+    RETRYABLE,
+  }
+
   /** Uploads the survey results to server. */
   override fun uploadFeedback(request: LogFeedbackV2Request): Boolean {
-    val usageLogFeatureName: String
-    val bodyJsonString =
-      if (request.feedbackCuj.quartzCuj != QuartzCUJ.QUARTZ_CUJ_UNSPECIFIED) {
-        usageLogFeatureName = FEATURE_NAME_FEEDBACK_ASI
-        with(quartzDataHelper) { request.convertToQuartzRequestString() }
-      } else if (
-        request.feedbackCuj.messageArmourCuj != MessageArmourCUJ.MESSAGE_ARMOUR_CUJ_UNSPECIFIED
-      ) {
-        usageLogFeatureName = FEATURE_NAME_FEEDBACK_ASI
-        with(messageArmourDataHelper) { request.convertToMessageArmourRequestString() }
-      } else if (request.feedbackCuj.blueflaxCuj != BlueflaxCUJ.BLUEFLAX_CUJ_UNSPECIFIED) {
-        usageLogFeatureName = FEATURE_NAME_FEEDBACK_BLUEFLAX
-        with(blueflaxDataHelper) { request.convertToBlueflaxRequestString() }
-      } else {
-        usageLogFeatureName = FEATURE_NAME_FEEDBACK_PSI
-        request.convertToRequestString()
-      }
+    val (usageLogFeatureName, writeBody) = bodyWriterFor(request)
 
     if (
       !networkUsageLogRepository.isKnownConnection(
@@ -84,40 +100,104 @@ internal constructor(
       logger.atInfo().log("Feedback upload request rejected as connection is not known")
       return false
     }
-    val client = OkHttpClient.Builder().build()
 
+    if (!configReader.config.enableUploadRetryQueue) {
+      return upload(usageLogFeatureName, StreamingJsonRequestBody(writeBody)) ==
+        UploadResult.SUCCEEDED
+    }
+
+    val staged =
+      try {
+        uploadQueue.stage(usageLogFeatureName, writeBody)
+      } catch (e: IOException) {
+        logger.atWarning().withCause(e).log("Failed to stage feedback upload, sending it directly")
+        return upload(usageLogFeatureName, StreamingJsonRequestBody(writeBody)) ==
+          UploadResult.SUCCEEDED
+      }
+    return when (upload(staged)) {
+      UploadResult.SUCCEEDED -> {
+        uploadQueue.remove(staged)
+        true
+      }
+      UploadResult.REJECTED -> {
+        uploadQueue.remove(staged)
+        false
+      }
+      UploadResult.RETRYABLE -> {
+        // A queued upload is delivered later, so the user is told it was sent and doesn't submit
+        // it a second time.
+        uploadQueue.commit(staged).also { queued ->
+          if (queued) {
+            logger.atInfo().log("Queued feedback upload for a later retry")
+          }
+        }
+      }
+    }
+  }
+
+  /** Sends an upload from [FeedbackUploadQueue], streaming its body from disk. */
+  internal fun upload(upload: FeedbackUploadQueue.QueuedUpload): UploadResult =
+    upload(upload.featureName, upload.file.asRequestBody(JSON_MEDIA_TYPE))
+
+  private fun upload(usageLogFeatureName: String, body: RequestBody): UploadResult {
     val okRequest =
       Request.Builder()
         .url(APEX_SERVICE_URL)
         .addHeader("Content-Type", JSON_CONTENT_TYPE)
         .addHeader("X-Android-Cert", getCertFingerprint(context) ?: "")
         .addHeader("X-Android-Package", context.packageName)
-        .post(bodyJsonString.toRequestBody(JSON_MEDIA_TYPE))
+        .post(body)
         .build()
 
     try {
-      val response = client.newCall(okRequest).execute()
-      val responseBody = response.body?.string() // Read body once
-      insertNetworkUsageLogRow(
-        networkUsageLogRepository,
-        usageLogFeatureName,
-        if (response.isSuccessful) Status.SUCCEEDED else Status.FAILED,
-        responseBody?.toByteArray()?.size?.toLong() ?: 0L,
-      )
+      client.newCall(okRequest).execute().use { response ->
+        val responseBody = response.body?.string() // Read body once
+        insertNetworkUsageLogRow(
+          networkUsageLogRepository,
+          usageLogFeatureName,
+          if (response.isSuccessful) Status.SUCCEEDED else Status.FAILED,
+          responseBody?.toByteArray()?.size?.toLong() ?: 0L,
+        )
 
-      if (response.isSuccessful) {
-        logger.atInfo().log("APEX server call successful")
-        return true
-      } else {
+        if (response.isSuccessful) {
+          logger.atInfo().log("APEX server call successful")
+          return UploadResult.SUCCEEDED
+        }
         logger.atWarning().log("APEX server call failed with response: %s", response.toString())
         logger.atWarning().log("Response body: %s", responseBody)
+        return if (response.code in RETRYABLE_RESPONSE_CODES || response.code >= 500) {
+          UploadResult.RETRYABLE
+        } else {
+          UploadResult.REJECTED
+        }
       }
     } catch (e: IOException) {
       logger.atSevere().withCause(e).log("APEX server call failed with exception")
+      return UploadResult.RETRYABLE
     }
-    return false
   }
 
+  /**
+   * Returns the network usage feature name of the request, and a writer of its Json body. Only the
+   * PSI body is streamed, the other data helpers build their bodies as strings.
+   */
+  private fun bodyWriterFor(request: LogFeedbackV2Request): Pair<String, (Writer) -> Unit> =
+    when {
+      request.feedbackCuj.quartzCuj != QuartzCUJ.QUARTZ_CUJ_UNSPECIFIED -> {
+        val body = with(quartzDataHelper) { request.convertToQuartzRequestString() }
+        FEATURE_NAME_FEEDBACK_ASI to { out: Writer -> out.write(body) }
+      }
+      request.feedbackCuj.messageArmourCuj != MessageArmourCUJ.MESSAGE_ARMOUR_CUJ_UNSPECIFIED -> {
+        val body = with(messageArmourDataHelper) { request.convertToMessageArmourRequestString() }
+        FEATURE_NAME_FEEDBACK_ASI to { out: Writer -> out.write(body) }
+      }
+      request.feedbackCuj.blueflaxCuj != BlueflaxCUJ.BLUEFLAX_CUJ_UNSPECIFIED -> {
+        val body = with(blueflaxDataHelper) { request.convertToBlueflaxRequestString() }
+        FEATURE_NAME_FEEDBACK_BLUEFLAX to { out: Writer -> out.write(body) }
+      }
+      else -> FEATURE_NAME_FEEDBACK_PSI to { out: Writer -> request.writeRequestJson(out) }
+    }
+
   private fun insertNetworkUsageLogRow(
     networkUsageLogRepository: NetworkUsageLogRepository,
     featureName: String,
@@ -148,6 +228,18 @@ internal constructor(
     logger.atInfo().log("Inserted network usage log row with size: %s", size)
   }
 
+  /** Request body that streams the Json written by [writeBody] straight to the connection. */
+  private class StreamingJsonRequestBody(private val writeBody: (Writer) -> Unit) : RequestBody() {
+    override fun contentType(): MediaType = JSON_MEDIA_TYPE
+
+    override fun writeTo(sink: BufferedSink) {
+      // The sink belongs to OkHttp, so the writer is only flushed and never closed.
+      val writer = OutputStreamWriter(sink.outputStream(), Charsets.UTF_8)
+      writeBody(writer)
+      writer.flush()
+    }
+  }
+
   private companion object {
     private val logger = GoogleLogger.forEnclosingClass()
 
@@ -158,57 +250,68 @@ internal constructor(
     const val FEATURE_NAME_FEEDBACK_ASI = "feedback_apex_asi"
     const val FEATURE_NAME_FEEDBACK_BLUEFLAX = "feedback_apex_blueflax"
     val JSON_MEDIA_TYPE = "$JSON_CONTENT_TYPE; charset=utf-8".toMediaType()
+
+    /** Non-5xx response codes after which the upload is retried: timeout and rate limiting. */
+    val RETRYABLE_RESPONSE_CODES = setOf(408, 429)
   }
 }
 
-/** Converts [LogFeedbackV2Request] to a Json-like string that can be parsed by the APEX service. */
+/** Converts [LogFeedbackV2Request] to a Json string that can be parsed by the APEX service. */
 @VisibleForTesting
-fun LogFeedbackV2Request.convertToRequestString(): String {
-  val mainParts =
-    buildList<String> {
-      add("${quote("appId")}: ${quote(appId)}")
-      add("${quote("interactionId")}: ${quote(interactionId)}")
-      add("${quote("donationOption")}: ${quote(donationOption.name)}")
-      add("${quote("appCujType")}: ${getCujTypeString(feedbackCuj)}")
-      add("${quote("runtimeConfig")}: ${getRuntimeConfigString(runtimeConfig)}")
-
-      if (rating == Rating.THUMB_UP && positiveTagsList.isNotEmpty()) {
-        add("${quote("positiveTags")}: ${buildRepeatedMessages(positiveTagsList.map { it.name })}")
-      }
+fun LogFeedbackV2Request.convertToRequestString(): String =
+  StringWriter().also { writeRequestJson(it) }.toString()
 
-      if (rating == Rating.THUMB_DOWN && negativeTagsList.isNotEmpty()) {
-        add("${quote("negativeTags")}: ${buildRepeatedMessages(negativeTagsList.map { it.name })}")
-      }
+/**
+ * Writes [LogFeedbackV2Request] as a Json object that can be parsed by the APEX service.
+ *
+ * The Json is streamed to [out], so large donations are never assembled in memory. [out] is
+ * flushed but not closed.
+ */
+fun LogFeedbackV2Request.writeRequestJson(out: Writer) {
+  val writer = JsonWriter(out)
+  writer.beginObject()
+  writer.name("appId").value(appId)
+  writer.name("interactionId").value(interactionId)
+  writer.name("donationOption").value(donationOption.name)
+  writer.name("appCujType").writeCujType(feedbackCuj)
+  writer.name("runtimeConfig").writeRuntimeConfig(runtimeConfig)
+
+  if (rating == Rating.THUMB_UP && positiveTagsList.isNotEmpty()) {
+    writer.name("positiveTags").writeStrings(positiveTagsList.map { it.name })
+  }
 
-      if (donationOption == UserDataDonationOption.OPT_IN) {
-        add(getDonationDataString(userDonation.structuredDataDonation))
-      }
+  if (rating == Rating.THUMB_DOWN && negativeTagsList.isNotEmpty()) {
+    writer.name("negativeTags").writeStrings(negativeTagsList.map { it.name })
+  }
 
-      add(
-        getUserInputString(
-          structuredUserInput.spoonUserInput.groundTruthListList,
-          structuredUserInput.spoonUserInput.optionalSpoonComment,
-        )
-      )
-      add("${quote("feedbackRating")}: {${quote("binaryRating")}: ${quote(rating.name)}}")
-      add("${quote("additionalComment")}: ${quote(additionalComment)}")
-    }
+  if (donationOption == UserDataDonationOption.OPT_IN) {
+    writer.name("userDonation").writeDonationData(userDonation.structuredDataDonation)
+  }
 
-  return "{${mainParts.joinToString(", ")}}"
+  writer
+    .name("structuredUserInput")
+    .writeUserInput(
+      structuredUserInput.spoonUserInput.groundTruthListList,
+      structuredUserInput.spoonUserInput.optionalSpoonComment,
+    )
+  writer.name("feedbackRating").beginObject().name("binaryRating").value(rating.name).endObject()
+  writer.name("additionalComment").value(additionalComment)
+  writer.endObject()
+  writer.flush()
 }
 
-private fun getUserInputString(groundTruthList: List<String>, additionalComment: String): String {
-  val parts =
-    buildList<String> {
-      add("${quote("optionalSpoonComment")}: ${quote(additionalComment)}")
-      if (groundTruthList.isNotEmpty()) {
-        add("${quote("groundTruthList")}: ${buildGroundTruth(groundTruthList)}")
-      }
-    }
-  return "${quote("structuredUserInput")}: {${quote("pixelSpoonUserInput")}: {${parts.joinToString(", ")}}}"
+private fun JsonWriter.writeUserInput(groundTruthList: List<String>, additionalComment: String) {
+  beginObject()
+  name("pixelSpoonUserInput").beginObject()
+  name("optionalSpoonComment").value(additionalComment)
+  if (groundTruthList.isNotEmpty()) {
+    name("groundTruthList").writeStrings(groundTruthList)
+  }
+  endObject()
+  endObject()
 }
 
-private fun getDonationDataString(structuredDataDonation: SpoonFeedbackDataDonation): String {
+private fun JsonWriter.writeDonationData(structuredDataDonation: SpoonFeedbackDataDonation) {
   val donatedMemoryEntities: List<MemoryEntity>
   val donatedL0Entries: List<String>
   if (structuredDataDonation.sourceDocumentsList.isNotEmpty()) {
@@ -225,78 +328,66 @@ private fun getDonationDataString(structuredDataDonation: SpoonFeedbackDataDonat
     donatedL0Entries = emptyList()
   }
 
-  val parts =
-    buildList<String> {
-      if (structuredDataDonation.triggeringMessagesList.isNotEmpty()) {
-        add(
-          "${quote("triggeringMessages")}: " +
-            buildRepeatedMessages(structuredDataDonation.triggeringMessagesList)
-        )
-      }
-      val nonEmptyIntentQueries =
-        structuredDataDonation.intentQueriesList.filter { it.isNotEmpty() }
-      if (nonEmptyIntentQueries.isNotEmpty()) {
-        add("${quote("intentQueries")}: " + buildRepeatedMessages(nonEmptyIntentQueries))
-      }
-      if (structuredDataDonation.modelOutputsList.isNotEmpty()) {
-        add(
-          "${quote("modelOutputs")}: " +
-            buildRepeatedMessages(structuredDataDonation.modelOutputsList)
-        )
-      }
-
-      if (structuredDataDonation.selectedEntityContent.isNotEmpty()) {
-        add(
-          "${quote("selectedEntityContent")}: " +
-            quote(structuredDataDonation.selectedEntityContent)
-        )
-      }
-
-      if (donatedMemoryEntities.isNotEmpty()) {
-        add("${quote("memoryEntities")}: " + buildMemoryEntities(donatedMemoryEntities))
-      }
-
-      if (donatedL0Entries.isNotEmpty()) {
-        add("${quote("l0Entries")}: " + buildRepeatedMessages(donatedL0Entries))
-      }
-
-      if (structuredDataDonation.failureReason.isNotEmpty()) {
-        add("${quote("failureReason")}: " + quote(structuredDataDonation.failureReason))
-      }
-    }
-
-  val donationContent = if (parts.isEmpty()) "{}" else "{${parts.joinToString(", ")}}"
-
-  return "${quote("userDonation")}: " +
-    "{${quote("structuredDataDonation")}: " +
-    "{${quote("pixelSpoonDonation")}: $donationContent}}"
-}
-
-private fun getRuntimeConfigString(config: RuntimeConfig): String {
-  return "{" +
-    "${quote("appBuildType")}: ${quote(config.appBuildType)}, " +
-    "${quote("appVersion")}: ${quote(config.appVersion)}, " +
-    "${quote("modelMetadata")}: ${quote(config.modelMetadata)}, " +
-    "${quote("modelId")}: ${quote(config.modelId)}" +
-    "}"
+  beginObject()
+  name("structuredDataDonation").beginObject()
+  name("pixelSpoonDonation").beginObject()
+  if (structuredDataDonation.triggeringMessagesList.isNotEmpty()) {
+    name("triggeringMessages").writeStrings(structuredDataDonation.triggeringMessagesList)
+  }
+  val nonEmptyIntentQueries = structuredDataDonation.intentQueriesList.filter { it.isNotEmpty() }
+  if (nonEmptyIntentQueries.isNotEmpty()) {
+    name("intentQueries").writeStrings(nonEmptyIntentQueries)
+  }
+  if (structuredDataDonation.modelOutputsList.isNotEmpty()) {
+    name("modelOutputs").writeStrings(structuredDataDonation.modelOutputsList)
+  }
+  if (structuredDataDonation.selectedEntityContent.isNotEmpty()) {
+    name("selectedEntityContent").value(structuredDataDonation.selectedEntityContent)
+  }
+  if (donatedMemoryEntities.isNotEmpty()) {
+    name("memoryEntities").writeMemoryEntities(donatedMemoryEntities)
+  }
+  if (donatedL0Entries.isNotEmpty()) {
+    name("l0Entries").writeStrings(donatedL0Entries)
+  }
+  if (structuredDataDonation.failureReason.isNotEmpty()) {
+    name("failureReason").value(structuredDataDonation.failureReason)
+  }
+  endObject()
+  endObject()
+  endObject()
 }
 
-private fun buildRepeatedMessages(messages: List<String>): String {
-  return "[${messages.map { quote(it) }.joinToString(", ")}]"
+private fun JsonWriter.writeRuntimeConfig(config: RuntimeConfig) {
+  beginObject()
+  name("appBuildType").value(config.appBuildType)
+  name("appVersion").value(config.appVersion)
+  name("modelMetadata").value(config.modelMetadata)
+  name("modelId").value(config.modelId)
+  endObject()
 }
 
-private fun buildMemoryEntities(entities: List<MemoryEntity>): String {
-  return "[${ entities.map {"{${quote("entityData")}: ${quote(it.entityData)}, "+
-  "${quote("modelVersion")}: ${quote(it.modelVersion)}}" }.joinToString(", ")}]"
+private fun JsonWriter.writeStrings(messages: List<String>) {
+  beginArray()
+  messages.forEach { value(it) }
+  endArray()
 }
 
-private fun buildGroundTruth(groundTruthList: List<String>): String {
-  return "[${groundTruthList.map { quote(it) }.joinToString(", ")}]"
+private fun JsonWriter.writeMemoryEntities(entities: List<MemoryEntity>) {
+  beginArray()
+  for (entity in entities) {
+    beginObject()
+    name("entityData").value(entity.entityData)
+    name("modelVersion").value(entity.modelVersion)
+    endObject()
+  }
+  endArray()
 }
 
-private fun getCujTypeString(appCujType: FeedbackCUJ): String {
-  return "{${quote("pixelSpoonCujType")}: " +
-    "{${quote("pixelSpoonCuj")}: ${quote(appCujType.spoonFeedbackCuj.name)}}}"
+private fun JsonWriter.writeCujType(appCujType: FeedbackCUJ) {
+  beginObject()
+  name("pixelSpoonCujType").beginObject()
+  name("pixelSpoonCuj").value(appCujType.spoonFeedbackCuj.name)
+  endObject()
+  endObject()
 }
-
-private fun quote(content: Any): String = "\"$content\""
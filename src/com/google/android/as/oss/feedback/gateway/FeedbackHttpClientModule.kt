@@ -16,10 +16,20 @@
 
 package com.google.android.`as`.oss.feedback.gateway
 
+import androidx.work.WorkerFactory
+import com.google.android.`as`.oss.common.config.ConfigReader
+import com.google.android.`as`.oss.feedback.config.FeedbackConfig
+import com.google.android.`as`.oss.feedback.gateway.FeedbackHttpClientImpl.FeedbackOkHttpClient
 import dagger.Binds
 import dagger.Module
+import dagger.Provides
 import dagger.hilt.InstallIn
 import dagger.hilt.components.SingletonComponent
+import dagger.multibindings.IntoSet
+import java.util.concurrent.TimeUnit
+import javax.inject.Singleton
+import okhttp3.ConnectionPool
+import okhttp3.OkHttpClient
 
 /** Module that provides the implementation of SurveyHttpClient. */
 @Module
@@ -27,4 +37,28 @@ import dagger.hilt.components.SingletonComponent
 internal interface FeedbackHttpClientModule {
   @Binds
   fun providesFeedbackHttpClient(feedbackHttpClientImpl: FeedbackHttpClientImpl): FeedbackHttpClient
+
+  companion object {
+    // Uploads go to a single host and come in short bursts, one idle connection is enough to
+    // carry a burst and the queue drains without a new TLS handshake per request.
+    private const val MAX_IDLE_CONNECTIONS = 1
+    private const val KEEP_ALIVE_MINUTES = 5L
+
+    @Provides
+    @Singleton
+    @FeedbackOkHttpClient
+    fun provideFeedbackOkHttpClient(): OkHttpClient =
+      OkHttpClient.Builder()
+        .connectionPool(ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+        .build()
+
+    @Provides
+    @Singleton
+    @IntoSet
+    fun provideFeedbackUploadWorkerFactory(
+      feedbackHttpClient: FeedbackHttpClientImpl,
+      uploadQueue: FeedbackUploadQueue,
+      configReader: ConfigReader<FeedbackConfig>,
+    ): WorkerFactory = FeedbackUploadWorker.Factory(feedbackHttpClient, uploadQueue, configReader)
+  }
 }
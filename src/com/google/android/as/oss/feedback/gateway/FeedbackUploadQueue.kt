@@ -0,0 +1,139 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.`as`.oss.feedback.gateway
+
+import android.content.Context
+import com.google.common.flogger.GoogleLogger
+import dagger.hilt.android.qualifiers.ApplicationContext
+import java.io.File
+import java.io.IOException
+import java.io.Writer
+import java.time.Duration
+import java.util.UUID
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Durable queue of feedback request bodies, kept under the files directory so they survive process
+ * death.
+ *
+ * An upload is first [stage]d before it is sent, and only [commit]ted to the queue if the attempt
+ * failed in a way worth retrying, at which point [FeedbackUploadWorker] is scheduled to drain it.
+ * Staged files are ignored by the worker unless they were abandoned by a process that died
+ * mid-upload. The queue keeps at most [MAX_QUEUED_UPLOADS] uploads, none older than [MAX_AGE].
+ */
+@Singleton
+class FeedbackUploadQueue
+@Inject
+internal constructor(@ApplicationContext private val context: Context) {
+  private val dir = File(context.filesDir, QUEUE_DIR)
+
+  /** An upload waiting in the queue, whose request body is the content of [file]. */
+  data class QueuedUpload(val file: File, val featureName: String, val createdAtMillis: Long)
+
+  /** Writes a request body to a new staged file, which the caller must [commit] or [remove]. */
+  @Throws(IOException::class)
+  fun stage(featureName: String, writeBody: (Writer) -> Unit): QueuedUpload {
+    if (!dir.isDirectory && !dir.mkdirs()) {
+      throw IOException("Unable to create $dir")
+    }
+    val createdAtMillis = System.currentTimeMillis()
+    val file = File(dir, "${createdAtMillis}_${UUID.randomUUID()}_$featureName$STAGED_SUFFIX")
+    try {
+      file.bufferedWriter().use(writeBody)
+    } catch (e: IOException) {
+      file.delete()
+      throw e
+    }
+    return QueuedUpload(file, featureName, createdAtMillis)
+  }
+
+  /**
+   * Moves a staged upload into the queue and schedules the worker to retry it. Returns false if the
+   * upload couldn't be queued and was dropped.
+   */
+  @Synchronized
+  fun commit(upload: QueuedUpload): Boolean {
+    val queuedFile = File(dir, upload.file.name.removeSuffix(STAGED_SUFFIX))
+    if (!upload.file.renameTo(queuedFile)) {
+      logger.atWarning().log("Failed to queue feedback upload %s", upload.file.name)
+      upload.file.delete()
+      return false
+    }
+    val queued = queuedUploads()
+    for (dropped in queued.take(maxOf(queued.size - MAX_QUEUED_UPLOADS, 0))) {
+      logger.atWarning().log("Feedback upload queue is full, dropping %s", dropped.file.name)
+      dropped.file.delete()
+    }
+    FeedbackUploadWorker.enqueue(context)
+    return true
+  }
+
+  /** Deletes every queued and staged upload. */
+  @Synchronized
+  fun clear() {
+    dir.listFiles()?.forEach { it.delete() }
+  }
+
+  /** Removes an upload which was delivered or rejected by the server. */
+  fun remove(upload: QueuedUpload) {
+    upload.file.delete()
+  }
+
+  /** Returns the uploads waiting to be retried, oldest first. Expired uploads are dropped. */
+  @Synchronized
+  fun queuedUploads(): List<QueuedUpload> {
+    val now = System.currentTimeMillis()
+    val files = dir.listFiles() ?: return emptyList()
+    return files
+      .mapNotNull { file ->
+        val upload = parse(file)
+        when {
+          upload == null || now - upload.createdAtMillis > MAX_AGE.toMillis() -> {
+            file.delete()
+            null
+          }
+          file.name.endsWith(STAGED_SUFFIX) &&
+            now - file.lastModified() < ABANDONED_STAGED_FILE_AGE.toMillis() -> null
+          else -> upload
+        }
+      }
+      .sortedBy { it.createdAtMillis }
+  }
+
+  private fun parse(file: File): QueuedUpload? {
+    val parts = file.name.removeSuffix(STAGED_SUFFIX).split('_', limit = 3)
+    val createdAtMillis = parts.firstOrNull()?.toLongOrNull()
+    if (parts.size != 3 || createdAtMillis == null) {
+      return null
+    }
+    return QueuedUpload(file, parts[2], createdAtMillis)
+  }
+
+  private companion object {
+    const val QUEUE_DIR = "feedback_upload_queue"
+    const val STAGED_SUFFIX = ".staged"
+
+    /** Staged files this old belong to an upload that never finished. */
+    val ABANDONED_STAGED_FILE_AGE: Duration = Duration.ofMinutes(10)
+
+    const val MAX_QUEUED_UPLOADS = 32
+    val MAX_AGE: Duration = Duration.ofDays(7)
+
+    private val logger = GoogleLogger.forEnclosingClass()
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.`as`.oss.feedback.gateway
+
+import android.content.Context
+import androidx.annotation.VisibleForTesting
+import androidx.work.BackoffPolicy
+import androidx.work.Constraints
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingWorkPolicy
+import androidx.work.ListenableWorker
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkInfo
+import androidx.work.WorkManager
+import androidx.work.WorkerFactory
+import androidx.work.WorkerParameters
+import com.google.android.`as`.oss.common.config.ConfigReader
+import com.google.android.`as`.oss.feedback.config.FeedbackConfig
+import com.google.android.`as`.oss.feedback.gateway.FeedbackHttpClientImpl.UploadResult
+import com.google.common.flogger.GoogleLogger
+import java.io.File
+import java.time.Duration
+import java.util.concurrent.ExecutionException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+
+/**
+ * WorkManager worker which retries the feedback uploads waiting in [FeedbackUploadQueue].
+ *
+ * All failed uploads share one unique work request, so a run drains every queued upload in order
+ * over the shared client's pooled connection. The run stops at the first upload that fails again
+ * and is retried with exponential backoff.
+ */
+class FeedbackUploadWorker(
+  appContext: Context,
+  workerParams: WorkerParameters,
+  private val feedbackHttpClient: FeedbackHttpClientImpl,
+  private val uploadQueue: FeedbackUploadQueue,
+  private val configReader: ConfigReader<FeedbackConfig>,
+) : CoroutineWorker(appContext, workerParams) {
+  override suspend fun doWork(): Result =
+    withContext(Dispatchers.IO) {
+      if (!configReader.config.enableUploadRetryQueue) {
+        // The queue was turned off since these uploads were queued, they are not sent anymore.
+        logger.atInfo().log("Feedback upload retry queue is disabled, clearing it")
+        uploadQueue.clear()
+        return@withContext Result.success()
+      }
+      var delivered = 0
+      val attempted = mutableSetOf<File>()
+      while (true) {
+        // Uploads queued while this run is in progress are drained by it as well.
+        val queued = uploadQueue.queuedUploads().filter { it.file !in attempted }
+        if (queued.isEmpty()) {
+          break
+        }
+        for (upload in queued) {
+          attempted.add(upload.file)
+          when (feedbackHttpClient.upload(upload)) {
+            UploadResult.SUCCEEDED -> {
+              delivered++
+              uploadQueue.remove(upload)
+            }
+            UploadResult.REJECTED -> uploadQueue.remove(upload)
+            UploadResult.RETRYABLE -> {
+              logger.atInfo().log(
+                "Retrying %d queued feedback uploads later (attempt %d)",
+                queued.size,
+                runAttemptCount + 1,
+              )
+              return@withContext Result.retry()
+            }
+          }
+        }
+      }
+      logger.atInfo().log("Delivered %d queued feedback uploads", delivered)
+      Result.success()
+    }
+
+  class Factory(
+    private val feedbackHttpClient: FeedbackHttpClientImpl,
+    private val uploadQueue: FeedbackUploadQueue,
+    private val configReader: ConfigReader<FeedbackConfig>,
+  ) : WorkerFactory() {
+    override fun createWorker(
+      appContext: Context,
+      workerClassName: String,
+      workerParameters: WorkerParameters,
+    ): ListenableWorker? {
+      if (workerClassName != FeedbackUploadWorker::class.java.name) {
+        return null
+      }
+      return FeedbackUploadWorker(
+        appContext,
+        workerParameters,
+        feedbackHttpClient,
+        uploadQueue,
+        configReader,
+      )
+    }
+  }
+
+  companion object {
+    @VisibleForTesting const val WORKER_NAME = "FeedbackUploadWorker"
+
+    private val INITIAL_BACKOFF: Duration = Duration.ofMinutes(1)
+
+    private val logger = GoogleLogger.forEnclosingClass()
+
+    /**
+     * Schedules a run once the device is online, unless one is already waiting to start; that run
+     * lists the queue when it starts. A run that is already in progress may have listed the queue
+     * before the latest upload was committed, so the new run is appended after it rather than
+     * dropped.
+     */
+    fun enqueue(context: Context) {
+      val workManager = WorkManager.getInstance(context)
+      if (hasPendingRun(workManager)) {
+        return
+      }
+      val request =
+        OneTimeWorkRequestBuilder<FeedbackUploadWorker>()
+          .setConstraints(
+            Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build()
+          )
+          .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF)
+          .setTraceTag(WORKER_NAME)
+          .build()
+      workManager.enqueueUniqueWork(WORKER_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request)
+    }
+
+    /** Returns whether a run is scheduled but hasn't started yet. */
+    private fun hasPendingRun(workManager: WorkManager): Boolean =
+      try {
+        workManager.getWorkInfosForUniqueWork(WORKER_NAME).get().any {
+          it.state == WorkInfo.State.ENQUEUED || it.state == WorkInfo.State.BLOCKED
+        }
+      } catch (e: ExecutionException) {
+        // Appending an extra run is harmless, it finds the queue empty.
+        logger.atWarning().withCause(e).log("Failed to look up pending feedback upload runs")
+        false
+      } catch (e: InterruptedException) {
+        Thread.currentThread().interrupt()
+        false
+      }
+  }
+}
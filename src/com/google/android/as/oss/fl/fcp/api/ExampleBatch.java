@@ -0,0 +1,141 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.fl.fc.api;
+
+import android.os.RemoteException;
+import androidx.annotation.VisibleForTesting;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A batch of training examples passed through {@link
+ * IExampleStoreIteratorCallback#onIteratorNextBatchSuccess}, saving one IPC per example.
+ */
+final class ExampleBatch {
+  /** Version returned by {@link IExampleStoreIterator#getVersion} once batches are supported. */
+  static final int VERSION_BATCHED_NEXT = 1;
+
+  /** Number of examples requested per batch unless FCP requests a different number. */
+  @VisibleForTesting static final int DEFAULT_BATCH_EXAMPLES = 64;
+
+  @VisibleForTesting static final int MAX_BATCH_EXAMPLES = 512;
+
+  /**
+   * Maximum size of a batch, well below the 1MB binder transaction buffer which is shared by all
+   * transactions of the process. Only a batch holding a single larger example may exceed it.
+   */
+  @VisibleForTesting static final int MAX_BATCH_BYTES = 256 * 1024;
+
+  private static final int NULL_SIZE = -1;
+
+  /** A training example along with its resumption token. */
+  record Example(byte[] exampleBytes, byte @Nullable [] resumptionToken) {}
+
+  private final List<Example> examples = new ArrayList<>();
+  private int sizeBytes = 0;
+
+  static int clampBatchSize(int numExamples) {
+    return Math.max(1, Math.min(numExamples, MAX_BATCH_EXAMPLES));
+  }
+
+  void add(Example example) {
+    examples.add(example);
+    sizeBytes += sizeBytes(example);
+  }
+
+  int size() {
+    return examples.size();
+  }
+
+  /**
+   * Returns whether the example can be added without exceeding {@link #MAX_BATCH_BYTES}. An empty
+   * batch accepts any example, so that an oversized example is sent on its own.
+   */
+  boolean fits(Example example) {
+    return examples.isEmpty() || sizeBytes + sizeBytes(example) <= MAX_BATCH_BYTES;
+  }
+
+  boolean isFull(int maxExamples) {
+    return examples.size() >= maxExamples || sizeBytes >= MAX_BATCH_BYTES;
+  }
+
+  private static int sizeBytes(Example example) {
+    byte[] resumptionToken = example.resumptionToken();
+    return example.exampleBytes().length + (resumptionToken == null ? 0 : resumptionToken.length);
+  }
+
+  /** Sends the batch to the callback. */
+  void send(IExampleStoreIteratorCallback callback) throws RemoteException {
+    ByteArrayOutputStream packedExamples = new ByteArrayOutputStream(sizeBytes);
+    ByteArrayOutputStream packedResumptionTokens = new ByteArrayOutputStream();
+    int[] exampleSizes = new int[examples.size()];
+    int[] resumptionTokenSizes = new int[examples.size()];
+    for (int i = 0; i < examples.size(); i++) {
+      Example example = examples.get(i);
+      packedExamples.write(example.exampleBytes(), 0, example.exampleBytes().length);
+      exampleSizes[i] = example.exampleBytes().length;
+      byte[] resumptionToken = example.resumptionToken();
+      if (resumptionToken == null) {
+        resumptionTokenSizes[i] = NULL_SIZE;
+      } else {
+        packedResumptionTokens.write(resumptionToken, 0, resumptionToken.length);
+        resumptionTokenSizes[i] = resumptionToken.length;
+      }
+    }
+    callback.onIteratorNextBatchSuccess(
+        packedExamples.toByteArray(),
+        exampleSizes,
+        packedResumptionTokens.toByteArray(),
+        resumptionTokenSizes);
+  }
+
+  /** Splits the arguments of {@link IExampleStoreIteratorCallback#onIteratorNextBatchSuccess}. */
+  static List<Example> unpack(
+      byte[] packedExamples,
+      int[] exampleSizes,
+      byte[] packedResumptionTokens,
+      int[] resumptionTokenSizes) {
+    if (exampleSizes.length != resumptionTokenSizes.length) {
+      throw new IllegalArgumentException("Mismatched example and resumption token counts");
+    }
+    List<Example> examples = new ArrayList<>(exampleSizes.length);
+    int exampleOffset = 0;
+    int resumptionTokenOffset = 0;
+    for (int i = 0; i < exampleSizes.length; i++) {
+      byte[] exampleBytes = slice(packedExamples, exampleOffset, exampleSizes[i]);
+      exampleOffset += exampleSizes[i];
+      byte[] resumptionToken = null;
+      if (resumptionTokenSizes[i] != NULL_SIZE) {
+        resumptionToken =
+            slice(packedResumptionTokens, resumptionTokenOffset, resumptionTokenSizes[i]);
+        resumptionTokenOffset += resumptionTokenSizes[i];
+      }
+      examples.add(new Example(exampleBytes, resumptionToken));
+    }
+    return examples;
+  }
+
+  private static byte[] slice(byte[] packed, int offset, int size) {
+    if (size < 0 || offset + size > packed.length) {
+      throw new IllegalArgumentException("Batch sizes don't match the packed bytes");
+    }
+    return Arrays.copyOfRange(packed, offset, offset + size);
+  }
+}
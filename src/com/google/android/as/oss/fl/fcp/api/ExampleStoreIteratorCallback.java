@@ -17,6 +17,7 @@
 package com.google.android.as.oss.fl.fc.api;
 
 import com.google.fcp.client.ExampleStoreIterator;
+import com.google.fcp.client.common.api.CommonStatusCodes;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
@@ -42,4 +43,14 @@ class ExampleStoreIteratorCallback extends IExampleStoreIteratorCallback.Stub {
   public void onIteratorNextFailure(int statusCode, @Nullable String errorMessage) {
     callback.onIteratorNextFailure(statusCode, errorMessage);
   }
+
+  @Override
+  public void onIteratorNextBatchSuccess(
+      byte[] packedExamples,
+      int[] exampleSizes,
+      byte[] packedResumptionTokens,
+      int[] resumptionTokenSizes) {
+    // This callback is only passed to next(), which never answers with a batch.
+    callback.onIteratorNextFailure(CommonStatusCodes.ERROR, "Unexpected batch of examples.");
+  }
 }
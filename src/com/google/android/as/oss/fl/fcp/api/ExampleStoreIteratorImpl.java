@@ -17,6 +17,7 @@
 package com.google.android.as.oss.fl.fc.api;
 
 import android.os.RemoteException;
+import com.google.android.as.oss.fl.fc.api.ExampleBatch.Example;
 import com.google.fcp.client.common.api.CommonStatusCodes;
 import com.google.fcp.client.ExampleStoreIterator;
 import com.google.common.flogger.GoogleLogger;
@@ -26,11 +27,20 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  * A wrapper for {@link ExampleStoreIterator}. {@link
  * com.google.android.as.oss.fl.fc.service.PcsExampleStoreService} will call the methods here over
  * IPC, which is then forward to {@link ExampleStoreIterator} implementation in ASI.
+ *
+ * <p>{@link #nextBatch} collects several examples from the iterator and passes them to PCS in one
+ * IPC, see {@link ExampleBatch}.
  */
 public class ExampleStoreIteratorImpl extends IExampleStoreIterator.Stub {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
   private final ExampleStoreIterator iterator;
 
+  // PCS requests one batch at a time, so these are never written concurrently.
+  private volatile boolean exhausted = false;
+  private volatile @Nullable Failure pendingFailure = null;
+  // An example which didn't fit in the previous batch, sent first in the next one.
+  private volatile @Nullable Example carriedOverExample = null;
+
   public ExampleStoreIteratorImpl(ExampleStoreIterator iterator) {
     this.iterator = iterator;
   }
@@ -54,6 +64,129 @@ public class ExampleStoreIteratorImpl extends IExampleStoreIterator.Stub {
     }
   }
 
+  @Override
+  public int getVersion() {
+    return ExampleBatch.VERSION_BATCHED_NEXT;
+  }
+
+  @Override
+  public void nextBatch(int maxExamples, IExampleStoreIteratorCallback callback) {
+    Failure failure = pendingFailure;
+    if (failure != null) {
+      // Reported after the examples which were collected before the failure.
+      pendingFailure = null;
+      reportFailure(callback, failure.statusCode(), failure.errorMessage());
+      return;
+    }
+    BatchCollector collector =
+        new BatchCollector(ExampleBatch.clampBatchSize(maxExamples), callback);
+    Example carriedOver = carriedOverExample;
+    if (carriedOver != null) {
+      carriedOverExample = null;
+      collector.batch.add(carriedOver);
+    }
+    if (exhausted || collector.batch.isFull(collector.maxExamples)) {
+      collector.send();
+      return;
+    }
+    iterator.request(collector.maxExamples - collector.batch.size());
+    collector.fetchNext();
+  }
+
+  private static void reportFailure(
+      IExampleStoreIteratorCallback callback, int statusCode, @Nullable String errorMessage) {
+    try {
+      callback.onIteratorNextFailure(statusCode, errorMessage);
+    } catch (RemoteException e) {
+      logger.atWarning().withCause(e).log("RemoteException thrown in onIteratorNextFailure.");
+    }
+  }
+
+  /** Pulls examples from the iterator until the batch is full or the data ends, then sends it. */
+  private class BatchCollector implements ExampleStoreIterator.Callback {
+    private final int maxExamples;
+    private final IExampleStoreIteratorCallback iExampleStoreIteratorCallback;
+    private final ExampleBatch batch = new ExampleBatch();
+    // Set once the batch or a failure was reported, a re-thrown failure may reach several frames.
+    private boolean finished = false;
+
+    BatchCollector(int maxExamples, IExampleStoreIteratorCallback iExampleStoreIteratorCallback) {
+      this.maxExamples = maxExamples;
+      this.iExampleStoreIteratorCallback = iExampleStoreIteratorCallback;
+    }
+
+    void fetchNext() {
+      try {
+        iterator.next(this);
+      } catch (RuntimeException e) {
+        // Same as in next(), report the failure to PCS and re-throw for visibility in ASI.
+        onIteratorNextFailure(CommonStatusCodes.ERROR, "iterator.next() failed.");
+        throw e;
+      }
+    }
+
+    @Override
+    public boolean onIteratorNextSuccess(
+        byte @Nullable [] resultBytes, boolean isTfExample, byte @Nullable [] resumptionToken) {
+      if (resultBytes == null) {
+        exhausted = true;
+        send();
+      } else {
+        Example example = new Example(resultBytes, resumptionToken);
+        if (!batch.fits(example)) {
+          // Adding it would overflow the binder buffer, it opens the next batch instead.
+          carriedOverExample = example;
+          send();
+          return true;
+        }
+        batch.add(example);
+        if (batch.isFull(maxExamples)) {
+          send();
+        } else {
+          fetchNext();
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void onIteratorNextFailure(int statusCode, @Nullable String errorMessage) {
+      if (finished) {
+        return;
+      }
+      if (batch.size() == 0) {
+        finished = true;
+        reportFailure(iExampleStoreIteratorCallback, statusCode, errorMessage);
+      } else {
+        pendingFailure = new Failure(statusCode, errorMessage);
+        send();
+      }
+    }
+
+    void send() {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      try {
+        batch.send(iExampleStoreIteratorCallback);
+      } catch (RemoteException e) {
+        // Most likely a TransactionTooLargeException. The batch is lost, so fail the iteration
+        // rather than leaving PCS waiting for it until timeout.
+        logger
+            .atWarning()
+            .withCause(e)
+            .log("RemoteException thrown in onIteratorNextBatchSuccess.");
+        reportFailure(
+            iExampleStoreIteratorCallback,
+            CommonStatusCodes.ERROR,
+            "Failed to send a batch of " + batch.size() + " examples.");
+      }
+    }
+  }
+
+  private record Failure(int statusCode, @Nullable String errorMessage) {}
+
   private static class IteratorCallback implements ExampleStoreIterator.Callback {
     private final IExampleStoreIteratorCallback iExampleStoreIteratorCallback;
 
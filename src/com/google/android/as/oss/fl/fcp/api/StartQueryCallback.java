@@ -17,10 +17,19 @@
 package com.google.android.as.oss.fl.fc.api;
 
 import android.os.RemoteException;
+import androidx.annotation.GuardedBy;
+import com.google.android.as.oss.fl.fc.api.ExampleBatch.Example;
 import com.google.android.as.oss.fl.fc.api.proto.TrainingError;
 import com.google.fcp.client.ExampleStoreIterator;
 import com.google.fcp.client.ExampleStoreService.QueryCallback;
+import com.google.fcp.client.common.api.CommonStatusCodes;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.flogger.GoogleLogger;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * A wrapper for {@link QueryCallback} to forward example from ASI to the federated compute
@@ -51,8 +60,38 @@ public class StartQueryCallback extends IStartQueryCallback.Stub {
     queryCallback.onStartQueryFailure(statusCode, "StartQuery failure reported");
   }
 
+  /**
+   * Serves examples to federated compute from batches requested from ASI. The next batch is
+   * requested once half of the current one was consumed, so it is usually there before the trainer
+   * needs it. Falls back to one IPC per example if ASI doesn't support batches.
+   */
   private static class ExampleStoreIteratorImpl implements ExampleStoreIterator {
     private final IExampleStoreIterator exampleStoreIterator;
+    private final Supplier<Boolean> batchingSupported =
+        Suppliers.memoize(this::queryBatchingSupported);
+
+    private final Object lock = new Object();
+
+    @GuardedBy("lock")
+    private final ArrayDeque<Example> prefetchedExamples = new ArrayDeque<>();
+
+    @GuardedBy("lock")
+    private @Nullable Callback pendingCallback = null;
+
+    @GuardedBy("lock")
+    private int batchSize = ExampleBatch.DEFAULT_BATCH_EXAMPLES;
+
+    @GuardedBy("lock")
+    private boolean batchInFlight = false;
+
+    @GuardedBy("lock")
+    private boolean endOfData = false;
+
+    @GuardedBy("lock")
+    private @Nullable Failure failure = null;
+
+    @GuardedBy("lock")
+    private boolean closed = false;
 
     private ExampleStoreIteratorImpl(IExampleStoreIterator exampleStoreIterator) {
       this.exampleStoreIterator = exampleStoreIterator;
@@ -60,21 +99,151 @@ public class StartQueryCallback extends IStartQueryCallback.Stub {
 
     @Override
     public void next(Callback callback) {
-      try {
-        exampleStoreIterator.next(new ExampleStoreIteratorCallback(callback));
-      } catch (RemoteException e) {
-        // We don't expect any RemoteExceptions. If it does happen for some reason then all we can
-        // do now is log the exception and swallow it.
-        logger.atWarning().withCause(e).log("RemoteException thrown in passing iterator callback.");
+      if (!batchingSupported.get()) {
+        try {
+          exampleStoreIterator.next(new ExampleStoreIteratorCallback(callback));
+        } catch (RemoteException e) {
+          // We don't expect any RemoteExceptions. If it does happen for some reason then all we can
+          // do now is log the exception and swallow it.
+          logger.atWarning().withCause(e).log(
+              "RemoteException thrown in passing iterator callback.");
+        }
+        return;
+      }
+      synchronized (lock) {
+        pendingCallback = callback;
       }
+      serve();
     }
 
-    // TODO: Handle ExampleStoreIterator's request() and close() API in PCS.
     @Override
-    public void request(int numExamples) {}
+    public void request(int numExamples) {
+      synchronized (lock) {
+        batchSize = ExampleBatch.clampBatchSize(numExamples);
+      }
+    }
 
-    // TODO: Handle ExampleStoreIterator's request() and close() API in PCS.
+    // TODO: Handle ExampleStoreIterator's close() API in PCS.
     @Override
-    public void close() {}
+    public void close() {
+      synchronized (lock) {
+        closed = true;
+        prefetchedExamples.clear();
+      }
+    }
+
+    private boolean queryBatchingSupported() {
+      try {
+        return exampleStoreIterator.getVersion() >= ExampleBatch.VERSION_BATCHED_NEXT;
+      } catch (RemoteException | RuntimeException e) {
+        logger.atWarning().withCause(e).log("Failed to get the example store iterator version.");
+        return false;
+      }
+    }
+
+    /** Answers the pending callback if possible, and requests the next batch if it is due. */
+    private void serve() {
+      Callback callback;
+      @Nullable Example example = null;
+      @Nullable Failure failureToReport = null;
+      int nextBatchSize = 0;
+      synchronized (lock) {
+        callback = pendingCallback;
+        if (callback != null) {
+          if (!prefetchedExamples.isEmpty()) {
+            example = prefetchedExamples.poll();
+          } else if (failure != null) {
+            failureToReport = failure;
+          } else if (!endOfData) {
+            // Keep waiting for the batch.
+            callback = null;
+          }
+          if (callback != null) {
+            pendingCallback = null;
+          }
+        }
+        if (!batchInFlight
+            && !endOfData
+            && failure == null
+            && !closed
+            && prefetchedExamples.size() <= batchSize / 2) {
+          batchInFlight = true;
+          nextBatchSize = batchSize;
+        }
+      }
+
+      if (nextBatchSize > 0) {
+        try {
+          exampleStoreIterator.nextBatch(nextBatchSize, new BatchCallback());
+        } catch (RemoteException e) {
+          logger.atWarning().withCause(e).log("RemoteException thrown in requesting a batch.");
+          onBatchFailure(CommonStatusCodes.ERROR, "Failed to request a batch of examples.");
+        }
+      }
+      if (callback == null) {
+        return;
+      }
+      if (example != null) {
+        callback.onIteratorNextSuccess(example.exampleBytes(), false, example.resumptionToken());
+      } else if (failureToReport != null) {
+        callback.onIteratorNextFailure(failureToReport.statusCode(), failureToReport.message());
+      } else {
+        callback.onIteratorNextSuccess(null, false, null);
+      }
+    }
+
+    private void onBatch(List<Example> examples) {
+      synchronized (lock) {
+        batchInFlight = false;
+        if (examples.isEmpty()) {
+          endOfData = true;
+        } else if (!closed) {
+          prefetchedExamples.addAll(examples);
+        }
+      }
+      serve();
+    }
+
+    private void onBatchFailure(int statusCode, @Nullable String message) {
+      synchronized (lock) {
+        batchInFlight = false;
+        failure = new Failure(statusCode, message);
+      }
+      serve();
+    }
+
+    private class BatchCallback extends IExampleStoreIteratorCallback.Stub {
+      @Override
+      public void onIteratorNextSuccess(
+          byte @Nullable [] resultBytes, byte @Nullable [] resumptionToken) {
+        onBatch(
+            resultBytes == null
+                ? Collections.emptyList()
+                : Collections.singletonList(new Example(resultBytes, resumptionToken)));
+      }
+
+      @Override
+      public void onIteratorNextFailure(int statusCode, @Nullable String errorMessage) {
+        onBatchFailure(statusCode, errorMessage);
+      }
+
+      @Override
+      public void onIteratorNextBatchSuccess(
+          byte[] packedExamples,
+          int[] exampleSizes,
+          byte[] packedResumptionTokens,
+          int[] resumptionTokenSizes) {
+        try {
+          onBatch(
+              ExampleBatch.unpack(
+                  packedExamples, exampleSizes, packedResumptionTokens, resumptionTokenSizes));
+        } catch (IllegalArgumentException e) {
+          logger.atWarning().withCause(e).log("Received a malformed batch of examples.");
+          onBatchFailure(CommonStatusCodes.ERROR, "Received a malformed batch of examples.");
+        }
+      }
+    }
+
+    private record Failure(int statusCode, @Nullable String message) {}
   }
 }
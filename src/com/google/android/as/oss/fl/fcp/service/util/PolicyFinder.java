@@ -19,6 +19,9 @@ package com.google.android.as.oss.fl.fc.service.util;
 import static com.google.android.as.oss.fl.fc.service.util.PolicyConstants.FEDERATED_COMPUTE_CONFIG_KEY;
 import static com.google.android.as.oss.fl.fc.service.util.PolicyConstants.REQUIRED_USER_CONSENT_CONFIG_KEY;
 
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import arcs.core.data.proto.PolicyProto;
 import com.google.android.as.oss.policies.api.Policy;
 import com.google.android.as.oss.policies.api.proto.PolicyProtoKt;
@@ -26,13 +29,30 @@ import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
 import com.google.common.flogger.GoogleLogger;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
-/** Utility class holding Policy compatibility checking helper methods. */
+/**
+ * Utility class holding Policy compatibility checking helper methods.
+ *
+ * <p>The installed policies are loaded once per process, so their decoded form is cached for the
+ * last installed policies seen, along with the results of the latest queries. Both are rebuilt
+ * when a different set of installed policies is passed in. Installed policies are only decoded
+ * once a query names them, so a policy that fails to decode only fails the queries for it.
+ */
 public class PolicyFinder {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
 
+  @VisibleForTesting static final int MAX_CACHED_QUERY_RESULTS = 64;
+
+  private static final Object lock = new Object();
+
+  @GuardedBy("lock")
+  @Nullable
+  private static DecodedPolicies decodedPolicies = null;
+
   private PolicyFinder() {}
 
   /**
@@ -46,20 +66,42 @@ public class PolicyFinder {
   @SuppressWarnings("Guava")
   public static Optional<Policy> findCompatiblePolicy(
       PolicyProto queryProto, Multimap<String, PolicyProto> installedPolicies) {
+    DecodedPolicies decoded;
+    synchronized (lock) {
+      if (decodedPolicies == null || decodedPolicies.source() != installedPolicies) {
+        decodedPolicies = DecodedPolicies.create(installedPolicies);
+      }
+      decoded = decodedPolicies;
+      Optional<Policy> cachedResult = decoded.queryResults().get(queryProto);
+      if (cachedResult != null) {
+        return cachedResult;
+      }
+    }
+
+    Optional<Policy> result = findCompatiblePolicy(queryProto, decoded);
+    synchronized (lock) {
+      decoded.queryResults().put(queryProto, result);
+    }
+    return result;
+  }
+
+  @SuppressWarnings("Guava")
+  private static Optional<Policy> findCompatiblePolicy(
+      PolicyProto queryProto, DecodedPolicies installedPolicies) {
     String policyName = queryProto.getName();
-    if (!installedPolicies.containsKey(policyName)) {
+    if (!installedPolicies.source().containsKey(policyName)) {
       logger.atWarning().log("Policy name=%s in the query is not installed.", policyName);
       return Optional.absent();
     }
 
     Policy queryPolicy = PolicyProtoKt.decode(queryProto);
-    for (PolicyProto installedPolicyProto : installedPolicies.get(policyName)) {
+    for (PolicyProto installedPolicyProto : installedPolicies.source().get(policyName)) {
       if (installedPolicyProto == null) {
         logger.atWarning().log("Installed policy name=%s is null, rejecting query.", policyName);
         continue;
       }
 
-      Policy installedPolicy = PolicyProtoKt.decode(installedPolicyProto);
+      Policy installedPolicy = installedPolicies.decode(installedPolicyProto);
       if (!isPolicyCompatible(installedPolicy, queryPolicy)) {
         continue;
       }
@@ -116,4 +158,31 @@ public class PolicyFinder {
     }
     return true;
   }
+
+  /**
+   * Installed policies, decoded on first use, along with the latest results of {@link
+   * #findCompatiblePolicy} for them, keyed by query policy.
+   */
+  private record DecodedPolicies(
+      Multimap<String, PolicyProto> source,
+      Map<PolicyProto, Policy> decodedPolicies,
+      Map<PolicyProto, Optional<Policy>> queryResults) {
+
+    static DecodedPolicies create(Multimap<String, PolicyProto> installedPolicies) {
+      return new DecodedPolicies(
+          installedPolicies,
+          new ConcurrentHashMap<>(),
+          new LinkedHashMap<>(/* initialCapacity= */ 16, /* loadFactor= */ 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PolicyProto, Optional<Policy>> eldest) {
+              return size() > MAX_CACHED_QUERY_RESULTS;
+            }
+          });
+    }
+
+    /** Returns the decoded installed policy. A failed decode is thrown and not cached. */
+    Policy decode(PolicyProto installedPolicy) {
+      return decodedPolicies.computeIfAbsent(installedPolicy, PolicyProtoKt::decode);
+    }
+  }
 }
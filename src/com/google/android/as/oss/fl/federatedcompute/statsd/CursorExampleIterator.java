@@ -36,7 +36,7 @@ public class CursorExampleIterator implements ExampleStoreIterator {
   public void next(@NonNull Callback callback) {
     try {
       if (generator.hasNext()) {
-        callback.onIteratorNextSuccess(generator.next().toByteArray(), true, null);
+        callback.onIteratorNextSuccess(generator.nextBytes(), true, null);
       } else {
         callback.onIteratorNextSuccess(null, false, null);
       }
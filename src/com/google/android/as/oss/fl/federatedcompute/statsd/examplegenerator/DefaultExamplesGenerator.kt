@@ -17,6 +17,9 @@
 package com.google.android.`as`.oss.fl.federatedcompute.statsd.examplegenerator
 
 import android.database.Cursor
+import com.google.protobuf.ByteString
+import com.google.protobuf.CodedOutputStream
+import com.google.protobuf.WireFormat
 import org.tensorflow.example.Example
 import org.tensorflow.example.Features
 
@@ -25,21 +28,43 @@ import org.tensorflow.example.Features
  * Each example has one feature for each of the cursor's columns.
  *
  * <p>Columns of type [Cursor.FIELD_TYPE_BLOB] and [Cursor.FIELD_TYPE_NULL] are not supported.
+ *
+ * <p>Column names and types are resolved once from the first row. [nextBytes] then serializes
+ * every row with those types straight into its wire format, without building the example protos.
  */
 class DefaultExamplesGenerator(private val cursor: Cursor) : ExamplesGenerator {
+  private val columnTypes: IntArray
+  private val columnKeys: Array<ByteString>
+
+  // Per row scratch space of nextBytes(), indexed by column.
+  private val longValues: LongArray
+  private val floatValues: FloatArray
+  private val stringValues: Array<String?>
+  private val listSizes: IntArray
+  private val featureSizes: IntArray
+  private val entrySizes: IntArray
+
   init {
-    if (cursor.moveToFirst()) {
-      // Ensure the cursor can be parsed.
-      for (col in 0 until cursor.columnCount) {
-        val columnType = cursor.getType(col)
-        require(columnType != Cursor.FIELD_TYPE_NULL) {
-          "Value of column '${cursor.getColumnName(col)}' is null. Consider IFNULL function."
-        }
-        require(columnType != Cursor.FIELD_TYPE_BLOB) {
-          "DefaultExamplesGenerator does not support columns of type $columnType."
-        }
+    val columnCount = if (cursor.moveToFirst()) cursor.columnCount else 0
+    // Ensure the cursor can be parsed.
+    for (col in 0 until columnCount) {
+      val columnType = cursor.getType(col)
+      require(columnType != Cursor.FIELD_TYPE_NULL) {
+        "Value of column '${cursor.getColumnName(col)}' is null. Consider IFNULL function."
+      }
+      require(columnType != Cursor.FIELD_TYPE_BLOB) {
+        "DefaultExamplesGenerator does not support columns of type $columnType."
       }
     }
+    columnTypes = IntArray(columnCount) { cursor.getType(it) }
+    val columnNames = cursor.columnNames
+    columnKeys = Array(columnCount) { ByteString.copyFromUtf8(columnNames[it]) }
+    longValues = LongArray(columnCount)
+    floatValues = FloatArray(columnCount)
+    stringValues = arrayOfNulls(columnCount)
+    listSizes = IntArray(columnCount)
+    featureSizes = IntArray(columnCount)
+    entrySizes = IntArray(columnCount)
   }
 
   override fun hasNext(): Boolean = !cursor.isAfterLast && !cursor.isClosed
@@ -53,6 +78,16 @@ class DefaultExamplesGenerator(private val cursor: Cursor) : ExamplesGenerator {
     return example
   }
 
+  override fun nextBytes(): ByteArray {
+    if (!hasNext()) {
+      throw NoSuchElementException()
+    }
+    // SQLite types values, not columns, so rows not matching the first one take the generic path.
+    val bytes = if (rowMatchesColumnTypes()) serializeRow() else cursor.toTfExample().toByteArray()
+    cursor.moveToNext()
+    return bytes
+  }
+
   override fun close() = Unit
 
   internal fun Cursor.toTfExample(): Example {
@@ -72,4 +107,112 @@ class DefaultExamplesGenerator(private val cursor: Cursor) : ExamplesGenerator {
     }
     return Example.newBuilder().setFeatures(features).build()
   }
+
+  private fun rowMatchesColumnTypes(): Boolean {
+    if (cursor.columnCount != columnTypes.size) {
+      return false
+    }
+    for (col in columnTypes.indices) {
+      if (cursor.getType(col) != columnTypes[col]) {
+        return false
+      }
+    }
+    return true
+  }
+
+  /**
+   * Serializes the current row as the [Example] built by [toTfExample] would be serialized. Sizes
+   * of all nested messages are computed first, since each is written before its content.
+   */
+  private fun serializeRow(): ByteArray {
+    var featuresSize = 0
+    for (col in columnTypes.indices) {
+      val listSize =
+        when (columnTypes[col]) {
+          Cursor.FIELD_TYPE_FLOAT -> {
+            floatValues[col] = cursor.getFloat(col)
+            packedFieldSize(CodedOutputStream.computeFloatSizeNoTag(floatValues[col]))
+          }
+          Cursor.FIELD_TYPE_INTEGER -> {
+            longValues[col] = cursor.getLong(col)
+            packedFieldSize(CodedOutputStream.computeInt64SizeNoTag(longValues[col]))
+          }
+          else -> {
+            val value = cursor.getString(col)
+            stringValues[col] = value
+            CodedOutputStream.computeStringSize(LIST_VALUE_FIELD, value)
+          }
+        }
+      listSizes[col] = listSize
+      featureSizes[col] = lengthDelimitedFieldSize(featureKindField(columnTypes[col]), listSize)
+      entrySizes[col] =
+        CodedOutputStream.computeBytesSize(MAP_KEY_FIELD, columnKeys[col]) +
+          lengthDelimitedFieldSize(MAP_VALUE_FIELD, featureSizes[col])
+      featuresSize += lengthDelimitedFieldSize(FEATURE_MAP_FIELD, entrySizes[col])
+    }
+
+    val bytes = ByteArray(lengthDelimitedFieldSize(EXAMPLE_FEATURES_FIELD, featuresSize))
+    val output = CodedOutputStream.newInstance(bytes)
+    writeLengthDelimitedTag(output, EXAMPLE_FEATURES_FIELD, featuresSize)
+    for (col in columnTypes.indices) {
+      writeLengthDelimitedTag(output, FEATURE_MAP_FIELD, entrySizes[col])
+      output.writeBytes(MAP_KEY_FIELD, columnKeys[col])
+      writeLengthDelimitedTag(output, MAP_VALUE_FIELD, featureSizes[col])
+      writeLengthDelimitedTag(output, featureKindField(columnTypes[col]), listSizes[col])
+      when (columnTypes[col]) {
+        Cursor.FIELD_TYPE_FLOAT -> {
+          writeLengthDelimitedTag(output, LIST_VALUE_FIELD, FLOAT_SIZE)
+          output.writeFloatNoTag(floatValues[col])
+        }
+        Cursor.FIELD_TYPE_INTEGER -> {
+          writeLengthDelimitedTag(
+            output,
+            LIST_VALUE_FIELD,
+            CodedOutputStream.computeInt64SizeNoTag(longValues[col]),
+          )
+          output.writeInt64NoTag(longValues[col])
+        }
+        else -> {
+          output.writeString(LIST_VALUE_FIELD, stringValues[col])
+          stringValues[col] = null
+        }
+      }
+    }
+    output.checkNoSpaceLeft()
+    return bytes
+  }
+
+  private companion object {
+    // Field numbers of the tensorflow.Example protos.
+    const val EXAMPLE_FEATURES_FIELD = 1
+    const val FEATURE_MAP_FIELD = 1
+    const val MAP_KEY_FIELD = 1
+    const val MAP_VALUE_FIELD = 2
+    const val FEATURE_BYTES_LIST_FIELD = 1
+    const val FEATURE_FLOAT_LIST_FIELD = 2
+    const val FEATURE_INT64_LIST_FIELD = 3
+    const val LIST_VALUE_FIELD = 1
+
+    const val FLOAT_SIZE = 4
+
+    fun featureKindField(columnType: Int): Int =
+      when (columnType) {
+        Cursor.FIELD_TYPE_FLOAT -> FEATURE_FLOAT_LIST_FIELD
+        Cursor.FIELD_TYPE_INTEGER -> FEATURE_INT64_LIST_FIELD
+        else -> FEATURE_BYTES_LIST_FIELD
+      }
+
+    /** Size of a packed repeated field with a single value of the given size. */
+    fun packedFieldSize(valueSize: Int): Int = lengthDelimitedFieldSize(LIST_VALUE_FIELD, valueSize)
+
+    fun lengthDelimitedFieldSize(fieldNumber: Int, contentSize: Int): Int =
+      CodedOutputStream.computeTagSize(fieldNumber) +
+        CodedOutputStream.computeUInt32SizeNoTag(contentSize) +
+        contentSize
+
+    fun writeLengthDelimitedTag(output: CodedOutputStream, fieldNumber: Int, contentSize: Int) {
+      output.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED)
+      output.writeUInt32NoTag(contentSize)
+    }
+  }
 }
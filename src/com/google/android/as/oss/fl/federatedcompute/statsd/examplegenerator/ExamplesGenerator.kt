@@ -20,6 +20,9 @@ import org.tensorflow.example.Example
 
 /** A generator of TF Examples. */
 interface ExamplesGenerator : Iterator<Example> {
+  /** Returns the next example serialized. */
+  fun nextBytes(): ByteArray = next().toByteArray()
+
   /**
    * Performs any necessary cleanup after the ExampleStoreIterator is done using the
    * ExamplesGenerator.
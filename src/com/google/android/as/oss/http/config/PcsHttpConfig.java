@@ -27,7 +27,11 @@ public abstract class PcsHttpConfig {
         .setOnReadyHandlerEnabled(true)
         .setIpcStreamingThrottleMs(4000)
         .setWriteToPfd(false)
-        .setEnableCronetMigration(false);
+        .setEnableCronetMigration(false)
+        .setAdaptiveChunkStreamingEnabled(false)
+        .setDirectPfdWriteEnabled(false)
+        .setPfdProgressIntervalBytes(0)
+        .setResumableDownloadsEnabled(false);
   }
 
   public abstract boolean onReadyHandlerEnabled();
@@ -38,6 +42,30 @@ public abstract class PcsHttpConfig {
 
   public abstract boolean enableCronetMigration();
 
+  /**
+   * Whether response bodies streamed over gRPC use flow-control driven chunks of adaptive size
+   * instead of fixed-size chunks throttled by {@link #ipcStreamingThrottleMs}.
+   */
+  public abstract boolean adaptiveChunkStreamingEnabled();
+
+  /**
+   * Whether downloads to a client-provided file are written straight from the network source to
+   * the file's channel instead of through a heap buffer.
+   */
+  public abstract boolean directPfdWriteEnabled();
+
+  /**
+   * Number of bytes between two progress updates sent to the client while writing directly to a
+   * file. Progress is not reported if not positive.
+   */
+  public abstract long pfdProgressIntervalBytes();
+
+  /**
+   * Whether downloads are first stored under the cache directory so that interrupted transfers can
+   * be resumed with range requests, before being delivered to the client.
+   */
+  public abstract boolean resumableDownloadsEnabled();
+
   /** Builder for {@link PcsHttpConfig} */
   @AutoValue.Builder
   public abstract static class Builder {
@@ -49,6 +77,14 @@ public abstract class PcsHttpConfig {
 
     public abstract Builder setEnableCronetMigration(boolean value);
 
+    public abstract Builder setAdaptiveChunkStreamingEnabled(boolean value);
+
+    public abstract Builder setDirectPfdWriteEnabled(boolean value);
+
+    public abstract Builder setPfdProgressIntervalBytes(long value);
+
+    public abstract Builder setResumableDownloadsEnabled(boolean value);
+
     public abstract PcsHttpConfig build();
   }
 }
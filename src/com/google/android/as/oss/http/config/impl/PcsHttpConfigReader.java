@@ -22,6 +22,7 @@ import com.google.android.as.oss.common.config.FlagListener;
 import com.google.android.as.oss.common.config.FlagManager;
 import com.google.android.as.oss.common.config.FlagManager.BooleanFlag;
 import com.google.android.as.oss.common.config.FlagManager.IntegerFlag;
+import com.google.android.as.oss.common.config.FlagManager.LongFlag;
 import com.google.android.as.oss.http.config.PcsHttpConfig;
 
 /** ConfigReader for {@link PcsHttpConfig}. */
@@ -40,6 +41,18 @@ class PcsHttpConfigReader extends AbstractConfigReader<PcsHttpConfig> {
   static final BooleanFlag ENABLE_CRONET_MIGRATION =
       BooleanFlag.create("PcsHttp__enable_cronet_migration", false);
 
+  static final BooleanFlag ENABLE_ADAPTIVE_CHUNK_STREAMING =
+      BooleanFlag.create("PcsHttp__enable_adaptive_chunk_streaming", false);
+
+  static final BooleanFlag ENABLE_DIRECT_PFD_WRITE =
+      BooleanFlag.create("PcsHttp__enable_direct_pfd_write", false);
+
+  static final LongFlag PFD_PROGRESS_INTERVAL_BYTES =
+      LongFlag.create("PcsHttp__pfd_progress_interval_bytes", 0L);
+
+  static final BooleanFlag ENABLE_RESUMABLE_DOWNLOADS =
+      BooleanFlag.create("PcsHttp__enable_resumable_downloads", false);
+
   private final FlagManager flagManager;
 
   static PcsHttpConfigReader create(FlagManager flagManager) {
@@ -65,6 +78,10 @@ class PcsHttpConfigReader extends AbstractConfigReader<PcsHttpConfig> {
         .setIpcStreamingThrottleMs(flagManager.get(IPC_STREAMING_THROTTLE_MS))
         .setWriteToPfd(flagManager.get(WRITE_TO_PFD))
         .setEnableCronetMigration(flagManager.get(ENABLE_CRONET_MIGRATION))
+        .setAdaptiveChunkStreamingEnabled(flagManager.get(ENABLE_ADAPTIVE_CHUNK_STREAMING))
+        .setDirectPfdWriteEnabled(flagManager.get(ENABLE_DIRECT_PFD_WRITE))
+        .setPfdProgressIntervalBytes(flagManager.get(PFD_PROGRESS_INTERVAL_BYTES))
+        .setResumableDownloadsEnabled(flagManager.get(ENABLE_RESUMABLE_DOWNLOADS))
         .build();
   }
 
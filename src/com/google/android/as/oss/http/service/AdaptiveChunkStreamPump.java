@@ -0,0 +1,174 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.http.service;
+
+import androidx.annotation.VisibleForTesting;
+import com.google.android.as.oss.http.api.proto.HttpDownloadResponse;
+import com.google.android.as.oss.http.api.proto.ResponseBodyChunk;
+import com.google.common.flogger.GoogleLogger;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams a response body to a gRPC client in chunks whose size adapts to how fast the client
+ * drains the stream.
+ *
+ * <p>The pump is driven by gRPC flow control: it runs on the background executor while the call is
+ * ready and parks as soon as it isn't, to be resumed by the next onReady callback. Chunks start at
+ * {@link #MIN_CHUNK_SIZE} and double after every chunk the client accepts without pushing back, up
+ * to {@link #MAX_CHUNK_SIZE}; they shrink again when the call stops being ready.
+ *
+ * <p>Every chunk is read into its own array and handed to gRPC with {@link
+ * UnsafeByteOperations#unsafeWrap}, so body bytes are never copied on the heap. Arrays can't be
+ * recycled since the stream may serialize a message after {@code onNext} returns.
+ */
+final class AdaptiveChunkStreamPump implements Runnable {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  @VisibleForTesting static final int MIN_CHUNK_SIZE = 64 * 1024;
+  @VisibleForTesting static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+  /** Receives the outcome of the download. */
+  interface Listener {
+    void onDownloadCompleted(long totalBytesRead);
+
+    void onDownloadFailed(long totalBytesRead);
+
+    void onDownloadCancelled(long totalBytesRead);
+  }
+
+  private final ServerCallStreamObserver<HttpDownloadResponse> responseObserver;
+  private final InputStream bodyStream;
+  private final Executor backgroundExecutor;
+  private final Listener listener;
+  private final AtomicBoolean pumping = new AtomicBoolean(false);
+
+  // Only accessed from the pump loop, which never runs concurrently with itself.
+  private long totalBytesRead = 0;
+  private int chunkSize = MIN_CHUNK_SIZE;
+  private boolean finished = false;
+
+  AdaptiveChunkStreamPump(
+      ServerCallStreamObserver<HttpDownloadResponse> responseObserver,
+      InputStream bodyStream,
+      Executor backgroundExecutor,
+      Listener listener) {
+    this.responseObserver = responseObserver;
+    this.bodyStream = bodyStream;
+    this.backgroundExecutor = backgroundExecutor;
+    this.listener = listener;
+  }
+
+  /** Called on every onReady callback. Resumes the pump unless it is already running. */
+  @Override
+  public void run() {
+    if (pumping.compareAndSet(false, true)) {
+      backgroundExecutor.execute(this::pump);
+    }
+  }
+
+  private void pump() {
+    try {
+      while (!finished) {
+        if (responseObserver.isCancelled()) {
+          finish();
+          listener.onDownloadCancelled(totalBytesRead);
+          return;
+        }
+        if (!responseObserver.isReady()) {
+          chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize / 2);
+          pumping.set(false);
+          // An onReady callback may have been skipped while this loop still owned the pump.
+          if (!responseObserver.isReady() || !pumping.compareAndSet(false, true)) {
+            return;
+          }
+          continue;
+        }
+
+        byte[] chunk = new byte[chunkSize];
+        int bytesRead = readChunk(chunk);
+        if (bytesRead == -1) {
+          finish();
+          logger.atInfo().log(
+              "[adaptive-chunks] DOWNLOAD COMPLETE: Downloaded %d bytes.", totalBytesRead);
+          responseObserver.onCompleted();
+          listener.onDownloadCompleted(totalBytesRead);
+          return;
+        }
+
+        responseObserver.onNext(
+            HttpDownloadResponse.newBuilder()
+                .setResponseBodyChunk(
+                    ResponseBodyChunk.newBuilder()
+                        .setResponseBytes(UnsafeByteOperations.unsafeWrap(chunk, 0, bytesRead))
+                        .build())
+                .build());
+        totalBytesRead += bytesRead;
+        if (bytesRead == chunk.length && responseObserver.isReady()) {
+          chunkSize = Math.min(MAX_CHUNK_SIZE, chunkSize * 2);
+        }
+      }
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed performing IO operation while streaming body.");
+      finish();
+      responseObserver.onError(e);
+      listener.onDownloadFailed(totalBytesRead);
+    } catch (StatusRuntimeException e) {
+      finish();
+      if (responseObserver.isCancelled()) {
+        listener.onDownloadCancelled(totalBytesRead);
+      } else {
+        responseObserver.onError(e);
+        listener.onDownloadFailed(totalBytesRead);
+      }
+    }
+  }
+
+  /**
+   * Reads into the chunk until it is full, the stream ends, or at least {@link #MIN_CHUNK_SIZE}
+   * bytes were read and no more are buffered. Returns the number of bytes read, or -1 at the end of
+   * the stream.
+   */
+  private int readChunk(byte[] chunk) throws IOException {
+    int filled = 0;
+    while (filled < chunk.length) {
+      int bytesRead = bodyStream.read(chunk, filled, chunk.length - filled);
+      if (bytesRead == -1) {
+        return filled == 0 ? -1 : filled;
+      }
+      filled += bytesRead;
+      if (filled >= MIN_CHUNK_SIZE && bodyStream.available() == 0) {
+        break;
+      }
+    }
+    return filled;
+  }
+
+  private void finish() {
+    finished = true;
+    try {
+      bodyStream.close();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Encountered an error while closing the download stream");
+    }
+  }
+}
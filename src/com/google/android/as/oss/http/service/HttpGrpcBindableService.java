@@ -27,6 +27,7 @@ import com.google.android.as.oss.common.ExecutorAnnotations.IoExecutorQualifier;
 import com.google.android.as.oss.common.config.ConfigReader;
 import com.google.android.as.oss.common.flavor.BuildFlavor;
 import com.google.android.apps.miphone.pcs.grpc.GrpcStatusProto;
+import com.google.android.as.oss.http.api.proto.DownloadProgress;
 import com.google.android.as.oss.http.api.proto.HttpDownloadRequest;
 import com.google.android.as.oss.http.api.proto.HttpDownloadResponse;
 import com.google.android.as.oss.http.api.proto.HttpProperty;
@@ -57,11 +58,16 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 import javax.inject.Inject;
+import okhttp3.Headers;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.Okio;
 
 /** Bindable Service that handles HTTP requests to Private Compute Services. */
 public class HttpGrpcBindableService extends HttpServiceGrpc.HttpServiceImplBase {
@@ -75,6 +81,7 @@ public class HttpGrpcBindableService extends HttpServiceGrpc.HttpServiceImplBase
   private final ConfigReader<PcsHttpConfig> configReader;
   private final PcsStatsLog pcsStatsLogger;
   private final BuildFlavor buildFlavor;
+  private final ResumableHttpDownloader resumableDownloader;
 
   @Inject
   HttpGrpcBindableService(
@@ -83,13 +90,15 @@ public class HttpGrpcBindableService extends HttpServiceGrpc.HttpServiceImplBase
       NetworkUsageLogRepository networkUsageLogRepository,
       ConfigReader<PcsHttpConfig> httpConfigReader,
       PcsStatsLog pcsStatsLogger,
-      BuildFlavor buildFlavor) {
+      BuildFlavor buildFlavor,
+      ResumableHttpDownloader resumableDownloader) {
     this.client = client;
     this.executor = ioExecutor;
     this.networkUsageLogRepository = networkUsageLogRepository;
     this.configReader = httpConfigReader;
     this.pcsStatsLogger = pcsStatsLogger;
     this.buildFlavor = buildFlavor;
+    this.resumableDownloader = resumableDownloader;
   }
 
   @Override
@@ -157,6 +166,38 @@ public class HttpGrpcBindableService extends HttpServiceGrpc.HttpServiceImplBase
       }
     }
 
+    if (config.resumableDownloadsEnabled() && !hasRangeProperty(request)) {
+      // The pfd is bound to the gRPC context, so it must be read on this thread.
+      ParcelFileDescriptor resumablePfd =
+          config.writeToPfd() ? WRITEABLE_FILE_CONTEXT_KEY.get() : null;
+      Request resumableRequest = okRequest.build();
+      ServerCallStreamObserver<HttpDownloadResponse> serverStreamObserver =
+          (ServerCallStreamObserver<HttpDownloadResponse>) responseObserver;
+      // The onReady handler can only be set before this method returns, so it forwards to the pump
+      // once the download has started.
+      AtomicReference<Runnable> pump = new AtomicReference<>();
+      if (resumablePfd == null) {
+        serverStreamObserver.setOnReadyHandler(
+            () -> {
+              Runnable onReadyHandler = pump.get();
+              if (onReadyHandler != null) {
+                onReadyHandler.run();
+              }
+            });
+      }
+      long progressIntervalBytes = config.pfdProgressIntervalBytes();
+      executor.execute(
+          () ->
+              downloadResumable(
+                  request,
+                  resumableRequest,
+                  serverStreamObserver,
+                  resumablePfd,
+                  progressIntervalBytes,
+                  pump));
+      return;
+    }
+
     Response response;
     try {
       response = client.newCall(okRequest.build()).execute();
@@ -166,19 +207,11 @@ public class HttpGrpcBindableService extends HttpServiceGrpc.HttpServiceImplBase
       return;
     }
 
-    ResponseHeaders.Builder responseHeaders =
-        ResponseHeaders.newBuilder().setResponseCode(response.code());
-    for (String name : response.headers().names()) {
-      responseHeaders.addHeader(
-          HttpProperty.newBuilder()
-              .setKey(name)
-              .addAllValue(response.headers().values(name))
-              .build());
-    }
-
     logger.atInfo().log("Responding with header information for URL '%s'", request.getUrl());
     responseObserver.onNext(
-        HttpDownloadResponse.newBuilder().setResponseHeaders(responseHeaders).build());
+        HttpDownloadResponse.newBuilder()
+            .setResponseHeaders(toResponseHeaders(response.code(), response.headers()))
+            .build());
 
     ResponseBody body = response.body();
 
@@ -192,7 +225,38 @@ public class HttpGrpcBindableService extends HttpServiceGrpc.HttpServiceImplBase
     }
 
     final ParcelFileDescriptor pfd = config.writeToPfd() ? WRITEABLE_FILE_CONTEXT_KEY.get() : null;
-    if (config.onReadyHandlerEnabled() && pfd == null) {
+    if (config.onReadyHandlerEnabled() && config.adaptiveChunkStreamingEnabled() && pfd == null) {
+      ServerCallStreamObserver<HttpDownloadResponse> serverStreamObserver =
+          (ServerCallStreamObserver<HttpDownloadResponse>) responseObserver;
+
+      Runnable onReadyHandler =
+          new AdaptiveChunkStreamPump(
+              serverStreamObserver,
+              body.byteStream(),
+              executor,
+              new AdaptiveChunkStreamPump.Listener() {
+                @Override
+                public void onDownloadCompleted(long totalBytesRead) {
+                  insertNetworkUsageLogRow(
+                      networkUsageLogRepository, request, Status.SUCCEEDED, totalBytesRead);
+                }
+
+                @Override
+                public void onDownloadFailed(long totalBytesRead) {
+                  insertNetworkUsageLogRow(
+                      networkUsageLogRepository, request, Status.FAILED, totalBytesRead);
+                }
+
+                @Override
+                public void onDownloadCancelled(long totalBytesRead) {
+                  logCallCancelledByClient(
+                      null, networkUsageLogRepository, request, totalBytesRead);
+                }
+              });
+      serverStreamObserver.setOnReadyHandler(onReadyHandler);
+      // First call is required to be manual as per GRPC docs.
+      onReadyHandler.run();
+    } else if (config.onReadyHandlerEnabled() && pfd == null) {
       // Only use onReadyHandler if it is enabled by flag AND we have not received a direct pfd.
       ServerCallStreamObserver<HttpDownloadResponse> serverStreamObserver =
           (ServerCallStreamObserver<HttpDownloadResponse>) responseObserver;
@@ -208,6 +272,19 @@ public class HttpGrpcBindableService extends HttpServiceGrpc.HttpServiceImplBase
       serverStreamObserver.setOnReadyHandler(onReadyHandler);
       // First call is required to be manual as per GRPC docs.
       onReadyHandler.run();
+    } else if (pfd != null && config.directPfdWriteEnabled()) {
+      long progressIntervalBytes = config.pfdProgressIntervalBytes();
+      PfdDownloadWriter writer = newPfdDownloadWriter(responseObserver, progressIntervalBytes);
+      executor.execute(
+          () ->
+              downloadToPfd(
+                  request,
+                  responseObserver,
+                  writer,
+                  body.source(),
+                  body.contentLength(),
+                  pfd,
+                  writer::bytesWritten));
     } else {
       executor.execute(
           new Runnable() {
@@ -274,6 +351,179 @@ public class HttpGrpcBindableService extends HttpServiceGrpc.HttpServiceImplBase
     }
   }
 
+  private static PfdDownloadWriter newPfdDownloadWriter(
+      StreamObserver<HttpDownloadResponse> responseObserver, long progressIntervalBytes) {
+    return new PfdDownloadWriter(
+        progressIntervalBytes,
+        (bytesWritten, totalBytes) ->
+            responseObserver.onNext(
+                HttpDownloadResponse.newBuilder()
+                    .setDownloadProgress(
+                        DownloadProgress.newBuilder()
+                            .setBytesWritten(bytesWritten)
+                            .setTotalBytes(totalBytes)
+                            .build())
+                    .build()));
+  }
+
+  /**
+   * Writes the body to the pfd. {@code networkBytes} returns the size logged in the network usage
+   * log, which is less than the bytes written when part of the body was read from disk.
+   */
+  private void downloadToPfd(
+      HttpDownloadRequest request,
+      StreamObserver<HttpDownloadResponse> responseObserver,
+      PfdDownloadWriter writer,
+      BufferedSource source,
+      long contentLength,
+      ParcelFileDescriptor pfd,
+      LongSupplier networkBytes) {
+    ServerCallStreamObserver<HttpDownloadResponse> serverStreamObserver =
+        (ServerCallStreamObserver<HttpDownloadResponse>) responseObserver;
+    try {
+      PfdDownloadWriter.Result result =
+          writer.write(source, pfd, contentLength, serverStreamObserver::isCancelled);
+      if (result.cancelled()) {
+        logCallCancelledByClient(
+            null, networkUsageLogRepository, request, networkBytes.getAsLong());
+        return;
+      }
+      logger.atInfo().log(
+          "[pfd-direct-write] DOWNLOAD COMPLETE: Downloaded %d bytes from URL [%s].",
+          result.bytesWritten(), request.getUrl());
+      responseObserver.onCompleted();
+      insertNetworkUsageLogRow(
+          networkUsageLogRepository, request, Status.SUCCEEDED, networkBytes.getAsLong());
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log(
+          "Failed performing IO operation while handling URL '%s'", request.getUrl());
+      responseObserver.onError(e);
+      insertNetworkUsageLogRow(
+          networkUsageLogRepository, request, Status.FAILED, networkBytes.getAsLong());
+    } catch (StatusRuntimeException e) {
+      if (serverStreamObserver.isCancelled()) {
+        logCallCancelledByClient(e, networkUsageLogRepository, request, networkBytes.getAsLong());
+      } else {
+        responseObserver.onError(e);
+        insertNetworkUsageLogRow(
+            networkUsageLogRepository, request, Status.FAILED, networkBytes.getAsLong());
+      }
+    }
+  }
+
+  /**
+   * Streams the body to the client as it is downloaded, either into the pfd or through {@link
+   * AdaptiveChunkStreamPump}, which is published to {@code pump} for the onReady handler.
+   */
+  private void downloadResumable(
+      HttpDownloadRequest request,
+      Request okRequest,
+      ServerCallStreamObserver<HttpDownloadResponse> responseObserver,
+      @Nullable ParcelFileDescriptor pfd,
+      long progressIntervalBytes,
+      AtomicReference<Runnable> pump) {
+    ResumableHttpDownloader.Download download;
+    try {
+      download = resumableDownloader.open(okRequest);
+    } catch (IOException e) {
+      closeQuietly(pfd);
+      logger.atWarning().withCause(e).log(
+          "Failed resumable download of URL '%s'", request.getUrl());
+      responseObserver.onError(e);
+      insertNetworkUsageLogRow(networkUsageLogRepository, request, Status.FAILED, 0L);
+      return;
+    }
+
+    try {
+      responseObserver.onNext(
+          HttpDownloadResponse.newBuilder()
+              .setResponseHeaders(toResponseHeaders(download.responseCode(), download.headers()))
+              .build());
+    } catch (StatusRuntimeException e) {
+      download.close();
+      closeQuietly(pfd);
+      if (responseObserver.isCancelled()) {
+        logCallCancelledByClient(e, networkUsageLogRepository, request, download.networkBytes());
+      } else {
+        responseObserver.onError(e);
+        insertNetworkUsageLogRow(
+            networkUsageLogRepository, request, Status.FAILED, download.networkBytes());
+      }
+      return;
+    }
+
+    if (pfd != null) {
+      // The writer closes the source, which releases the download.
+      downloadToPfd(
+          request,
+          responseObserver,
+          newPfdDownloadWriter(responseObserver, progressIntervalBytes),
+          Okio.buffer(Okio.source(download)),
+          download.contentLength(),
+          pfd,
+          download::networkBytes);
+      return;
+    }
+
+    AdaptiveChunkStreamPump onReadyHandler =
+        new AdaptiveChunkStreamPump(
+            responseObserver,
+            download,
+            executor,
+            new AdaptiveChunkStreamPump.Listener() {
+              @Override
+              public void onDownloadCompleted(long totalBytesRead) {
+                insertNetworkUsageLogRow(
+                    networkUsageLogRepository, request, Status.SUCCEEDED, download.networkBytes());
+              }
+
+              @Override
+              public void onDownloadFailed(long totalBytesRead) {
+                insertNetworkUsageLogRow(
+                    networkUsageLogRepository, request, Status.FAILED, download.networkBytes());
+              }
+
+              @Override
+              public void onDownloadCancelled(long totalBytesRead) {
+                logCallCancelledByClient(
+                    null, networkUsageLogRepository, request, download.networkBytes());
+              }
+            });
+    pump.set(onReadyHandler);
+    // First call is required to be manual, onReady callbacks before this point were dropped.
+    onReadyHandler.run();
+  }
+
+  private static void closeQuietly(@Nullable ParcelFileDescriptor pfd) {
+    if (pfd == null) {
+      return;
+    }
+    try {
+      pfd.close();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to close the file descriptor");
+    }
+  }
+
+  private static boolean hasRangeProperty(HttpDownloadRequest request) {
+    for (HttpProperty property : request.getRequestPropertyList()) {
+      if (property.getKey().equalsIgnoreCase("Range")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static ResponseHeaders toResponseHeaders(int responseCode, Headers headers) {
+    ResponseHeaders.Builder responseHeaders =
+        ResponseHeaders.newBuilder().setResponseCode(responseCode);
+    for (String name : headers.names()) {
+      responseHeaders.addHeader(
+          HttpProperty.newBuilder().setKey(name).addAllValue(headers.values(name)).build());
+    }
+    return responseHeaders.build();
+  }
+
   private boolean isValidHttpsUrl(String url) {
     return url.startsWith("https://");
   }
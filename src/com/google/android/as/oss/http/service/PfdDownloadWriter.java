@@ -0,0 +1,150 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.http.service;
+
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import androidx.annotation.VisibleForTesting;
+import com.google.common.flogger.GoogleLogger;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.BooleanSupplier;
+import okio.BufferedSource;
+
+/**
+ * Writes a response body straight from the network source into the file channel of a
+ * client-provided {@link ParcelFileDescriptor}.
+ *
+ * <p>Bytes move from the Okio source into one direct buffer and from there into the file, so the
+ * transfer doesn't allocate per chunk. The file is preallocated when the body size is known.
+ */
+final class PfdDownloadWriter {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  @VisibleForTesting static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+
+  /** Receives progress updates while the body is being written. */
+  interface ProgressListener {
+    void onProgress(long bytesWritten, long totalBytes);
+  }
+
+  /** Outcome of {@link #write}. */
+  record Result(long bytesWritten, boolean cancelled) {}
+
+  private final long progressIntervalBytes;
+  private final ProgressListener progressListener;
+
+  // Only accessed by the thread running write().
+  private long bytesWritten = 0;
+
+  /**
+   * @param progressIntervalBytes number of bytes between two progress updates, or a non-positive
+   *     value to disable them
+   */
+  PfdDownloadWriter(long progressIntervalBytes, ProgressListener progressListener) {
+    this.progressIntervalBytes = progressIntervalBytes;
+    this.progressListener = progressListener;
+  }
+
+  /**
+   * Writes the source into the file and closes both, stopping early once {@code isCancelled}
+   * returns true. If the file was preallocated, it is truncated to the bytes actually written
+   * whether the write completes, is cancelled or fails.
+   *
+   * @param contentLength the expected body size, or -1 if unknown
+   */
+  Result write(
+      BufferedSource source,
+      ParcelFileDescriptor pfd,
+      long contentLength,
+      BooleanSupplier isCancelled)
+      throws IOException {
+    bytesWritten = 0;
+    long nextProgressAt = progressIntervalBytes;
+    try (BufferedSource body = source;
+        FileOutputStream os = new ParcelFileDescriptor.AutoCloseOutputStream(pfd);
+        FileChannel channel = os.getChannel()) {
+      boolean preallocated = contentLength > 0 && preallocate(pfd, contentLength);
+      try {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TRANSFER_BUFFER_SIZE);
+        while (true) {
+          if (isCancelled.getAsBoolean()) {
+            return new Result(bytesWritten, /* cancelled= */ true);
+          }
+          if (body.read(buffer) == -1) {
+            break;
+          }
+          // Keep reading until the buffer is full, unless no more bytes are buffered yet.
+          if (buffer.hasRemaining() && !body.getBuffer().exhausted()) {
+            continue;
+          }
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+          }
+          buffer.clear();
+
+          if (progressIntervalBytes > 0 && bytesWritten >= nextProgressAt) {
+            progressListener.onProgress(bytesWritten, contentLength);
+            nextProgressAt = bytesWritten + progressIntervalBytes;
+          }
+        }
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          bytesWritten += channel.write(buffer);
+        }
+        return new Result(bytesWritten, /* cancelled= */ false);
+      } finally {
+        if (preallocated && contentLength > bytesWritten) {
+          // The preallocated tail was never written, drop it.
+          truncate(channel, bytesWritten);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes written to the file so far by the last {@link #write}, including
+   * when it failed.
+   */
+  long bytesWritten() {
+    return bytesWritten;
+  }
+
+  private static void truncate(FileChannel channel, long length) {
+    try {
+      channel.truncate(length);
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to truncate the file to %d bytes", length);
+    }
+  }
+
+  private static boolean preallocate(ParcelFileDescriptor pfd, long length) {
+    try {
+      Os.posix_fallocate(pfd.getFileDescriptor(), 0, length);
+      return true;
+    } catch (ErrnoException e) {
+      // Not all file descriptors support this (e.g. pipes), the download proceeds without it.
+      logger.atFine().withCause(e).log("Failed to preallocate %d bytes", length);
+      return false;
+    }
+  }
+}
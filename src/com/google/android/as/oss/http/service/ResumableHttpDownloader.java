@@ -0,0 +1,541 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.http.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import android.content.Context;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import dagger.hilt.android.qualifiers.ApplicationContext;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import okhttp3.Headers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+/**
+ * Downloads a request's body while keeping a partial copy under the cache directory, so that an
+ * interrupted transfer can be resumed.
+ *
+ * <p>The body is handed to the caller as it arrives. While it is being received, it is also
+ * appended to a partial file kept next to its validators (ETag or Last-Modified, and the expected
+ * length). When the connection drops, the download is resumed with a {@code Range} request guarded
+ * by {@code If-Range}, both within the same call and by later calls for the same request. A later
+ * call first replays the partial file and then continues with the network. If the server no longer
+ * matches the validator, it answers with the full body: the download restarts from zero if nothing
+ * was handed to the caller yet, and fails otherwise.
+ *
+ * <p>Partial files are keyed by the url and all request headers, so requests with different
+ * credentials never share a body. Only one download at a time owns the files of a key; concurrent
+ * downloads of the same request are streamed without a partial file and can't be resumed later.
+ */
+@Singleton
+class ResumableHttpDownloader {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  private static final String DOWNLOADS_DIR = "pcs_http_downloads";
+  private static final String PARTIAL_FILE_SUFFIX = ".part";
+  private static final String STATE_FILE_SUFFIX = ".state";
+  private static final Duration PARTIAL_FILE_TTL = Duration.ofDays(7);
+  private static final Pattern CONTENT_RANGE_PATTERN =
+      Pattern.compile("bytes (\\d+)-\\d+/(\\d+|\\*)");
+
+  @VisibleForTesting static final int MAX_ATTEMPTS = 3;
+
+  private final Context context;
+  private final OkHttpClient client;
+
+  /** Keys whose partial files are owned by an open {@link Download}. */
+  private final Set<String> ownedKeys = ConcurrentHashMap.newKeySet();
+
+  @Inject
+  ResumableHttpDownloader(@ApplicationContext Context context, OkHttpClient client) {
+    this.context = context;
+    this.client = client;
+  }
+
+  /**
+   * Starts downloading the given request, resuming from a partial file left by a previous call if
+   * possible. The caller must close the returned download.
+   *
+   * @throws IOException if no response was received after {@link #MAX_ATTEMPTS} attempts
+   */
+  Download open(Request request) throws IOException {
+    File dir = new File(context.getCacheDir(), DOWNLOADS_DIR);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IOException("Unable to create " + dir);
+    }
+    String key = cacheKey(request);
+    @Nullable String ownedKey = ownedKeys.add(key) ? key : null;
+    if (ownedKey == null) {
+      logger.atInfo().log(
+          "Download of '%s' already in progress, not keeping a partial file", request.url());
+    }
+    Download download = new Download(request, dir, ownedKey);
+    try {
+      deleteExpiredPartialFiles(dir);
+      download.connect();
+      return download;
+    } catch (IOException | RuntimeException e) {
+      download.close();
+      throw e;
+    }
+  }
+
+  /**
+   * The body of a download, read from the partial file left by a previous call and then from the
+   * network. Reading it appends to the partial file; the file is deleted once the whole body was
+   * read, and kept for a later call otherwise.
+   */
+  final class Download extends InputStream {
+    private final Request request;
+    private final String url;
+    @Nullable private final String ownedKey;
+    @Nullable private final File partialFile;
+    @Nullable private final File stateFile;
+
+    private int attempts = 0;
+    private int responseCode;
+    private Headers headers;
+    private long expectedLength = -1;
+    @Nullable private String validator;
+
+    @Nullable private InputStream replay;
+    @Nullable private Response response;
+    @Nullable private BufferedSource network;
+    @Nullable private OutputStream partialOut;
+    private long position = 0;
+    private long networkBytes = 0;
+    private boolean completed = false;
+    private boolean closed = false;
+
+    private Download(Request request, File dir, @Nullable String ownedKey) {
+      this.request = request;
+      this.url = request.url().toString();
+      this.ownedKey = ownedKey;
+      this.partialFile = ownedKey == null ? null : new File(dir, ownedKey + PARTIAL_FILE_SUFFIX);
+      this.stateFile = ownedKey == null ? null : new File(dir, ownedKey + STATE_FILE_SUFFIX);
+    }
+
+    /** The response code of the complete body, 200 when a partial file is resumed. */
+    int responseCode() {
+      return responseCode;
+    }
+
+    /** The response headers, rewritten to describe the complete body when resumed. */
+    Headers headers() {
+      return headers;
+    }
+
+    /** The length of the complete body, or -1 if unknown. */
+    long contentLength() {
+      return expectedLength;
+    }
+
+    /** The number of body bytes received from the network so far. */
+    long networkBytes() {
+      return networkBytes;
+    }
+
+    private void connect() throws IOException {
+      while (true) {
+        attempts++;
+        PartialState state = stateFile == null ? null : PartialState.read(stateFile, url);
+        long offset = state != null && partialFile.exists() ? partialFile.length() : 0;
+
+        Request.Builder attemptRequest = request.newBuilder();
+        if (offset > 0) {
+          logger.atInfo().log("Resuming download of '%s' at byte %d", url, offset);
+          attemptRequest
+              .header("Range", "bytes=" + offset + "-")
+              .header("If-Range", state.validator());
+        }
+
+        Response attemptResponse;
+        try {
+          attemptResponse = client.newCall(attemptRequest.build()).execute();
+        } catch (IOException e) {
+          if (attempts >= MAX_ATTEMPTS) {
+            throw e;
+          }
+          logger.atWarning().withCause(e).log(
+              "Download of '%s' failed (attempt %d/%d)", url, attempts, MAX_ATTEMPTS);
+          continue;
+        }
+
+        int code = attemptResponse.code();
+        boolean resumed = offset > 0 && code == 206 && rangeStart(attemptResponse) == offset;
+        if (!resumed && (code == 206 || code == 416)) {
+          // The partial file doesn't line up with the server's body, start over.
+          attemptResponse.close();
+          deleteFiles();
+          if (attempts >= MAX_ATTEMPTS) {
+            throw new IOException("Unexpected response code " + code + " for " + url);
+          }
+          logger.atWarning().log("Discarding partial download of '%s'", url);
+          continue;
+        }
+        if (!resumed) {
+          offset = 0;
+        }
+        start(attemptResponse, offset);
+        return;
+      }
+    }
+
+    private void start(Response response, long offset) throws IOException {
+      this.response = response;
+      ResponseBody body = response.body();
+      network = body == null ? null : body.source();
+      expectedLength = expectedLength(response, offset);
+      position = offset;
+
+      headers = response.headers();
+      responseCode = response.code();
+      if (offset > 0) {
+        responseCode = 200;
+        Headers.Builder builder = headers.newBuilder().removeAll("Content-Range");
+        if (expectedLength >= 0) {
+          builder.set("Content-Length", Long.toString(expectedLength));
+        } else {
+          builder.removeAll("Content-Length");
+        }
+        headers = builder.build();
+      }
+
+      if (!response.isSuccessful() || body == null) {
+        return;
+      }
+      PartialState newState = PartialState.fromResponse(url, response, expectedLength);
+      validator = newState == null ? null : newState.validator();
+      if (stateFile == null) {
+        return;
+      }
+      if (newState == null) {
+        // Without a validator the body can't be safely resumed by a later call.
+        deleteFiles();
+        return;
+      }
+      newState.write(stateFile);
+      if (offset > 0) {
+        // The replay is opened before appending, and limited to the bytes already on disk.
+        replay = ByteStreams.limit(new FileInputStream(partialFile), offset);
+      }
+      partialOut = new FileOutputStream(partialFile, /* append= */ offset > 0);
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Download closed");
+      }
+      if (len == 0) {
+        return 0;
+      }
+      if (replay != null) {
+        int bytesRead = replay.read(b, off, len);
+        if (bytesRead != -1) {
+          position += bytesRead;
+          return bytesRead;
+        }
+        closeQuietly(replay);
+        replay = null;
+      }
+      while (true) {
+        if (network == null) {
+          return finishBody();
+        }
+        int bytesRead;
+        try {
+          bytesRead = network.read(b, off, len);
+        } catch (IOException e) {
+          if (closed) {
+            throw e;
+          }
+          resume(e);
+          continue;
+        }
+        if (bytesRead == -1) {
+          return finishBody();
+        }
+        if (partialOut != null) {
+          partialOut.write(b, off, bytesRead);
+        }
+        position += bytesRead;
+        networkBytes += bytesRead;
+        return bytesRead;
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      if (replay != null) {
+        return replay.available();
+      }
+      return network == null ? 0 : (int) Math.min(network.getBuffer().size(), Integer.MAX_VALUE);
+    }
+
+    /** Resumes the body at the current position after the connection dropped. */
+    private void resume(IOException cause) throws IOException {
+      closeResponse();
+      if (validator == null || expectedLength < 0) {
+        throw cause;
+      }
+      while (attempts < MAX_ATTEMPTS) {
+        attempts++;
+        logger.atWarning().withCause(cause).log(
+            "Download of '%s' interrupted at byte %d (attempt %d/%d)",
+            url, position, attempts, MAX_ATTEMPTS);
+        Response attemptResponse;
+        try {
+          attemptResponse =
+              client
+                  .newCall(
+                      request
+                          .newBuilder()
+                          .header("Range", "bytes=" + position + "-")
+                          .header("If-Range", validator)
+                          .build())
+                  .execute();
+        } catch (IOException e) {
+          cause = e;
+          continue;
+        }
+        ResponseBody body = attemptResponse.body();
+        if (attemptResponse.code() != 206
+            || rangeStart(attemptResponse) != position
+            || body == null) {
+          // Part of the body was already handed out, it can't be restarted from zero.
+          attemptResponse.close();
+          deleteFiles();
+          throw new IOException(
+              String.format(
+                  "Body of '%s' changed while resuming, response code %d",
+                  url, attemptResponse.code()));
+        }
+        response = attemptResponse;
+        network = body.source();
+        return;
+      }
+      throw cause;
+    }
+
+    private int finishBody() throws IOException {
+      closeResponse();
+      if (expectedLength >= 0 && position != expectedLength) {
+        deleteFiles();
+        throw new IOException(
+            String.format(
+                "Downloaded %d bytes from '%s' but expected %d", position, url, expectedLength));
+      }
+      completed = true;
+      return -1;
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      closeQuietly(replay);
+      closeResponse();
+      closeQuietly(partialOut);
+      if (ownedKey == null) {
+        return;
+      }
+      if (completed || !stateFile.exists()) {
+        deleteFiles();
+      }
+      ownedKeys.remove(ownedKey);
+    }
+
+    private void closeResponse() {
+      if (response != null) {
+        response.close();
+        response = null;
+      }
+      network = null;
+    }
+
+    /** Deletes the partial file and its state, if this download owns them. */
+    private void deleteFiles() {
+      if (partialFile != null) {
+        partialFile.delete();
+        stateFile.delete();
+      }
+    }
+  }
+
+  /** Returns the name of the files holding the partial body of the request. */
+  private static String cacheKey(Request request) {
+    Headers headers = request.headers();
+    List<String> lines = new ArrayList<>(headers.size());
+    for (int i = 0; i < headers.size(); i++) {
+      lines.add(headers.name(i).toLowerCase(Locale.ROOT) + ": " + headers.value(i));
+    }
+    // Header order doesn't change the body, only their names and values do.
+    Collections.sort(lines);
+    Hasher hasher = Hashing.sha256().newHasher().putString(request.url().toString(), UTF_8);
+    for (String line : lines) {
+      hasher.putByte((byte) '\n').putString(line, UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void closeQuietly(@Nullable Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to close download stream");
+    }
+  }
+
+  /** Returns the first byte position of a 206 response, or -1 if it can't be parsed. */
+  private static long rangeStart(Response response) {
+    Matcher matcher = contentRangeMatcher(response);
+    return matcher != null ? Long.parseLong(matcher.group(1)) : -1;
+  }
+
+  /** Returns the length of the complete body, or -1 if unknown. */
+  private static long expectedLength(Response response, long offset) {
+    Matcher matcher = contentRangeMatcher(response);
+    if (matcher != null && !matcher.group(2).equals("*")) {
+      return Long.parseLong(matcher.group(2));
+    }
+    ResponseBody body = response.body();
+    long contentLength = body == null ? -1 : body.contentLength();
+    return contentLength >= 0 ? offset + contentLength : -1;
+  }
+
+  @Nullable
+  private static Matcher contentRangeMatcher(Response response) {
+    String contentRange = response.header("Content-Range");
+    if (contentRange == null) {
+      return null;
+    }
+    Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange);
+    return matcher.matches() ? matcher : null;
+  }
+
+  /** Deletes partial files that were abandoned, skipping the ones owned by an open download. */
+  private void deleteExpiredPartialFiles(File dir) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    long expiry = System.currentTimeMillis() - PARTIAL_FILE_TTL.toMillis();
+    for (File file : files) {
+      String name = file.getName();
+      String key = name.substring(0, Math.max(name.lastIndexOf('.'), 0));
+      if (file.lastModified() < expiry && !ownedKeys.contains(key)) {
+        file.delete();
+      }
+    }
+  }
+
+  /** Validators of a partially downloaded body, persisted next to the partial file. */
+  private record PartialState(String url, String validator, long expectedLength) {
+    private static final String KEY_URL = "url";
+    private static final String KEY_VALIDATOR = "validator";
+    private static final String KEY_EXPECTED_LENGTH = "expectedLength";
+
+    /** Returns the state to persist for the response, or null if it can't be resumed. */
+    @Nullable
+    static PartialState fromResponse(String url, Response response, long expectedLength) {
+      if (expectedLength < 0 || !"bytes".equals(response.header("Accept-Ranges", "bytes"))) {
+        return null;
+      }
+      // A strong ETag is preferred, weak ones are not allowed in If-Range.
+      String etag = response.header("ETag");
+      if (etag != null && !etag.startsWith("W/")) {
+        return new PartialState(url, etag, expectedLength);
+      }
+      String lastModified = response.header("Last-Modified");
+      if (lastModified != null) {
+        return new PartialState(url, lastModified, expectedLength);
+      }
+      return null;
+    }
+
+    @Nullable
+    static PartialState read(File stateFile, String url) {
+      if (!stateFile.exists()) {
+        return null;
+      }
+      Properties properties = new Properties();
+      try (InputStream is = new FileInputStream(stateFile)) {
+        properties.load(is);
+        if (!url.equals(properties.getProperty(KEY_URL))) {
+          return null;
+        }
+        return new PartialState(
+            url,
+            properties.getProperty(KEY_VALIDATOR),
+            Long.parseLong(properties.getProperty(KEY_EXPECTED_LENGTH)));
+      } catch (IOException | RuntimeException e) {
+        logger.atWarning().withCause(e).log("Discarding unreadable download state");
+        stateFile.delete();
+        return null;
+      }
+    }
+
+    void write(File stateFile) throws IOException {
+      Properties properties = new Properties();
+      properties.setProperty(KEY_URL, url);
+      properties.setProperty(KEY_VALIDATOR, validator);
+      properties.setProperty(KEY_EXPECTED_LENGTH, Long.toString(expectedLength));
+      try (OutputStream os = new FileOutputStream(stateFile)) {
+        properties.store(os, /* comments= */ null);
+      }
+    }
+  }
+}
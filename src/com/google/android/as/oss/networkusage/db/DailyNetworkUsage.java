@@ -0,0 +1,52 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.networkusage.db;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Network usage of one package during one day, aggregated by the database from the entities of the
+ * Network Usage Log.
+ */
+@AutoValue
+public abstract class DailyNetworkUsage {
+
+  /** The day of the usage, as the number of days since the epoch in the device's time zone. */
+  public abstract long epochDay();
+
+  public abstract String packageName();
+
+  /** The number of entities logged for the package during the day. */
+  public abstract int entityCount();
+
+  /** The sum of the download sizes in bytes. */
+  public abstract long totalDownloadSize();
+
+  /** The sum of the upload sizes in bytes. */
+  public abstract long totalUploadSize();
+
+  /** Required by Room. */
+  public static DailyNetworkUsage create(
+      long epochDay,
+      String packageName,
+      int entityCount,
+      long totalDownloadSize,
+      long totalUploadSize) {
+    return new AutoValue_DailyNetworkUsage(
+        epochDay, packageName, entityCount, totalDownloadSize, totalUploadSize);
+  }
+}
@@ -23,6 +23,7 @@ import android.os.Parcelable;
 import androidx.room.ColumnInfo;
 import androidx.room.Embedded;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import arcs.core.data.proto.PolicyProto;
 import com.google.auto.value.AutoValue;
@@ -35,7 +36,13 @@ import java.util.Comparator;
 
 /** Room entity representing an entry of PCS's Network Usage Log. */
 @AutoValue
-@Entity(tableName = "NetworkUsageLog")
+@Entity(
+    tableName = "NetworkUsageLog",
+    indices = {
+      @Index("creationTime"),
+      @Index({"type", "packageName"}),
+      @Index("fcRunId"),
+    })
 public abstract class NetworkUsageEntity implements Parcelable {
 
   /** Comparator for sorting by decreasing creation time. */
@@ -52,9 +52,21 @@ public interface NetworkUsageLogRepository {
   /** Returns the NetworkUsageLogContentMap mapping ConnectionDetails to ConnectionResources. */
   Optional<NetworkUsageLogContentMap> getContentMap();
 
-  /** Returns the list of NetworkUsageEntities in the database. */
+  /** Returns the list of NetworkUsageEntities in the database, latest first. */
   LiveData<List<NetworkUsageEntity>> getAll();
 
+  /**
+   * Loads the page of at most {@code pageSize} entities that directly follows {@code lastEntity},
+   * latest first. Pass an empty {@code lastEntity} to load the first page.
+   */
+  void getPage(
+      Optional<NetworkUsageEntity> lastEntity,
+      int pageSize,
+      FutureCallback<List<NetworkUsageEntity>> callback);
+
+  /** Returns the per-package download and upload sums of each day in the device's time zone. */
+  LiveData<List<DailyNetworkUsage>> getDailyUsage();
+
   /** Deletes all entities before the given instant. */
   void deleteAllBefore(Instant instant, FutureCallback<Integer> callback);
 }
@@ -20,6 +20,7 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import com.google.android.as.oss.networkusage.db.DailyNetworkUsage;
 import com.google.android.as.oss.networkusage.db.NetworkUsageEntity;
 import com.google.common.util.concurrent.ListenableFuture;
 import java.time.Instant;
@@ -35,6 +36,10 @@ public interface NetworkUsageEntitiesDao {
   @Insert
   ListenableFuture<Long> insert(NetworkUsageEntity networkUsageEntity);
 
+  /** Inserts all given entities in a single transaction and returns their row numbers. */
+  @Insert
+  ListenableFuture<List<Long>> insertAll(List<NetworkUsageEntity> networkUsageEntities);
+
   /** Returns the number of deleted rows, or -1 in case of failure. */
   @Query("DELETE FROM NetworkUsageLog WHERE creationTime <= :latestCreationTime")
   ListenableFuture<Integer> deleteAllBefore(Instant latestCreationTime);
@@ -42,6 +47,33 @@ public interface NetworkUsageEntitiesDao {
   @Query("SELECT * FROM NetworkUsageLog WHERE id = :id")
   NetworkUsageEntity getNetworkUsageEntityWithId(int id);
 
-  @Query("SELECT * FROM NetworkUsageLog")
+  /** Returns all entities, latest first. */
+  @Query("SELECT * FROM NetworkUsageLog ORDER BY creationTime DESC, id DESC")
   LiveData<List<NetworkUsageEntity>> getAll();
+
+  /**
+   * Returns up to {@code pageSize} entities ordered strictly after the entity identified by {@code
+   * (creationTimeMillis, id)}, latest first. Pass the last entity of the previous page to get the
+   * next one, or {@link Long#MAX_VALUE} as creation time to get the first page.
+   */
+  @Query(
+      "SELECT * FROM NetworkUsageLog"
+          + " WHERE creationTime < :creationTimeMillis"
+          + " OR (creationTime = :creationTimeMillis AND id < :id)"
+          + " ORDER BY creationTime DESC, id DESC LIMIT :pageSize")
+  ListenableFuture<List<NetworkUsageEntity>> getPageBefore(
+      long creationTimeMillis, int id, int pageSize);
+
+  /**
+   * Returns the per-package, per-day download and upload sums, latest day first. Days are local
+   * dates in the device's time zone, each entity being bucketed with the UTC offset in effect at
+   * its own creation time.
+   */
+  @Query(
+      "SELECT CAST(julianday(date(creationTime / 1000, 'unixepoch', 'localtime')) - 2440587.5"
+          + " AS INTEGER) AS epochDay, packageName, COUNT(*) AS entityCount,"
+          + " SUM(downloadSize) AS totalDownloadSize, SUM(uploadSize) AS totalUploadSize"
+          + " FROM NetworkUsageLog GROUP BY epochDay, packageName"
+          + " ORDER BY epochDay DESC, packageName")
+  LiveData<List<DailyNetworkUsage>> getDailyUsage();
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.networkusage.db.impl;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.as.oss.common.ExecutorAnnotations.NetworkUsageLogExecutorQualifier;
+import com.google.android.as.oss.networkusage.db.NetworkUsageEntity;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Bounded write-behind queue for {@link NetworkUsageEntity} inserts.
+ *
+ * <p>Entities are buffered and written to the database in batches, each in a single transaction.
+ * A batch is flushed as soon as {@link #MAX_BATCH_SIZE} entities are pending, or {@link
+ * #MAX_FLUSH_DELAY} after the first entity of the batch was enqueued, whichever comes first. When
+ * {@link #MAX_PENDING_ENTITIES} entities are already waiting, new entities are dropped and their
+ * callback fails with a {@link RejectedExecutionException}.
+ */
+@Singleton
+class NetworkUsageEntityWriteQueue {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  @VisibleForTesting static final int MAX_BATCH_SIZE = 64;
+  @VisibleForTesting static final int MAX_PENDING_ENTITIES = 1024;
+  @VisibleForTesting static final Duration MAX_FLUSH_DELAY = Duration.ofMillis(500);
+
+  private final NetworkUsageLogDatabase database;
+  private final ListeningScheduledExecutorService executor;
+  private final AtomicLong droppedEntitiesCount = new AtomicLong();
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final ArrayDeque<PendingInsert> pendingInserts = new ArrayDeque<>();
+
+  @GuardedBy("lock")
+  private boolean flushScheduled = false;
+
+  @Inject
+  NetworkUsageEntityWriteQueue(
+      NetworkUsageLogDatabase database,
+      @NetworkUsageLogExecutorQualifier ListeningScheduledExecutorService executor) {
+    this.database = database;
+    this.executor = executor;
+  }
+
+  /**
+   * Adds the given entity to the queue. The callback is invoked once the batch containing the
+   * entity is written, or immediately if the queue is full.
+   */
+  void enqueue(NetworkUsageEntity entity, FutureCallback<Boolean> callback) {
+    boolean dropped = false;
+    boolean flushNow = false;
+    boolean scheduleFlush = false;
+    synchronized (lock) {
+      if (pendingInserts.size() >= MAX_PENDING_ENTITIES) {
+        dropped = true;
+      } else {
+        pendingInserts.add(new PendingInsert(entity, callback));
+        if (pendingInserts.size() >= MAX_BATCH_SIZE) {
+          flushNow = true;
+        } else if (!flushScheduled) {
+          flushScheduled = true;
+          scheduleFlush = true;
+        }
+      }
+    }
+
+    if (dropped) {
+      logger.atWarning().log(
+          "NetworkUsageEntity write queue is full, dropped %d entities so far",
+          droppedEntitiesCount.incrementAndGet());
+      callback.onFailure(new RejectedExecutionException("NetworkUsageEntity write queue is full"));
+    } else if (flushNow) {
+      executor.execute(this::flush);
+    } else if (scheduleFlush) {
+      executor.schedule(this::flush, MAX_FLUSH_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Returns the number of entities dropped because the queue was full. */
+  long getDroppedEntitiesCount() {
+    return droppedEntitiesCount.get();
+  }
+
+  @VisibleForTesting
+  void flush() {
+    ImmutableList<PendingInsert> batch;
+    boolean hasMore;
+    synchronized (lock) {
+      ImmutableList.Builder<PendingInsert> builder = ImmutableList.builder();
+      for (int i = 0; i < MAX_BATCH_SIZE && !pendingInserts.isEmpty(); i++) {
+        builder.add(pendingInserts.poll());
+      }
+      batch = builder.build();
+      hasMore = !pendingInserts.isEmpty();
+      if (!hasMore) {
+        flushScheduled = false;
+      }
+    }
+
+    if (hasMore) {
+      executor.execute(this::flush);
+    }
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    Futures.addCallback(
+        database.insertNetworkUsageEntities(
+            batch.stream().map(PendingInsert::entity).collect(ImmutableList.toImmutableList())),
+        new FutureCallback<Boolean>() {
+          @Override
+          public void onSuccess(Boolean result) {
+            for (PendingInsert pendingInsert : batch) {
+              pendingInsert.callback().onSuccess(result);
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            for (PendingInsert pendingInsert : batch) {
+              pendingInsert.callback().onFailure(t);
+            }
+          }
+        },
+        executor);
+  }
+
+  private record PendingInsert(NetworkUsageEntity entity, FutureCallback<Boolean> callback) {}
+}
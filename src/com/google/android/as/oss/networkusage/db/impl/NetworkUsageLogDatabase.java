@@ -30,14 +30,16 @@ import com.google.common.util.concurrent.FluentFuture;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import java.time.Instant;
+import java.util.List;
 
 /** Room database implementation for storing PCS's Network Usage Log. */
 @Database(
     entities = {NetworkUsageEntity.class},
-    version = 3,
+    version = 4,
     autoMigrations = {
       @AutoMigration(from = 1, to = 2),
-      @AutoMigration(from = 2, to = 3, spec = NulAutoMigration.class)
+      @AutoMigration(from = 2, to = 3, spec = NulAutoMigration.class),
+      @AutoMigration(from = 3, to = 4)
     })
 @TypeConverters({Converters.class})
 public abstract class NetworkUsageLogDatabase extends RoomDatabase {
@@ -55,6 +57,17 @@ public abstract class NetworkUsageLogDatabase extends RoomDatabase {
         .transform(rowId -> (rowId != -1L), MoreExecutors.directExecutor());
   }
 
+  /**
+   * Inserts the given entities in a single transaction. Returns true if the batch was committed,
+   * false otherwise.
+   */
+  ListenableFuture<Boolean> insertNetworkUsageEntities(List<NetworkUsageEntity> entities) {
+    logger.atInfo().log("Inserting batch of %d NetworkUsageEntities", entities.size());
+    return FluentFuture.from(dao().insertAll(entities))
+        .transform(rowIds -> !rowIds.contains(-1L), MoreExecutors.directExecutor())
+        .catching(Throwable.class, any -> false, MoreExecutors.directExecutor());
+  }
+
   ListenableFuture<Integer> deleteAllBefore(Instant latestInstant) {
     return dao().deleteAllBefore(latestInstant);
   }
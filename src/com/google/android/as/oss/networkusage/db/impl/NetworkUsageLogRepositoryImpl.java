@@ -17,6 +17,8 @@
 package com.google.android.as.oss.networkusage.db.impl;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
 import androidx.preference.PreferenceManager;
@@ -24,6 +26,7 @@ import com.google.android.as.oss.common.ExecutorAnnotations.IoExecutorQualifier;
 import com.google.android.as.oss.common.config.ConfigReader;
 import com.google.android.as.oss.networkusage.config.NetworkUsageLogConfig;
 import com.google.android.as.oss.networkusage.db.ConnectionDetails.ConnectionType;
+import com.google.android.as.oss.networkusage.db.DailyNetworkUsage;
 import com.google.android.as.oss.networkusage.db.NetworkUsageEntity;
 import com.google.android.as.oss.networkusage.db.NetworkUsageLogRepository;
 import com.google.android.as.oss.networkusage.ui.content.NetworkUsageLogContentMap;
@@ -37,8 +40,10 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.Executor;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 /** Implementation of NetworkUsageLogRepository. */
+@Singleton
 public class NetworkUsageLogRepositoryImpl implements NetworkUsageLogRepository {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
 
@@ -47,6 +52,13 @@ public class NetworkUsageLogRepositoryImpl implements NetworkUsageLogRepository
   private final NetworkUsageLogContentMap contentMap;
   private final ConfigReader<NetworkUsageLogConfig> networkUsageLogConfigReader;
   private final Executor dbExecutor;
+  private final NetworkUsageEntityWriteQueue writeQueue;
+  private final SharedPreferences sharedPreferences;
+  private final String optInPreferenceKey;
+
+  // SharedPreferences only keeps a weak reference to its listeners, so it's held here.
+  private final OnSharedPreferenceChangeListener optInListener;
+  private volatile boolean userOptedIn;
 
   @Inject
   NetworkUsageLogRepositoryImpl(
@@ -54,12 +66,25 @@ public class NetworkUsageLogRepositoryImpl implements NetworkUsageLogRepository
       NetworkUsageLogDatabase database,
       NetworkUsageLogContentMap contentMap,
       ConfigReader<NetworkUsageLogConfig> networkUsageLogConfigReader,
-      @IoExecutorQualifier Executor dbExecutor) {
+      @IoExecutorQualifier Executor dbExecutor,
+      NetworkUsageEntityWriteQueue writeQueue) {
     this.context = context;
     this.database = database;
     this.contentMap = contentMap;
     this.networkUsageLogConfigReader = networkUsageLogConfigReader;
     this.dbExecutor = dbExecutor;
+    this.writeQueue = writeQueue;
+    this.sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
+    this.optInPreferenceKey = context.getString(R.string.pref_network_usage_log_enabled_key);
+    this.optInListener =
+        (prefs, key) -> {
+          // A null key means the preferences were cleared.
+          if (key == null || key.equals(optInPreferenceKey)) {
+            userOptedIn = readUserOptedIn();
+          }
+        };
+    this.userOptedIn = readUserOptedIn();
+    sharedPreferences.registerOnSharedPreferenceChangeListener(optInListener);
   }
 
   @Override
@@ -98,7 +123,7 @@ public class NetworkUsageLogRepositoryImpl implements NetworkUsageLogRepository
       return;
     }
 
-    Futures.addCallback(database.insertNetworkUsageEntity(entity), callback, dbExecutor);
+    writeQueue.enqueue(entity, callback);
   }
 
   @Override
@@ -150,16 +175,35 @@ public class NetworkUsageLogRepositoryImpl implements NetworkUsageLogRepository
     return database.dao().getAll();
   }
 
+  @Override
+  public void getPage(
+      Optional<NetworkUsageEntity> lastEntity,
+      int pageSize,
+      FutureCallback<List<NetworkUsageEntity>> callback) {
+    long creationTimeMillis =
+        lastEntity.map(entity -> entity.creationTime().toEpochMilli()).orElse(Long.MAX_VALUE);
+    int id = lastEntity.map(NetworkUsageEntity::id).orElse(Integer.MAX_VALUE);
+    Futures.addCallback(
+        database.dao().getPageBefore(creationTimeMillis, id, pageSize), callback, dbExecutor);
+  }
+
+  @Override
+  public LiveData<List<DailyNetworkUsage>> getDailyUsage() {
+    return database.dao().getDailyUsage();
+  }
+
   @Override
   public void deleteAllBefore(Instant instant, FutureCallback<Integer> callback) {
     Futures.addCallback(database.deleteAllBefore(instant), callback, dbExecutor);
   }
 
   boolean isUserOptedIn() {
-    String preferenceKey = context.getString(R.string.pref_network_usage_log_enabled_key);
-    return PreferenceManager.getDefaultSharedPreferences(context)
-        .getBoolean(
-            preferenceKey,
-            context.getResources().getBoolean(R.bool.pref_network_usage_log_enabled_default));
+    return userOptedIn;
+  }
+
+  private boolean readUserOptedIn() {
+    return sharedPreferences.getBoolean(
+        optInPreferenceKey,
+        context.getResources().getBoolean(R.bool.pref_network_usage_log_enabled_default));
   }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.networkusage.ui.content.impl;
+
+import androidx.annotation.Nullable;
+import com.google.android.as.oss.networkusage.api.proto.ConnectionKey;
+import com.google.android.as.oss.networkusage.db.ConnectionDetails;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable lookup index over the {@link ConnectionKey}s of the content map.
+ *
+ * <p>Feature-name keys are resolved through hash lookups, and regex keys are compiled once when the
+ * index is built instead of on every request. When several keys match, the first one in the
+ * content map's iteration order wins, same as a linear scan over the map would.
+ */
+final class ConnectionKeyIndex {
+
+  private final ImmutableMap<String, ConnectionDetails> flByFeatureName;
+  private final ImmutableMap<String, ConnectionDetails> attestationByFeatureName;
+  private final ImmutableMap<String, ConnectionDetails> feedbackByFeatureName;
+  private final ImmutableList<RegexEntry> httpEntries;
+  private final ImmutableList<RegexEntry> pirEntries;
+  private final ImmutableList<RegexEntry> surveyEntries;
+  private final ImmutableList<RegexEntry> pdEntries;
+
+  static ConnectionKeyIndex create(Iterable<ConnectionDetails> connectionDetails) {
+    Map<String, ConnectionDetails> fl = new LinkedHashMap<>();
+    Map<String, ConnectionDetails> attestation = new LinkedHashMap<>();
+    Map<String, ConnectionDetails> feedback = new LinkedHashMap<>();
+    ImmutableList.Builder<RegexEntry> http = ImmutableList.builder();
+    ImmutableList.Builder<RegexEntry> pir = ImmutableList.builder();
+    ImmutableList.Builder<RegexEntry> survey = ImmutableList.builder();
+    ImmutableList.Builder<RegexEntry> pd = ImmutableList.builder();
+
+    for (ConnectionDetails details : connectionDetails) {
+      ConnectionKey key = details.connectionKey();
+      switch (key.getConnectionKeyCase()) {
+        case FL_CONNECTION_KEY ->
+            fl.putIfAbsent(key.getFlConnectionKey().getFeatureName(), details);
+        case ATTESTATION_CONNECTION_KEY ->
+            attestation.putIfAbsent(key.getAttestationConnectionKey().getFeatureName(), details);
+        case FEEDBACK_CONNECTION_KEY ->
+            feedback.putIfAbsent(key.getFeedbackConnectionKey().getFeatureName(), details);
+        case HTTP_CONNECTION_KEY ->
+            http.add(new RegexEntry(key.getHttpConnectionKey().getUrlRegex(), details));
+        case PIR_CONNECTION_KEY ->
+            pir.add(new RegexEntry(key.getPirConnectionKey().getUrlRegex(), details));
+        case SURVEY_CONNECTION_KEY ->
+            survey.add(new RegexEntry(key.getSurveyConnectionKey().getUrlRegex(), details));
+        case PD_CONNECTION_KEY ->
+            pd.add(new RegexEntry(key.getPdConnectionKey().getClientId(), details));
+        default -> {}
+      }
+    }
+
+    return new ConnectionKeyIndex(
+        ImmutableMap.copyOf(fl),
+        ImmutableMap.copyOf(attestation),
+        ImmutableMap.copyOf(feedback),
+        http.build(),
+        pir.build(),
+        survey.build(),
+        pd.build());
+  }
+
+  private ConnectionKeyIndex(
+      ImmutableMap<String, ConnectionDetails> flByFeatureName,
+      ImmutableMap<String, ConnectionDetails> attestationByFeatureName,
+      ImmutableMap<String, ConnectionDetails> feedbackByFeatureName,
+      ImmutableList<RegexEntry> httpEntries,
+      ImmutableList<RegexEntry> pirEntries,
+      ImmutableList<RegexEntry> surveyEntries,
+      ImmutableList<RegexEntry> pdEntries) {
+    this.flByFeatureName = flByFeatureName;
+    this.attestationByFeatureName = attestationByFeatureName;
+    this.feedbackByFeatureName = feedbackByFeatureName;
+    this.httpEntries = httpEntries;
+    this.pirEntries = pirEntries;
+    this.surveyEntries = surveyEntries;
+    this.pdEntries = pdEntries;
+  }
+
+  Optional<ConnectionDetails> findHttp(String url) {
+    return findFirstMatch(httpEntries, url);
+  }
+
+  Optional<ConnectionDetails> findPir(String url) {
+    return findFirstMatch(pirEntries, url);
+  }
+
+  Optional<ConnectionDetails> findSurvey(String url) {
+    return findFirstMatch(surveyEntries, url);
+  }
+
+  Optional<ConnectionDetails> findPd(String clientId) {
+    return findFirstMatch(pdEntries, clientId);
+  }
+
+  Optional<ConnectionDetails> findFl(String featureName) {
+    return Optional.ofNullable(flByFeatureName.get(featureName));
+  }
+
+  Optional<ConnectionDetails> findAttestation(String featureName) {
+    return Optional.ofNullable(attestationByFeatureName.get(featureName));
+  }
+
+  Optional<ConnectionDetails> findFeedback(String featureName) {
+    return Optional.ofNullable(feedbackByFeatureName.get(featureName));
+  }
+
+  private static Optional<ConnectionDetails> findFirstMatch(
+      ImmutableList<RegexEntry> entries, String input) {
+    for (RegexEntry entry : entries) {
+      if (entry.matches(input)) {
+        return Optional.of(entry.details);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * A compiled regex key. Keys without regex metacharacters are compared as plain strings, which
+   * avoids running the regex engine for the common case of a fixed url or client id.
+   */
+  private static final class RegexEntry {
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final ConnectionDetails details;
+    @Nullable private final String literal;
+    @Nullable private final Pattern pattern;
+
+    RegexEntry(String regex, ConnectionDetails details) {
+      this.details = details;
+      if (isLiteral(regex)) {
+        this.literal = regex;
+        this.pattern = null;
+      } else {
+        this.literal = null;
+        this.pattern = Pattern.compile(regex);
+      }
+    }
+
+    boolean matches(String input) {
+      return pattern == null ? literal.equals(input) : pattern.matcher(input).matches();
+    }
+
+    private static boolean isLiteral(String regex) {
+      for (int i = 0; i < regex.length(); i++) {
+        if (REGEX_METACHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -22,7 +22,6 @@ import static com.google.android.as.oss.networkusage.db.ConnectionDetails.Connec
 
 import android.content.Context;
 import androidx.annotation.StringRes;
-import com.google.android.as.oss.networkusage.api.proto.ConnectionKey;
 import com.google.android.as.oss.networkusage.db.ConnectionDetails;
 import com.google.android.as.oss.networkusage.ui.content.NetworkUsageLogContentMap;
 import com.google.android.as.oss.networkusage.ui.user.R;
@@ -42,6 +41,7 @@ public final class NetworkUsageLogContentMapImpl implements NetworkUsageLogConte
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
 
   private final ImmutableMap<ConnectionDetails, ConnectionResources> entryContentMap;
+  private final ConnectionKeyIndex connectionKeyIndex;
   private final Context context;
 
   @Inject
@@ -50,15 +50,14 @@ public final class NetworkUsageLogContentMapImpl implements NetworkUsageLogConte
       ImmutableMap<ConnectionDetails, ConnectionResources> entryContentMap) {
     this.context = context;
     this.entryContentMap = entryContentMap;
+    this.connectionKeyIndex = ConnectionKeyIndex.create(entryContentMap.keySet());
   }
 
   @Override
   public Optional<ConnectionDetails> getHttpConnectionDetails(String url) {
-    for (ConnectionDetails details : entryContentMap.keySet()) {
-      if (details.connectionKey().hasHttpConnectionKey()
-          && url.matches(details.connectionKey().getHttpConnectionKey().getUrlRegex())) {
-        return Optional.of(details);
-      }
+    Optional<ConnectionDetails> details = connectionKeyIndex.findHttp(url);
+    if (details.isPresent()) {
+      return details;
     }
     logger.atWarning().log("Unauthorized https request for url '%s'", url);
     return Optional.empty();
@@ -66,12 +65,9 @@ public final class NetworkUsageLogContentMapImpl implements NetworkUsageLogConte
 
   @Override
   public Optional<ConnectionDetails> getAttestationConnectionDetails(String featureName) {
-    for (ConnectionDetails details : entryContentMap.keySet()) {
-      if (details.connectionKey().hasAttestationConnectionKey()
-          && featureName.equals(
-              details.connectionKey().getAttestationConnectionKey().getFeatureName())) {
-        return Optional.of(details);
-      }
+    Optional<ConnectionDetails> details = connectionKeyIndex.findAttestation(featureName);
+    if (details.isPresent()) {
+      return details;
     }
     logger.atWarning().log("Unauthorized Attestation request for feature name '%s'", featureName);
     return Optional.empty();
@@ -79,11 +75,9 @@ public final class NetworkUsageLogContentMapImpl implements NetworkUsageLogConte
 
   @Override
   public Optional<ConnectionDetails> getPirConnectionDetails(String url) {
-    for (ConnectionDetails details : entryContentMap.keySet()) {
-      if (details.connectionKey().hasPirConnectionKey()
-          && url.matches(details.connectionKey().getPirConnectionKey().getUrlRegex())) {
-        return Optional.of(details);
-      }
+    Optional<ConnectionDetails> details = connectionKeyIndex.findPir(url);
+    if (details.isPresent()) {
+      return details;
     }
     logger.atWarning().log("Unauthorized pir request for url '%s'", url);
     return Optional.empty();
@@ -91,11 +85,9 @@ public final class NetworkUsageLogContentMapImpl implements NetworkUsageLogConte
 
   @Override
   public Optional<ConnectionDetails> getSurveyConnectionDetails(String url) {
-    for (ConnectionDetails details : entryContentMap.keySet()) {
-      if (details.connectionKey().hasSurveyConnectionKey()
-          && url.matches(details.connectionKey().getSurveyConnectionKey().getUrlRegex())) {
-        return Optional.of(details);
-      }
+    Optional<ConnectionDetails> details = connectionKeyIndex.findSurvey(url);
+    if (details.isPresent()) {
+      return details;
     }
     logger.atWarning().log("Unauthorized Survey request for url '%s'", url);
     return Optional.empty();
@@ -103,12 +95,9 @@ public final class NetworkUsageLogContentMapImpl implements NetworkUsageLogConte
 
   @Override
   public Optional<ConnectionDetails> getFeedbackConnectionDetails(String featureName) {
-    for (ConnectionDetails details : entryContentMap.keySet()) {
-      if (details.connectionKey().hasFeedbackConnectionKey()
-          && featureName.equals(
-              details.connectionKey().getFeedbackConnectionKey().getFeatureName())) {
-        return Optional.of(details);
-      }
+    Optional<ConnectionDetails> details = connectionKeyIndex.findFeedback(featureName);
+    if (details.isPresent()) {
+      return details;
     }
     logger.atWarning().log("Unauthorized Feedback request for url '%s'", featureName);
     return Optional.empty();
@@ -116,11 +105,9 @@ public final class NetworkUsageLogContentMapImpl implements NetworkUsageLogConte
 
   @Override
   public Optional<ConnectionDetails> getPdConnectionDetails(String clientId) {
-    for (ConnectionDetails details : entryContentMap.keySet()) {
-      if (details.connectionKey().hasPdConnectionKey()
-          && clientId.matches(details.connectionKey().getPdConnectionKey().getClientId())) {
-        return Optional.of(details);
-      }
+    Optional<ConnectionDetails> details = connectionKeyIndex.findPd(clientId);
+    if (details.isPresent()) {
+      return details;
     }
     logger.atWarning().log("Unauthorized PD request for client Id '%s'", clientId);
     return Optional.empty();
@@ -128,12 +115,9 @@ public final class NetworkUsageLogContentMapImpl implements NetworkUsageLogConte
 
   @Override
   public Optional<ConnectionDetails> getFcStartQueryConnectionDetails(String featureName) {
-    for (ConnectionDetails details : entryContentMap.keySet()) {
-      ConnectionKey connectionKey = details.connectionKey();
-      if (connectionKey.hasFlConnectionKey()
-          && featureName.equals(connectionKey.getFlConnectionKey().getFeatureName())) {
-        return Optional.of(details);
-      }
+    Optional<ConnectionDetails> details = connectionKeyIndex.findFl(featureName);
+    if (details.isPresent()) {
+      return details;
     }
     logger.atWarning().log("Unauthorized FC request for feature name '%s'", featureName);
     return Optional.empty();
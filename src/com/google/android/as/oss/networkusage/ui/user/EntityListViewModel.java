@@ -16,38 +16,151 @@
 
 package com.google.android.as.oss.networkusage.ui.user;
 
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 import androidx.lifecycle.ViewModelProvider;
+import com.google.android.as.oss.networkusage.db.DailyNetworkUsage;
 import com.google.android.as.oss.networkusage.db.NetworkUsageEntity;
 import com.google.android.as.oss.networkusage.db.NetworkUsageLogRepository;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.util.concurrent.FutureCallback;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
-/** ViewModel for the list of NetworkUsageEntities to show in the NetworkUsageLogFragment. */
+/**
+ * ViewModel for the list of NetworkUsageEntities to show in the NetworkUsageLogFragment.
+ *
+ * <p>Entities are loaded page by page, latest first, as the list is scrolled, and paging stops
+ * once the entities are older than the TTL of the log. The summary of the log is served by the
+ * per-day aggregates of the database, so the whole log is never loaded in memory.
+ */
 class EntityListViewModel extends ViewModel {
-  private final LiveData<List<NetworkUsageEntity>> entitiesLiveData;
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  @VisibleForTesting static final int PAGE_SIZE = 100;
+
+  private final NetworkUsageLogRepository repository;
+  private final Duration entitiesTtl;
+  private final MutableLiveData<ImmutableList<NetworkUsageEntity>> entitiesLiveData =
+      new MutableLiveData<>();
+  private final LiveData<List<DailyNetworkUsage>> dailyUsageLiveData;
+
+  private final Object lock = new Object();
 
-  public EntityListViewModel(NetworkUsageLogRepository repository) {
+  @GuardedBy("lock")
+  private ImmutableList<NetworkUsageEntity> loadedEntities = ImmutableList.of();
+
+  @GuardedBy("lock")
+  private boolean loading = false;
+
+  @GuardedBy("lock")
+  private boolean endReached = false;
+
+  // Incremented by refresh() so that pages requested before it are dropped.
+  @GuardedBy("lock")
+  private int generation = 0;
+
+  public EntityListViewModel(NetworkUsageLogRepository repository, Duration entitiesTtl) {
     super();
-    this.entitiesLiveData = repository.getAll();
+    this.repository = repository;
+    this.entitiesTtl = entitiesTtl;
+    this.dailyUsageLiveData = repository.getDailyUsage();
+    loadNextPage();
   }
 
-  LiveData<List<NetworkUsageEntity>> getEntityListLiveData() {
+  /** The entities loaded so far, latest first. */
+  LiveData<ImmutableList<NetworkUsageEntity>> getEntityListLiveData() {
     return entitiesLiveData;
   }
 
+  /** The per-package usage of each day, covering the whole log. */
+  LiveData<List<DailyNetworkUsage>> getDailyUsageLiveData() {
+    return dailyUsageLiveData;
+  }
+
+  /** Loads the next page of entities, unless one is already loading or all were loaded. */
+  void loadNextPage() {
+    Optional<NetworkUsageEntity> lastEntity;
+    int requestGeneration;
+    synchronized (lock) {
+      if (loading || endReached) {
+        return;
+      }
+      loading = true;
+      lastEntity = Optional.ofNullable(Iterables.getLast(loadedEntities, null));
+      requestGeneration = generation;
+    }
+
+    repository.getPage(
+        lastEntity,
+        PAGE_SIZE,
+        new FutureCallback<List<NetworkUsageEntity>>() {
+          @Override
+          public void onSuccess(List<NetworkUsageEntity> page) {
+            ImmutableList<NetworkUsageEntity> entities;
+            synchronized (lock) {
+              if (requestGeneration != generation) {
+                return;
+              }
+              loading = false;
+              endReached =
+                  page.size() < PAGE_SIZE
+                      || Iterables.getLast(page)
+                          .creationTime()
+                          .isBefore(MostRecentEntitiesProcessor.earliestPermittedDate(entitiesTtl));
+              loadedEntities =
+                  ImmutableList.<NetworkUsageEntity>builder()
+                      .addAll(loadedEntities)
+                      .addAll(page)
+                      .build();
+              entities = loadedEntities;
+            }
+            entitiesLiveData.postValue(entities);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            logger.atWarning().withCause(t).log("Failed to load a page of the network usage log");
+            synchronized (lock) {
+              if (requestGeneration == generation) {
+                loading = false;
+              }
+            }
+          }
+        });
+  }
+
+  /** Drops the loaded entities and loads the first page again. */
+  void refresh() {
+    synchronized (lock) {
+      generation++;
+      loadedEntities = ImmutableList.of();
+      loading = false;
+      endReached = false;
+    }
+    loadNextPage();
+  }
+
   /** ViewModel factory for EntityListViewModel. */
   static class EntityListViewModelFactory implements ViewModelProvider.Factory {
     private final NetworkUsageLogRepository repository;
+    private final Duration entitiesTtl;
 
-    public EntityListViewModelFactory(NetworkUsageLogRepository repository) {
+    public EntityListViewModelFactory(NetworkUsageLogRepository repository, Duration entitiesTtl) {
       this.repository = repository;
+      this.entitiesTtl = entitiesTtl;
     }
 
     @SuppressWarnings({"unchecked"})
     @Override
     public <T extends ViewModel> T create(Class<T> modelClass) {
-      return (T) new EntityListViewModel(repository);
+      return (T) new EntityListViewModel(repository, entitiesTtl);
     }
   }
 }
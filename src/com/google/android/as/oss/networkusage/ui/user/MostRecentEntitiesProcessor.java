@@ -34,10 +34,15 @@ public class MostRecentEntitiesProcessor implements EntityListProcessor {
   @Override
   public ImmutableList<NetworkUsageItemWrapper> process(
       ImmutableList<NetworkUsageItemWrapper> items) {
-    Instant earliestPermittedDate = Instant.now().truncatedTo(ChronoUnit.DAYS).minus(entitiesTtl);
+    Instant earliestPermittedDate = earliestPermittedDate(entitiesTtl);
     return items.stream()
         .map(wrapper -> wrapper.newerEntitiesOnly(earliestPermittedDate))
         .filter(filteredWrapper -> !filteredWrapper.networkUsageEntities().isEmpty())
         .collect(toImmutableList());
   }
+
+  /** Returns the creation time before which entities are no longer shown. */
+  static Instant earliestPermittedDate(Duration entitiesTtl) {
+    return Instant.now().truncatedTo(ChronoUnit.DAYS).minus(entitiesTtl);
+  }
 }
@@ -35,6 +35,7 @@ import com.google.android.as.oss.logging.PcsAtomsProto.IntelligenceCountReported
 import com.google.android.as.oss.logging.PcsStatsEnums.CountMetricId;
 import com.google.android.as.oss.logging.PcsStatsLog;
 import com.google.android.as.oss.networkusage.db.ConnectionDetails;
+import com.google.android.as.oss.networkusage.db.DailyNetworkUsage;
 import com.google.android.as.oss.networkusage.db.NetworkUsageEntity;
 import com.google.android.as.oss.networkusage.db.Status;
 import com.google.android.as.oss.networkusage.ui.content.NetworkUsageLogContentMap;
@@ -49,6 +50,7 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.Collection;
+import java.util.List;
 import java.util.StringJoiner;
 
 /** Utils for processing entities before displaying in the UI. */
@@ -62,6 +64,7 @@ class NetworkUsageItemUtils {
   static ImmutableList<LogItemWrapper> processEntityList(
       ImmutableList<NetworkUsageEntity> entityList,
       ImmutableList<EntityListProcessor> processors,
+      SummaryWrapper summary,
       NetworkUsageItemOnClickCallback callback) {
 
     ImmutableList<NetworkUsageItemWrapper> networkUsageItems =
@@ -72,7 +75,7 @@ class NetworkUsageItemUtils {
     }
     ImmutableList<LogItemWrapper> finalEntityList =
         ImmutableList.<LogItemWrapper>builder()
-            .add(NetworkUsageItemUtils.createSummary(networkUsageItems))
+            .add(summary)
             .addAll(NetworkUsageItemUtils.sortAndDivideByDates(networkUsageItems))
             .build();
 
@@ -108,19 +111,25 @@ class NetworkUsageItemUtils {
     return resultBuilder.build();
   }
 
-  /** Creates the {@link SummaryWrapper} from the given entities. */
-  @VisibleForTesting
-  static SummaryWrapper createSummary(ImmutableList<NetworkUsageItemWrapper> wrappers) {
+  /**
+   * Creates the {@link SummaryWrapper} from the per-day usage of the log, counting only the days
+   * from {@code earliestPermittedDate} on and skipping denylisted packages.
+   */
+  static SummaryWrapper createSummary(
+      List<DailyNetworkUsage> dailyUsage, Instant earliestPermittedDate) {
+    long earliestPermittedDay = getLocalDate(earliestPermittedDate).toEpochDay();
     int updatesCount = 0;
     long totalUpload = 0;
     long totalDownload = 0;
 
-    for (NetworkUsageItemWrapper wrapper : wrappers) {
-      updatesCount += wrapper.networkUsageEntities().size();
-      for (NetworkUsageEntity networkUsageEntity : wrapper.networkUsageEntities()) {
-        totalUpload += networkUsageEntity.uploadSize();
-        totalDownload += networkUsageEntity.downloadSize();
+    for (DailyNetworkUsage usage : dailyUsage) {
+      if (usage.epochDay() < earliestPermittedDay
+          || DenylistedEntitiesProcessor.DENYLISTED_PACKAGE_NAMES.contains(usage.packageName())) {
+        continue;
       }
+      updatesCount += usage.entityCount();
+      totalUpload += usage.totalUploadSize();
+      totalDownload += usage.totalDownloadSize();
     }
     return new SummaryWrapper(
         NetworkUsageSummary.builder()
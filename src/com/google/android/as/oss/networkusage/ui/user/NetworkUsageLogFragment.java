@@ -29,13 +29,16 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import com.google.android.as.oss.logging.PcsAtomsProto.IntelligenceCountReported;
 import com.google.android.as.oss.logging.PcsStatsEnums.CountMetricId;
 import com.google.android.as.oss.logging.PcsStatsLog;
+import com.google.android.as.oss.networkusage.db.DailyNetworkUsage;
 import com.google.android.as.oss.networkusage.db.NetworkUsageEntity;
+import com.google.android.as.oss.networkusage.db.NetworkUsageEntityTtl;
 import com.google.android.as.oss.networkusage.db.NetworkUsageLogRepository;
 import com.google.android.as.oss.networkusage.ui.content.NetworkUsageLogContentMap;
 import com.google.android.as.oss.networkusage.ui.user.EntityListViewModel.EntityListViewModelFactory;
 import com.google.common.collect.ImmutableList;
 import com.google.common.flogger.GoogleLogger;
 import dagger.hilt.android.AndroidEntryPoint;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
@@ -51,17 +54,19 @@ public class NetworkUsageLogFragment extends Hilt_NetworkUsageLogFragment
   @Inject PcsStatsLog pcsStatsLogger;
   @Inject NetworkUsageLogContentMap contentMap;
   @Inject ImmutableList<EntityListProcessor> entityListProcessors;
+  @Inject @NetworkUsageEntityTtl Duration entitiesTtl;
 
   private NetworkUsageLogAdapter adapter;
   private EntityListViewModel viewModel;
   private SwipeRefreshLayout swipeRefreshContainer;
+  private RecyclerView recyclerView;
 
   @Override
   public View onCreateView(
       LayoutInflater layoutInflater, @Nullable ViewGroup viewGroup, @Nullable Bundle bundle) {
     adapter = new NetworkUsageLogAdapter(contentMap);
     viewModel =
-        new ViewModelProvider(this, new EntityListViewModelFactory(repository))
+        new ViewModelProvider(this, new EntityListViewModelFactory(repository, entitiesTtl))
             .get(EntityListViewModel.class);
 
     View rootView = layoutInflater.inflate(R.layout.network_usage_log_fragment, viewGroup, false);
@@ -69,22 +74,27 @@ public class NetworkUsageLogFragment extends Hilt_NetworkUsageLogFragment
     swipeRefreshContainer = rootView.findViewById(R.id.log_swipe_refresh_container);
     swipeRefreshContainer.setOnRefreshListener(this);
 
-    RecyclerView recyclerView = rootView.findViewById(R.id.log_recycler_view);
+    recyclerView = rootView.findViewById(R.id.log_recycler_view);
     recyclerView.setAdapter(adapter);
     recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+    recyclerView.addOnScrollListener(
+        new RecyclerView.OnScrollListener() {
+          @Override
+          public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            loadNextPageIfAtEnd();
+          }
+        });
 
-    viewModel.getEntityListLiveData().observe(this, this::initRecyclerViewIfRequired);
+    viewModel.getEntityListLiveData().observe(this, unused -> reloadList());
+    viewModel.getDailyUsageLiveData().observe(this, unused -> reloadList());
 
     return rootView;
   }
 
   @Override
   public void onRefresh() {
-    if (viewModel.getEntityListLiveData().getValue() == null) {
-      return;
-    }
     logger.atFine().log("Refreshing entity list");
-    reloadList(viewModel.getEntityListLiveData().getValue());
+    viewModel.refresh();
   }
 
   @Override
@@ -100,25 +110,33 @@ public class NetworkUsageLogFragment extends Hilt_NetworkUsageLogFragment
     super.onDestroy();
   }
 
-  private void initRecyclerViewIfRequired(List<NetworkUsageEntity> entityList) {
-    if (!adapter.getCurrentList().isEmpty() || entityList == null) {
-      return;
-    }
-    logger.atFine().log("Initializing entity list");
-    reloadList(entityList);
-    // The initial submitList() runs on the main thread, so setRefreshing(false) is required here
-    swipeRefreshContainer.setRefreshing(false);
-  }
-
-  private void reloadList(@Nullable List<NetworkUsageEntity> entityList) {
-    if (entityList == null) {
+  private void reloadList() {
+    ImmutableList<NetworkUsageEntity> entityList = viewModel.getEntityListLiveData().getValue();
+    List<DailyNetworkUsage> dailyUsage = viewModel.getDailyUsageLiveData().getValue();
+    if (entityList == null || dailyUsage == null) {
       return;
     }
     swipeRefreshContainer.setRefreshing(true);
     ImmutableList<LogItemWrapper> items =
         NetworkUsageItemUtils.processEntityList(
-            ImmutableList.copyOf(entityList), entityListProcessors, callback);
-    adapter.submitList(items, () -> swipeRefreshContainer.setRefreshing(false));
+            entityList,
+            entityListProcessors,
+            NetworkUsageItemUtils.createSummary(
+                dailyUsage, MostRecentEntitiesProcessor.earliestPermittedDate(entitiesTtl)),
+            callback);
+    adapter.submitList(
+        items,
+        () -> {
+          swipeRefreshContainer.setRefreshing(false);
+          // Keep paging while the loaded entities don't fill the screen.
+          loadNextPageIfAtEnd();
+        });
+  }
+
+  private void loadNextPageIfAtEnd() {
+    if (!recyclerView.canScrollVertically(/* direction= */ 1)) {
+      viewModel.loadNextPage();
+    }
   }
 
   static class NoItemInspectedCallback implements NetworkUsageItemOnClickCallback {
@@ -33,6 +33,8 @@ abstract class AndroidKeyStoreMasterKeyProviderModule {
   @Singleton
   @Provides
   static MasterKeyProvider provideAndroidKMSMasterKey() {
-    return () -> AndroidKeystoreKmsClient.getOrGenerateNewAeadKey(KEYSTORE_URI);
+    // Keeps the master key Aead in memory to avoid a keystore round-trip per keyset operation.
+    return new CachingMasterKeyProvider(
+        () -> AndroidKeystoreKmsClient.getOrGenerateNewAeadKey(KEYSTORE_URI));
   }
 }
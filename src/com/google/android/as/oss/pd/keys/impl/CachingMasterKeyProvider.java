@@ -0,0 +1,57 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.pd.keys.impl;
+
+import com.google.crypto.tink.Aead;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+/**
+ * A {@link MasterKeyProvider} that reads the master key from its delegate once and keeps the
+ * resulting {@link Aead} for the lifetime of the process, until {@link #invalidateCachedMasterKey}
+ * is called.
+ */
+public final class CachingMasterKeyProvider implements MasterKeyProvider {
+
+  private final MasterKeyProvider delegate;
+  private volatile Aead cachedMasterKey;
+
+  public CachingMasterKeyProvider(MasterKeyProvider delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public Aead readOrGenerateMasterKey() throws GeneralSecurityException, IOException {
+    Aead masterKey = cachedMasterKey;
+    if (masterKey == null) {
+      synchronized (this) {
+        masterKey = cachedMasterKey;
+        if (masterKey == null) {
+          masterKey = delegate.readOrGenerateMasterKey();
+          cachedMasterKey = masterKey;
+        }
+      }
+    }
+    return masterKey;
+  }
+
+  @Override
+  public void invalidateCachedMasterKey() {
+    cachedMasterKey = null;
+    delegate.invalidateCachedMasterKey();
+  }
+}
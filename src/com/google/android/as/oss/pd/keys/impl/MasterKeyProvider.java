@@ -23,4 +23,10 @@ import java.security.GeneralSecurityException;
 /** A functional interface for providing a master-key for encrypting/decrypting keysets from KMS. */
 public interface MasterKeyProvider {
   Aead readOrGenerateMasterKey() throws GeneralSecurityException, IOException;
+
+  /**
+   * Drops any master key held in memory, so the next {@link #readOrGenerateMasterKey} call reads it
+   * again. Called when the master key may have been rotated or invalidated.
+   */
+  default void invalidateCachedMasterKey() {}
 }
@@ -33,6 +33,13 @@ class TinkEncryptionHelper implements EncryptionHelper {
   private final KeysetHandle handle;
   private final boolean hasPrivateKey;
 
+  // Primitives are derived from the immutable keyset, so they are built once per helper, which
+  // TinkEncryptionHelperFactory caches per key. Concurrent first calls may build them more than
+  // once, which is harmless.
+  private volatile HybridDecrypt hybridDecrypt;
+  private volatile HybridEncrypt hybridEncrypt;
+  private volatile KeysetHandle publicKeysetHandle;
+
   TinkEncryptionHelper(
       MasterKeyProvider masterKeyProvider, KeysetHandle handle, boolean hasPrivateKey) {
     this.masterKeyProvider = masterKeyProvider;
@@ -51,14 +58,22 @@ class TinkEncryptionHelper implements EncryptionHelper {
     if (!hasPrivateKey) {
       throw new GeneralSecurityException("cannot decrypt without a private key");
     }
-    HybridDecrypt decrypt = handle.getPrimitive(HybridConfigurationV0.get(), HybridDecrypt.class);
+    HybridDecrypt decrypt = hybridDecrypt;
+    if (decrypt == null) {
+      decrypt = handle.getPrimitive(HybridConfigurationV0.get(), HybridDecrypt.class);
+      hybridDecrypt = decrypt;
+    }
     return decrypt.decrypt(encryptedData, associatedData);
   }
 
   @Override
   public byte[] encrypt(byte[] plainData, byte[] associatedData) throws GeneralSecurityException {
-    HybridEncrypt encrypt =
-        getPublicKeysetHandle().getPrimitive(HybridConfigurationV0.get(), HybridEncrypt.class);
+    HybridEncrypt encrypt = hybridEncrypt;
+    if (encrypt == null) {
+      encrypt =
+          getPublicKeysetHandle().getPrimitive(HybridConfigurationV0.get(), HybridEncrypt.class);
+      hybridEncrypt = encrypt;
+    }
     return encrypt.encrypt(plainData, associatedData);
   }
 
@@ -83,6 +98,14 @@ class TinkEncryptionHelper implements EncryptionHelper {
   }
 
   private KeysetHandle getPublicKeysetHandle() throws GeneralSecurityException {
-    return hasPrivateKey ? handle.getPublicKeysetHandle() : handle;
+    if (!hasPrivateKey) {
+      return handle;
+    }
+    KeysetHandle publicHandle = publicKeysetHandle;
+    if (publicHandle == null) {
+      publicHandle = handle.getPublicKeysetHandle();
+      publicKeysetHandle = publicHandle;
+    }
+    return publicHandle;
   }
 }
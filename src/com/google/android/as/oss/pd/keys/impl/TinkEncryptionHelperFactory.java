@@ -17,6 +17,10 @@
 package com.google.android.as.oss.pd.keys.impl;
 
 import com.google.android.as.oss.pd.keys.EncryptionHelperFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.crypto.tink.KeyTemplate;
 import com.google.crypto.tink.KeyTemplates;
 import com.google.crypto.tink.KeysetHandle;
@@ -31,13 +35,21 @@ import javax.inject.Singleton;
 /**
  * An {@link EncryptionHelperFactory} implemented using Tink open-source library. Key sets are
  * serialized / deserialized in encrypted form using a key provided by {@link MasterKeyProvider}.
+ *
+ * <p>Helpers created from serialized keys are cached by the key bytes, so the primitives they build
+ * on first use are shared by every request using the same key.
  */
 @Singleton
 final class TinkEncryptionHelperFactory implements EncryptionHelperFactory {
 
   private static final String KEY_TEMPLATE_STRING = "ECIES_P256_HKDF_HMAC_SHA256_AES128_GCM";
+  private static final int MAX_CACHED_HELPERS = 16;
 
   private final MasterKeyProvider masterKeyProvider;
+  private final Cache<HashCode, TinkEncryptionHelper> encryptedKeysetHelpers =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_HELPERS).build();
+  private final Cache<HashCode, TinkEncryptionHelper> publicKeyHelpers =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_HELPERS).build();
   private volatile boolean initialized;
   private KeyTemplate keyTemplate;
 
@@ -56,25 +68,51 @@ final class TinkEncryptionHelperFactory implements EncryptionHelperFactory {
   @Override
   public TinkEncryptionHelper createFromEncryptedKeySet(byte[] encryptedKeyset)
       throws GeneralSecurityException, IOException {
+    HashCode cacheKey = Hashing.sha256().hashBytes(encryptedKeyset);
+    TinkEncryptionHelper cached = encryptedKeysetHelpers.getIfPresent(cacheKey);
+    if (cached != null) {
+      return cached;
+    }
     initializeIfNeeded();
-    return new TinkEncryptionHelper(
-        masterKeyProvider,
-        TinkProtoKeysetFormat.parseEncryptedKeyset(
-            encryptedKeyset,
-            masterKeyProvider.readOrGenerateMasterKey(),
-            new byte[] {},
-            RegistryConfiguration.get()),
-        /* hasPrivateKey= */ true);
+    KeysetHandle handle;
+    try {
+      handle = parseEncryptedKeyset(encryptedKeyset);
+    } catch (GeneralSecurityException e) {
+      // The cached master key may be stale after a rotation, read it again and retry once.
+      masterKeyProvider.invalidateCachedMasterKey();
+      handle = parseEncryptedKeyset(encryptedKeyset);
+    }
+    TinkEncryptionHelper helper =
+        new TinkEncryptionHelper(masterKeyProvider, handle, /* hasPrivateKey= */ true);
+    encryptedKeysetHelpers.put(cacheKey, helper);
+    return helper;
+  }
+
+  private KeysetHandle parseEncryptedKeyset(byte[] encryptedKeyset)
+      throws GeneralSecurityException, IOException {
+    return TinkProtoKeysetFormat.parseEncryptedKeyset(
+        encryptedKeyset,
+        masterKeyProvider.readOrGenerateMasterKey(),
+        new byte[] {},
+        RegistryConfiguration.get());
   }
 
   @Override
   public TinkEncryptionHelper createFromPublicKey(byte[] publicKey)
       throws GeneralSecurityException, IOException {
+    HashCode cacheKey = Hashing.sha256().hashBytes(publicKey);
+    TinkEncryptionHelper cached = publicKeyHelpers.getIfPresent(cacheKey);
+    if (cached != null) {
+      return cached;
+    }
     initializeIfNeeded();
-    return new TinkEncryptionHelper(
-        masterKeyProvider,
-        TinkProtoKeysetFormat.parseKeysetWithoutSecret(publicKey, RegistryConfiguration.get()),
-        /* hasPrivateKey= */ false);
+    TinkEncryptionHelper helper =
+        new TinkEncryptionHelper(
+            masterKeyProvider,
+            TinkProtoKeysetFormat.parseKeysetWithoutSecret(publicKey, RegistryConfiguration.get()),
+            /* hasPrivateKey= */ false);
+    publicKeyHelpers.put(cacheKey, helper);
+    return helper;
   }
 
   private void initializeIfNeeded() throws GeneralSecurityException {
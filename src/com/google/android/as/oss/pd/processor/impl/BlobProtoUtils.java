@@ -52,11 +52,16 @@ import com.google.android.as.oss.pd.service.api.proto.ProtectionProofConfig;
 import com.google.common.hash.Hasher;
 import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.GeneralSecurityException;
 import java.util.Optional;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 /**
@@ -64,6 +69,8 @@ import java.util.zip.InflaterInputStream;
  * proto API exposed by Google servers.
  */
 public final class BlobProtoUtils {
+  private static final int INFLATE_BUFFER_SIZE = 64 * 1024;
+
   private final Context context;
   private final ProtoConversions protoConversions;
   private final ClientBuildVersionReader clientBuildVersionReader;
@@ -182,6 +189,10 @@ public final class BlobProtoUtils {
    * Decrypts with external encryption and re-encrypts using internalEncryption, if re-encryption is
    * requested and internal encryption is provided. If the externalEncryption does not have a
    * private key then no encryption can be done and we just return the unmodified encryptedData.
+   *
+   * <p>The arrays returned by the encryption helpers are freshly allocated and never modified
+   * afterwards, so they are wrapped instead of copied into the returned {@link ByteString}. The
+   * plaintext is only referenced until it has been re-encrypted.
    */
   private static ByteString replaceEncryption(
       ByteString encryptedData,
@@ -198,21 +209,15 @@ public final class BlobProtoUtils {
     } catch (GeneralSecurityException e) {
       throw new IllegalArgumentException(e);
     }
-    if (!reencryptData) {
-      return ByteString.copyFrom(decrypted);
+    if (!reencryptData || internalEncryption.isEmpty()) {
+      return UnsafeByteOperations.unsafeWrap(decrypted);
+    }
+    try {
+      return UnsafeByteOperations.unsafeWrap(
+          internalEncryption.get().encrypt(decrypted, associatedData));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalArgumentException(e);
     }
-    byte[] reencryptedBytes =
-        internalEncryption
-            .map(
-                enc -> {
-                  try {
-                    return enc.encrypt(decrypted, associatedData);
-                  } catch (GeneralSecurityException e) {
-                    throw new IllegalArgumentException(e);
-                  }
-                })
-            .orElse(decrypted);
-    return ByteString.copyFrom(reencryptedBytes);
   }
 
   /** Converts a server download blob response to PCS download blob response. */
@@ -279,7 +284,7 @@ public final class BlobProtoUtils {
             .setManifestConfig(decompressManifestConfig(manifestConfig))
             .build()
         : GetManifestConfigResponse.newBuilder()
-            .setManifestConfig(ByteString.copyFrom(manifestConfig))
+            .setManifestConfig(UnsafeByteOperations.unsafeWrap(manifestConfig))
             .build();
   }
 
@@ -460,7 +465,29 @@ public final class BlobProtoUtils {
 
   @VisibleForTesting
   public static ByteString decompressManifestConfig(byte[] manifestConfig) throws IOException {
-    return ByteString.readFrom(new InflaterInputStream(new ByteArrayInputStream(manifestConfig)));
+    // ByteString.Output keeps the inflated chunks and hands them to the ByteString without
+    // copying them into one array.
+    ByteString.Output out = ByteString.newOutput(INFLATE_BUFFER_SIZE);
+    decompressManifestConfig(new ByteArrayInputStream(manifestConfig), out);
+    return out.toByteString();
+  }
+
+  /**
+   * Inflates a compressed manifest config from {@code compressed} into {@code out} through a
+   * {@link #INFLATE_BUFFER_SIZE} buffer, without holding the whole config in memory. Neither stream
+   * is closed.
+   *
+   * @return the number of decompressed bytes written
+   */
+  public static long decompressManifestConfig(InputStream compressed, OutputStream out)
+      throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      return ByteStreams.copy(
+          new InflaterInputStream(compressed, inflater, INFLATE_BUFFER_SIZE), out);
+    } finally {
+      inflater.end();
+    }
   }
 
   private static String getDeviceTier(Metadata metadata) {
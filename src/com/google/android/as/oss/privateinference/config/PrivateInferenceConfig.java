@@ -67,6 +67,8 @@ public abstract class PrivateInferenceConfig {
                 DEFAULT_PROXY_URL, DEFAULT_PROXY_PORT, DEFAULT_PROXY_AUTH_HEADER))
         .setProxyConfigProviderType(DEFAULT_PROXY_CONFIG_PROVIDER_TYPE)
         .setProxyConfigRefreshIntervalMinutes(DEFAULT_PROXY_CONFIG_REFRESH_INTERVAL_MINUTES)
+        .setProxyConfigStaleGraceMinutes(DEFAULT_PROXY_CONFIG_STALE_GRACE_MINUTES)
+        .setProxyConfigEarlyRefreshMinutes(DEFAULT_PROXY_CONFIG_EARLY_REFRESH_MINUTES)
         .setAttestationPublisherMode(DEFAULT_ATTESTATION_PUBLISHER_MODE)
         .setEnabled(DEFAULT_ENABLED)
         .setEndpointUrl(DEFAULT_PRIVATE_INFERENCE_ENDPOINT_URL)
@@ -83,7 +85,9 @@ public abstract class PrivateInferenceConfig {
         .setIpRelayFallbackMode(DEFAULT_IP_RELAY_FALLBACK_MODE)
         .setSendClientMetadata(DEFAULT_SEND_CLIENT_METADATA)
         .setEnableTlsBasedSession(DEFAULT_ENABLE_TLS_BASED_SESSION)
-        .setEnableConfigurableIpBlindingMode(DEFAULT_ENABLE_CONFIGURABLE_IP_BLINDING_MODE);
+        .setEnableConfigurableIpBlindingMode(DEFAULT_ENABLE_CONFIGURABLE_IP_BLINDING_MODE)
+        .setWarmUpChannelOnStartup(DEFAULT_WARM_UP_CHANNEL_ON_STARTUP)
+        .setPoolPfdRequestBuffers(DEFAULT_POOL_PFD_REQUEST_BUFFERS);
   }
 
   /** Returns the current attestation publisher mode. */
@@ -177,6 +181,18 @@ public abstract class PrivateInferenceConfig {
   /** Returns the duration between cache refresh operations for the proxy config in minutes. */
   public abstract int proxyConfigRefreshIntervalMinutes();
 
+  /**
+   * Returns for how many minutes past its refresh interval a cached proxy config may still be
+   * served while a refresh runs in the background. 0 means expired configs are never served.
+   */
+  public abstract int proxyConfigStaleGraceMinutes();
+
+  /**
+   * Returns how many minutes before its refresh interval ends a cached proxy config is refreshed in
+   * the background. 0 means configs are only refreshed once they expired.
+   */
+  public abstract int proxyConfigEarlyRefreshMinutes();
+
   /** Returns the URL of the token issuance endpoint to use for IP Blinding. */
   public abstract String tokenIssuanceEndpointUrl();
 
@@ -199,6 +215,15 @@ public abstract class PrivateInferenceConfig {
   /** Returns whether configurable IP blinding mode is enabled. */
   public abstract boolean enableConfigurableIpBlindingMode();
 
+  /**
+   * Returns whether the Private Inference server channel is created and connected in the background
+   * at start-up, instead of on the first inference request.
+   */
+  public abstract boolean warmUpChannelOnStartup();
+
+  /** Returns whether PFD-backed inference requests are read into pooled buffers. */
+  public abstract boolean poolPfdRequestBuffers();
+
   public static final String PRIVATE_INFERENCE_PROD_ENDPOINT_URL =
       "privatearatea.pa.googleapis.com";
   public static final String TOKEN_ISSUANCE_PROD_ENDPOINT_URL = "phosphor-pa.googleapis.com";
@@ -260,6 +285,10 @@ public abstract class PrivateInferenceConfig {
 
   public static final int DEFAULT_PROXY_CONFIG_REFRESH_INTERVAL_MINUTES = 24 * 60;
 
+  public static final int DEFAULT_PROXY_CONFIG_STALE_GRACE_MINUTES = 0;
+
+  public static final int DEFAULT_PROXY_CONFIG_EARLY_REFRESH_MINUTES = 0;
+
   public static final long DEFAULT_PI_SERVER_CHANNEL_IDLE_TIMEOUT_MINUTES = 5L;
 
   public static final IpRelayFallbackFlag.Mode DEFAULT_IP_RELAY_FALLBACK_MODE =
@@ -271,6 +300,10 @@ public abstract class PrivateInferenceConfig {
 
   public static final boolean DEFAULT_SEND_CLIENT_METADATA = false;
 
+  public static final boolean DEFAULT_WARM_UP_CHANNEL_ON_STARTUP = false;
+
+  public static final boolean DEFAULT_POOL_PFD_REQUEST_BUFFERS = false;
+
   public static final ImmutableSet<PcsPrivateInferenceFeatureName>
       FEATURE_ALLOWLIST_TO_DISABLE_IP_BLINDING =
           ImmutableSet.of(
@@ -332,6 +365,10 @@ public abstract class PrivateInferenceConfig {
 
     public abstract Builder setProxyConfigRefreshIntervalMinutes(int minutes);
 
+    public abstract Builder setProxyConfigStaleGraceMinutes(int minutes);
+
+    public abstract Builder setProxyConfigEarlyRefreshMinutes(int minutes);
+
     public abstract Builder setTokenIssuanceEndpointUrl(String value);
 
     public abstract Builder setArateaAuthMode(ArateaAuthFlag.Mode mode);
@@ -352,6 +389,10 @@ public abstract class PrivateInferenceConfig {
 
     public abstract Builder setEnableConfigurableIpBlindingMode(boolean value);
 
+    public abstract Builder setWarmUpChannelOnStartup(boolean value);
+
+    public abstract Builder setPoolPfdRequestBuffers(boolean value);
+
     public abstract PrivateInferenceConfig build();
   }
 }
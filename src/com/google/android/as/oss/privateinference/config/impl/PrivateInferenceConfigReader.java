@@ -164,6 +164,16 @@ class PrivateInferenceConfigReader extends AbstractConfigReader<PrivateInference
           FLAG_PREFIX + "proxy_config_refresh_interval_minutes",
           PrivateInferenceConfig.DEFAULT_PROXY_CONFIG_REFRESH_INTERVAL_MINUTES);
 
+  static final IntegerFlag PROXY_CONFIG_STALE_GRACE_MINUTES_FLAG =
+      IntegerFlag.create(
+          FLAG_PREFIX + "proxy_config_stale_grace_minutes",
+          PrivateInferenceConfig.DEFAULT_PROXY_CONFIG_STALE_GRACE_MINUTES);
+
+  static final IntegerFlag PROXY_CONFIG_EARLY_REFRESH_MINUTES_FLAG =
+      IntegerFlag.create(
+          FLAG_PREFIX + "proxy_config_early_refresh_minutes",
+          PrivateInferenceConfig.DEFAULT_PROXY_CONFIG_EARLY_REFRESH_MINUTES);
+
   static final LongFlag PI_SERVER_CHANNEL_IDLE_TIMEOUT_MINUTES_FLAG =
       LongFlag.create(
           FLAG_PREFIX + "pi_server_channel_idle_timeout_minutes",
@@ -185,6 +195,16 @@ class PrivateInferenceConfigReader extends AbstractConfigReader<PrivateInference
           FLAG_PREFIX + "enable_configurable_ip_blinding_mode",
           PrivateInferenceConfig.DEFAULT_ENABLE_CONFIGURABLE_IP_BLINDING_MODE);
 
+  static final BooleanFlag WARM_UP_CHANNEL_ON_STARTUP_FLAG =
+      BooleanFlag.create(
+          FLAG_PREFIX + "warm_up_channel_on_startup",
+          PrivateInferenceConfig.DEFAULT_WARM_UP_CHANNEL_ON_STARTUP);
+
+  static final BooleanFlag POOL_PFD_REQUEST_BUFFERS_FLAG =
+      BooleanFlag.create(
+          FLAG_PREFIX + "pool_pfd_request_buffers",
+          PrivateInferenceConfig.DEFAULT_POOL_PFD_REQUEST_BUFFERS);
+
   private final FlagManager flagManager;
 
   static PrivateInferenceConfigReader create(FlagManager flagManager) {
@@ -261,12 +281,17 @@ class PrivateInferenceConfigReader extends AbstractConfigReader<PrivateInference
                 flagManager.get(PROXY_AUTH_HEADER_FLAG)))
         .setProxyConfigRefreshIntervalMinutes(
             flagManager.get(PROXY_CONFIG_REFRESH_INTERVAL_MINUTES_FLAG))
+        .setProxyConfigStaleGraceMinutes(flagManager.get(PROXY_CONFIG_STALE_GRACE_MINUTES_FLAG))
+        .setProxyConfigEarlyRefreshMinutes(
+            flagManager.get(PROXY_CONFIG_EARLY_REFRESH_MINUTES_FLAG))
         .setPiServerChannelIdleTimeoutMinutes(
             flagManager.get(PI_SERVER_CHANNEL_IDLE_TIMEOUT_MINUTES_FLAG))
         .setIpRelayFallbackMode(flagManager.get(IP_RELAY_FALLBACK_MODE_FLAG))
         .setSendClientMetadata(flagManager.get(SEND_CLIENT_METADATA_FLAG))
         .setEnableConfigurableIpBlindingMode(
             flagManager.get(ENABLE_CONFIGURABLE_IP_BLINDING_MODE_FLAG))
+        .setWarmUpChannelOnStartup(flagManager.get(WARM_UP_CHANNEL_ON_STARTUP_FLAG))
+        .setPoolPfdRequestBuffers(flagManager.get(POOL_PFD_REQUEST_BUFFERS_FLAG))
         .build();
   }
 
@@ -27,6 +27,7 @@ import com.google.android.as.oss.privateinference.service.api.proto.SessionIniti
 import com.google.common.flogger.GoogleLogger;
 import com.google.oak.client.grpc.StreamObserverSessionClient;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
 import java.io.InputStream;
@@ -50,6 +51,10 @@ import javax.annotation.Nullable;
  *       (IPC) if the client is in a separate process.
  * </ul>
  *
+ * <p>PFD data is read into a single array which is wrapped, not copied, into the {@link
+ * ByteString} forwarded to Oak. With a {@link PfdBufferPool}, that array is borrowed from the pool
+ * and returned to it once Oak's {@code onNext} has encrypted the message.
+ *
  * <p><b>Note:</b> The initial {@link SessionInitializationRequest} is handled <i>outside</i> of
  * this class. This reader is instantiated *after* initialization, and its {@code
  * directOakClientRequestObserver} (used to forward data to Oak) must be set before any inference
@@ -65,6 +70,7 @@ public class BaseOakServerStreamRequestReader
 
   private final AtomicReference<StreamObserver<ByteString>> directOakClientRequestObserver;
   private final boolean enableTlsBasedSession;
+  @Nullable private final PfdBufferPool pfdBufferPool;
 
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
 
@@ -87,11 +93,33 @@ public class BaseOakServerStreamRequestReader
       AtomicReference<StreamObserver<ByteString>> directOakClientRequestObserver,
       @Nullable InputStream parcelInputStream,
       boolean enableTlsBasedSession) {
+    this(
+        oakAsyncClient,
+        oakServerStreamResponseObserver,
+        directOakClientRequestObserver,
+        parcelInputStream,
+        enableTlsBasedSession,
+        /* pfdBufferPool= */ null);
+  }
+
+  /**
+   * @param pfdBufferPool pool to read PFD data into, or null to allocate a new array per request.
+   *     Only pass a pool if the Oak client request observer doesn't retain the {@link ByteString}
+   *     after {@code onNext} returns.
+   */
+  public BaseOakServerStreamRequestReader(
+      PrivateInferenceOakAsyncClient oakAsyncClient,
+      StreamObserverSessionClient.OakSessionStreamObserver oakServerStreamResponseObserver,
+      AtomicReference<StreamObserver<ByteString>> directOakClientRequestObserver,
+      @Nullable InputStream parcelInputStream,
+      boolean enableTlsBasedSession,
+      @Nullable PfdBufferPool pfdBufferPool) {
     this.parcelInputStream = parcelInputStream;
     this.oakAsyncClient = oakAsyncClient;
     this.oakServerStreamResponseObserver = oakServerStreamResponseObserver;
     this.directOakClientRequestObserver = directOakClientRequestObserver;
     this.enableTlsBasedSession = enableTlsBasedSession;
+    this.pfdBufferPool = pfdBufferPool;
   }
 
   @Override
@@ -128,23 +156,19 @@ public class BaseOakServerStreamRequestReader
               "parcelInputStream is null so cannot receive PrivateArateaRequest through PFD.");
         }
         int pfdDataSize = inferenceRequest.getPfdDataSize();
-        byte[] messageData = new byte[pfdDataSize];
-        int totalBytesRead = 0;
+        byte[] messageData =
+            pfdBufferPool != null ? pfdBufferPool.acquire(pfdDataSize) : new byte[pfdDataSize];
         try {
-          while (totalBytesRead < pfdDataSize) {
-            int bytesToRead = pfdDataSize - totalBytesRead;
-            int bytesRead = parcelInputStream.read(messageData, totalBytesRead, bytesToRead);
-            if (bytesRead == -1) {
-              throw new IOException("PFD closed prematurely");
-            }
-            totalBytesRead += bytesRead;
-          }
-
+          readFully(parcelInputStream, messageData, pfdDataSize);
           checkNotNull(directOakClientRequestObserver.get())
-              .onNext(ByteString.copyFrom(messageData));
+              .onNext(UnsafeByteOperations.unsafeWrap(messageData, 0, pfdDataSize));
         } catch (IOException e) {
           checkNotNull(directOakClientRequestObserver.get()).onError(e);
           tryCloseInputStream(parcelInputStream);
+        } finally {
+          if (pfdBufferPool != null) {
+            pfdBufferPool.release(messageData);
+          }
         }
       } else {
         onError(
@@ -203,6 +227,18 @@ public class BaseOakServerStreamRequestReader
     };
   }
 
+  private static void readFully(InputStream inputStream, byte[] buffer, int length)
+      throws IOException {
+    int totalBytesRead = 0;
+    while (totalBytesRead < length) {
+      int bytesRead = inputStream.read(buffer, totalBytesRead, length - totalBytesRead);
+      if (bytesRead == -1) {
+        throw new IOException("PFD closed prematurely");
+      }
+      totalBytesRead += bytesRead;
+    }
+  }
+
   public void tryCloseInputStream(@Nullable InputStream inputStream) {
     if (inputStream == null) {
       return;
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.privateinference.library;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Pool of byte arrays that PFD-backed inference requests are read into.
+ *
+ * <p>Buffers are grouped by size class, the next power of two of the requested size, so a buffer
+ * can be reused by any later request of a similar size. At most {@link #MAX_RETAINED_BYTES} are
+ * kept between requests; released buffers beyond that are left to the garbage collector. Requests
+ * smaller than {@link #MIN_POOLED_SIZE} are not worth pooling, and requests larger than {@link
+ * #MAX_POOLED_SIZE} could never be retained, so both get an exact-size array.
+ */
+@Singleton
+public final class PfdBufferPool {
+  @VisibleForTesting static final int MIN_POOLED_SIZE = 64 * 1024;
+  @VisibleForTesting static final long MAX_RETAINED_BYTES = 16 * 1024 * 1024;
+  // A larger size class could never be retained, and rounding it up would only waste memory.
+  @VisibleForTesting static final int MAX_POOLED_SIZE = (int) MAX_RETAINED_BYTES;
+
+  private final Object lock = new Object();
+
+  @GuardedBy("lock")
+  private final Map<Integer, ArrayDeque<byte[]>> freeBuffersBySize = new HashMap<>();
+
+  @GuardedBy("lock")
+  private long retainedBytes = 0;
+
+  @Inject
+  public PfdBufferPool() {}
+
+  /**
+   * Returns a buffer of at least {@code size} bytes. Pass it back to {@link #release} once its
+   * content is no longer referenced.
+   */
+  public byte[] acquire(int size) {
+    if (size < MIN_POOLED_SIZE || size > MAX_POOLED_SIZE) {
+      return new byte[size];
+    }
+    int sizeClass = sizeClass(size);
+    synchronized (lock) {
+      ArrayDeque<byte[]> freeBuffers = freeBuffersBySize.get(sizeClass);
+      byte[] buffer = freeBuffers == null ? null : freeBuffers.poll();
+      if (buffer != null) {
+        retainedBytes -= buffer.length;
+        return buffer;
+      }
+    }
+    return new byte[sizeClass];
+  }
+
+  /** Returns a buffer obtained from {@link #acquire} to the pool. */
+  public void release(byte[] buffer) {
+    int size = buffer.length;
+    if (size < MIN_POOLED_SIZE || size > MAX_POOLED_SIZE || sizeClass(size) != size) {
+      return;
+    }
+    synchronized (lock) {
+      if (retainedBytes + size > MAX_RETAINED_BYTES) {
+        return;
+      }
+      freeBuffersBySize.computeIfAbsent(size, unused -> new ArrayDeque<>()).push(buffer);
+      retainedBytes += size;
+    }
+  }
+
+  private static int sizeClass(int size) {
+    int highestOneBit = Integer.highestOneBit(size);
+    return highestOneBit == size ? size : highestOneBit << 1;
+  }
+}
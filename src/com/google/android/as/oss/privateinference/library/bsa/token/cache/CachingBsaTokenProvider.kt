@@ -18,11 +18,21 @@ package com.google.android.`as`.oss.privateinference.library.bsa.token.cache
 
 import androidx.annotation.OpenForTesting
 import androidx.annotation.VisibleForTesting
+import com.google.android.`as`.oss.logging.PcsStatsEnums.ValueMetricId
 import com.google.android.`as`.oss.privateinference.library.bsa.token.BsaToken
 import com.google.android.`as`.oss.privateinference.library.bsa.token.BsaTokenParams
 import com.google.android.`as`.oss.privateinference.library.bsa.token.BsaTokenProvider
+import com.google.android.`as`.oss.privateinference.logging.PcsStatsLogger
+import com.google.android.`as`.oss.privateinference.util.mapSuspendCatching
 import com.google.android.`as`.oss.privateinference.util.runSuspendCatching
+import com.google.common.flogger.GoogleLogger
+import java.util.concurrent.TimeUnit
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
 
 /**
  * Implementation of [BsaTokenProvider] which manages a pool of tokens, responding to calls to
@@ -31,15 +41,32 @@ import kotlinx.coroutines.CoroutineScope
  *
  * For best results, the typical request size should be smaller than the [TokenPool]'s low-water
  * mark.
+ *
+ * Requests larger than the [refillDelegate]'s max batch size are split into batches which are
+ * fetched concurrently, at most [MAX_CONCURRENT_BATCHES] at a time. Each batch is attempted up to
+ * [MAX_BATCH_ATTEMPTS] times, and tokens of successful batches are kept when other batches fail.
+ *
+ * @param refillMetrics if set, the duration and throughput of every fetch from the [refillDelegate]
+ *   is logged with these metric ids.
  */
 @OpenForTesting
 open class CachingBsaTokenProvider<T : BsaToken>(
   override val coroutineScope: CoroutineScope,
   private val refillDelegate: BsaTokenProvider<T>,
   private val tokenPool: TokenPool<T>,
+  private val pcsStatsLogger: PcsStatsLogger? = null,
+  private val refillMetrics: RefillMetrics? = null,
 ) : BsaTokenProvider<T>, BsaTokenCacheControlPlane {
   override val maxBatchSize: Int = Int.MAX_VALUE
 
+  private val batchPermits = Semaphore(MAX_CONCURRENT_BATCHES)
+
+  /** Metric ids used to log fetches from the refill delegate. */
+  data class RefillMetrics(
+    val latencyMetricId: ValueMetricId,
+    val tokensPerSecondMetricId: ValueMetricId,
+  )
+
   override suspend fun fetchTokens(params: BsaTokenParams<T>, batchSize: Int): Result<List<T>> {
     if (params.mustBeFresh) {
       return fetchFromDelegate(params = params, atLeast = batchSize, predicate = { true })
@@ -73,31 +100,74 @@ open class CachingBsaTokenProvider<T : BsaToken>(
     atLeast: Int,
     predicate: TokenValidityPredicate<T>,
   ): Result<List<T>> {
-    val fetched = buildList {
-      do {
-        // Be sure to call with a batch-size of whichever value is lowest: the amount we want to
-        // fetch
-        // or the delegate's maxBatchSize - so that we never get a batch-size-exceeded exception
-        // from
-        // the delegate.
-        refillDelegate
-          .fetchTokens(
-            params = params,
-            batchSize = minOf(atLeast - this@buildList.size, refillDelegate.maxBatchSize),
-          )
-          .mapCatching { tokens ->
-            // Only accept cacheable values. If there are none, we should fail.
-            val valid = tokens.filter(predicate)
-            check(valid.isNotEmpty()) { "No valid tokens found in response from refillDelegate" }
-            valid
-          }
-          .onFailure {
-            // Any failure should stop the process.
-            return Result.failure(exception = it)
-          }
-          .onSuccess { tokens -> this@buildList.addAll(tokens) }
-      } while (this@buildList.size < atLeast)
+    val startNanos = System.nanoTime()
+    val fetched = mutableListOf<T>()
+    while (fetched.size < atLeast) {
+      // Split what's still missing into batches no larger than the delegate's maxBatchSize, so
+      // that we never get a batch-size-exceeded exception from the delegate.
+      val missing = atLeast - fetched.size
+      val batchSize = minOf(missing, refillDelegate.maxBatchSize)
+      val batchSizes =
+        List((missing + batchSize - 1) / batchSize) { minOf(batchSize, missing - it * batchSize) }
+      val results = coroutineScope {
+        batchSizes
+          .map { size -> async { batchPermits.withPermit { fetchBatch(params, size, predicate) } } }
+          .awaitAll()
+      }
+      val tokens = results.flatMap { it.getOrDefault(emptyList()) }
+      if (tokens.isEmpty()) {
+        // No batch made progress, give up rather than retrying forever.
+        return Result.failure(results.firstNotNullOf { it.exceptionOrNull() })
+      }
+      results
+        .mapNotNull { it.exceptionOrNull() }
+        .forEach { logger.atWarning().withCause(it).log("Token batch failed, keeping the others") }
+      fetched.addAll(tokens)
     }
+    logRefill(fetched.size, System.nanoTime() - startNanos)
     return Result.success(fetched)
   }
+
+  /** Fetches a single batch from the delegate, retrying it up to [MAX_BATCH_ATTEMPTS] times. */
+  private suspend fun fetchBatch(
+    params: BsaTokenParams<T>,
+    batchSize: Int,
+    predicate: TokenValidityPredicate<T>,
+  ): Result<List<T>> {
+    var result: Result<List<T>>
+    var attempt = 0
+    do {
+      attempt++
+      result =
+        refillDelegate.fetchTokens(params = params, batchSize = batchSize).mapSuspendCatching {
+          tokens ->
+          // Only accept cacheable values. If there are none, the batch failed.
+          val valid = tokens.filter(predicate)
+          check(valid.isNotEmpty()) { "No valid tokens found in response from refillDelegate" }
+          valid
+        }
+    } while (result.isFailure && attempt < MAX_BATCH_ATTEMPTS)
+    return result
+  }
+
+  private fun logRefill(tokenCount: Int, durationNanos: Long) {
+    val metrics = refillMetrics ?: return
+    val statsLogger = pcsStatsLogger ?: return
+    val durationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos)
+    statsLogger.logEventLatency(metrics.latencyMetricId, durationMs)
+    statsLogger.logEventValue(
+      metrics.tokensPerSecondMetricId,
+      (tokenCount * 1000L / maxOf(durationMs, 1L)).toInt(),
+    )
+  }
+
+  companion object {
+    /** Maximum number of batches fetched from the refill delegate at the same time. */
+    @VisibleForTesting const val MAX_CONCURRENT_BATCHES = 4
+
+    /** Number of times a batch is attempted before it is considered failed. */
+    @VisibleForTesting const val MAX_BATCH_ATTEMPTS = 2
+
+    private val logger = GoogleLogger.forEnclosingClass()
+  }
 }
@@ -30,7 +30,11 @@ import com.google.android.`as`.oss.privateinference.library.bsa.token.cache.db.B
 import com.google.android.`as`.oss.privateinference.library.bsa.token.cache.db.DatabaseTokenPool
 import com.google.android.`as`.oss.privateinference.library.bsa.token.crypto.BsaTokenCipher
 import com.google.android.`as`.oss.privateinference.logging.PcsStatsLogger
+import com.google.android.`as`.oss.privateinference.service.ArateaTokenRefillLatencyMetricId
+import com.google.android.`as`.oss.privateinference.service.ArateaTokenRefillTokensPerSecondMetricId
 import com.google.android.`as`.oss.privateinference.service.ArateaTokenUtilizationMetricId
+import com.google.android.`as`.oss.privateinference.service.ProxyTokenRefillLatencyMetricId
+import com.google.android.`as`.oss.privateinference.service.ProxyTokenRefillTokensPerSecondMetricId
 import com.google.android.`as`.oss.privateinference.service.ProxyTokenUtilizationMetricId
 import dagger.Lazy
 import dagger.Module
@@ -65,12 +69,14 @@ internal object CachingTokenProviderModule {
   fun provideProxyTokenMemoryPool(
     predicate: TokenValidityPredicate<@JvmSuppressWildcards ProxyToken>,
     configReader: ConfigReader<@JvmSuppressWildcards PrivateInferenceConfig>,
+    @ApplicationScope coroutineScope: CoroutineScope,
   ): MemoryTokenPool<ProxyToken> =
     MemoryTokenPool(
       refreshParams = listOf(ProxyTokenParams()),
       minPoolSize = configReader.config.proxyTokenMemoryCacheMinPoolSize(),
       preferredPoolSize = configReader.config.proxyTokenMemoryCachePreferredPoolSize(),
       tokenValidityPredicate = predicate,
+      coroutineScope = coroutineScope,
     )
 
   @Provides
@@ -81,11 +87,17 @@ internal object CachingTokenProviderModule {
     @BsaTokenProvider.Authenticating
     authenticatingProvider: BsaTokenProvider<@JvmSuppressWildcards ProxyToken>,
     tokenPool: MemoryTokenPool<@JvmSuppressWildcards ProxyToken>,
+    pcsStatsLogger: PcsStatsLogger,
+    @ProxyTokenRefillLatencyMetricId refillLatencyMetricId: ValueMetricId,
+    @ProxyTokenRefillTokensPerSecondMetricId refillTokensPerSecondMetricId: ValueMetricId,
   ): BsaTokenProvider<ProxyToken> =
     CachingBsaTokenProvider(
       coroutineScope = coroutineScope,
       refillDelegate = authenticatingProvider,
       tokenPool = tokenPool,
+      pcsStatsLogger = pcsStatsLogger,
+      refillMetrics =
+        CachingBsaTokenProvider.RefillMetrics(refillLatencyMetricId, refillTokensPerSecondMetricId),
     )
 
   @Provides
@@ -101,12 +113,14 @@ internal object CachingTokenProviderModule {
   fun provideArateaTokenMemoryPool(
     predicate: TokenValidityPredicate<@JvmSuppressWildcards ArateaTokenWithoutChallenge>,
     configReader: ConfigReader<@JvmSuppressWildcards PrivateInferenceConfig>,
+    @ApplicationScope coroutineScope: CoroutineScope,
   ): MemoryTokenPool<ArateaTokenWithoutChallenge> =
     MemoryTokenPool(
       refreshParams = listOf(CacheableArateaTokenParams()),
       minPoolSize = configReader.config.arateaTokenMemoryCachePreferredPoolSize(),
       preferredPoolSize = configReader.config.arateaTokenMemoryCachePreferredPoolSize(),
       tokenValidityPredicate = predicate,
+      coroutineScope = coroutineScope,
     )
 
   @Provides
@@ -117,11 +131,17 @@ internal object CachingTokenProviderModule {
     @BsaTokenProvider.Authenticating
     authenticatingProvider: BsaTokenProvider<@JvmSuppressWildcards ArateaTokenWithoutChallenge>,
     tokenPool: MemoryTokenPool<@JvmSuppressWildcards ArateaTokenWithoutChallenge>,
+    pcsStatsLogger: PcsStatsLogger,
+    @ArateaTokenRefillLatencyMetricId refillLatencyMetricId: ValueMetricId,
+    @ArateaTokenRefillTokensPerSecondMetricId refillTokensPerSecondMetricId: ValueMetricId,
   ) =
     CachingBsaTokenProvider(
       coroutineScope = coroutineScope,
       refillDelegate = authenticatingProvider,
       tokenPool = tokenPool,
+      pcsStatsLogger = pcsStatsLogger,
+      refillMetrics =
+        CachingBsaTokenProvider.RefillMetrics(refillLatencyMetricId, refillTokensPerSecondMetricId),
     )
 
   @Provides
@@ -146,6 +166,8 @@ internal object CachingTokenProviderModule {
     timeSource: TimeSource,
     pcsStatsLogger: PcsStatsLogger,
     @ProxyTokenUtilizationMetricId tokenUtilizationMetricId: ValueMetricId,
+    @ProxyTokenRefillLatencyMetricId refillLatencyMetricId: ValueMetricId,
+    @ProxyTokenRefillTokensPerSecondMetricId refillTokensPerSecondMetricId: ValueMetricId,
   ): BsaTokenProvider<ProxyToken> =
     CachingBsaTokenProvider(
       coroutineScope = coroutineScope,
@@ -162,6 +184,9 @@ internal object CachingTokenProviderModule {
           pcsStatsLogger = pcsStatsLogger,
           tokenUtilizationMetricId = tokenUtilizationMetricId,
         ),
+      pcsStatsLogger = pcsStatsLogger,
+      refillMetrics =
+        CachingBsaTokenProvider.RefillMetrics(refillLatencyMetricId, refillTokensPerSecondMetricId),
     )
 
   @Provides
@@ -200,6 +225,8 @@ internal object CachingTokenProviderModule {
     timeSource: TimeSource,
     pcsStatsLogger: PcsStatsLogger,
     @ArateaTokenUtilizationMetricId tokenUtilizationMetricId: ValueMetricId,
+    @ArateaTokenRefillLatencyMetricId refillLatencyMetricId: ValueMetricId,
+    @ArateaTokenRefillTokensPerSecondMetricId refillTokensPerSecondMetricId: ValueMetricId,
   ): BsaTokenProvider<ArateaTokenWithoutChallenge> =
     CachingBsaTokenProvider(
       coroutineScope = coroutineScope,
@@ -216,6 +243,9 @@ internal object CachingTokenProviderModule {
           pcsStatsLogger = pcsStatsLogger,
           tokenUtilizationMetricId = tokenUtilizationMetricId,
         ),
+      pcsStatsLogger = pcsStatsLogger,
+      refillMetrics =
+        CachingBsaTokenProvider.RefillMetrics(refillLatencyMetricId, refillTokensPerSecondMetricId),
     )
 
   @Provides
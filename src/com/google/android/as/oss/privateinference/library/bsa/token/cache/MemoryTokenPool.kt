@@ -16,67 +16,206 @@
 
 package com.google.android.`as`.oss.privateinference.library.bsa.token.cache
 
+import androidx.annotation.VisibleForTesting
 import com.google.android.`as`.oss.privateinference.library.bsa.token.BsaToken
 import com.google.android.`as`.oss.privateinference.library.bsa.token.BsaTokenParams
+import com.google.common.flogger.GoogleLogger
+import kotlin.coroutines.cancellation.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.NonCancellable
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
 import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withContext
 
 /**
  * Implementation of [TokenPool] which manages its pool in-memory as a mapping from [BsaTokenParams]
  * to queues of tokens.
+ *
+ * The pool lock is only held while tokens are moved in or out of a queue, never while a
+ * [TokenPoolSource] is called. Once a draw leaves a pool below [minPoolSize], a refill up to
+ * [preferredPoolSize] is started on [coroutineScope], at most one per [BsaTokenParams] at a time.
+ * Draws that find the pool short while a refill is in flight wait for it in FIFO order, and only
+ * call the fallback source themselves for whatever the refill could not provide.
  */
 class MemoryTokenPool<T : BsaToken>(
   private val refreshParams: List<BsaTokenParams<T>>,
   private val minPoolSize: Int,
   private val preferredPoolSize: Int,
   private val tokenValidityPredicate: TokenValidityPredicate<T>,
+  private val coroutineScope: CoroutineScope,
 ) : TokenPool<T> {
   private val lock = Mutex()
-  private val poolsByParams = mutableMapOf<BsaTokenParams<T>, List<T>>()
+  private val poolsByParams = mutableMapOf<BsaTokenParams<T>, PoolState<T>>()
+  private val refreshPermits = Semaphore(MAX_PARALLEL_REFRESHES)
 
   override suspend fun draw(
     params: BsaTokenParams<T>,
     count: Int,
     fallbackSource: TokenPoolSource<T>,
-  ): List<T> = lock.withLock {
-    val validPool = poolsByParams[params]?.filter(tokenValidityPredicate) ?: emptyList()
-    val result = validPool.take(count).toMutableList()
-    val newPool = validPool.drop(count).toMutableList()
+  ): List<T> {
+    val result = ArrayList<T>(count)
+    var waiter: Waiter<T>? = null
+    var refillAmount = 0
+    lock.withLock {
+      val pool = poolsByParams.getOrPut(params) { PoolState() }
+      while (result.size < count && pool.tokens.isNotEmpty()) {
+        val token = pool.tokens.removeFirst()
+        if (tokenValidityPredicate(token)) {
+          result.add(token)
+        }
+      }
+      pool.dropExpiredTokens(tokenValidityPredicate)
 
-    val remainingForResult = count - result.size
-    val refillAmount =
-      if (newPool.size < minPoolSize) {
-        // Only try to refill if the new pool will have dropped below the minimum pool size.
-        maxOf(preferredPoolSize - newPool.size, 0)
-      } else {
-        0
+      val missing = count - result.size
+      if (missing > 0) {
+        waiter = Waiter<T>(missing).also { pool.waiters.addLast(it) }
+      }
+      if (!pool.refilling && (pool.tokens.size < minPoolSize || missing > 0)) {
+        pool.refilling = true
+        refillAmount =
+          maxOf(preferredPoolSize - pool.tokens.size, 0) + pool.waiters.sumOf { it.count }
       }
+    }
+
+    if (refillAmount > 0) {
+      coroutineScope.launch { refill(params, refillAmount, fallbackSource) }
+    }
+    waiter?.let { result.addAll(it.await()) }
+
+    val remainingForResult = count - result.size
+    if (remainingForResult > 0) {
+      // The refill could not cover this draw, fetch the rest directly.
+      result.addAll(
+        fallbackSource(params, remainingForResult, tokenValidityPredicate).take(remainingForResult)
+      )
+    }
+    return result
+  }
+
+  override suspend fun clear() =
+    lock.withLock { poolsByParams.values.forEach { it.tokens.clear() } }
+
+  override suspend fun refresh(refillSource: TokenPoolSource<T>) {
+    lock.withLock { poolsByParams.values.forEach { it.tokens.clear() } }
+
+    val fetched = coroutineScope {
+      refreshParams
+        .map { params ->
+          async {
+            refreshPermits.withPermit {
+              params to refillSource(params, preferredPoolSize, tokenValidityPredicate)
+            }
+          }
+        }
+        .awaitAll()
+    }
+    for ((params, tokens) in fetched) {
+      val served =
+        lock.withLock {
+          poolsByParams.getOrPut(params) { PoolState() }.offer(tokens, tokenValidityPredicate)
+        }
+      wake(params, served)
+    }
+  }
 
-    val toFetch = remainingForResult + refillAmount
-    if (toFetch > 0) {
-      val fetched = fallbackSource(params, toFetch, tokenValidityPredicate)
-      result.addAll(fetched.take(remainingForResult))
-      if (refillAmount > 0) {
-        // Only add to the updated pool list if we explicitly needed to top it up, otherwise it's
-        // possible we could have an ever-increasing pool if the upstream refill provider's batch
-        // size is large.
-        newPool.addAll(fetched.drop(remainingForResult))
+  private suspend fun refill(
+    params: BsaTokenParams<T>,
+    amount: Int,
+    fallbackSource: TokenPoolSource<T>,
+  ) {
+    var fetched = emptyList<T>()
+    try {
+      fetched = fallbackSource(params, amount, tokenValidityPredicate)
+    } catch (e: CancellationException) {
+      throw e
+    } catch (e: Exception) {
+      logger.atWarning().withCause(e).log("Failed to refill the memory token pool")
+    } finally {
+      // Also runs when the refill is cancelled or fails with an Error, so that the pool can be
+      // refilled again and no waiter is left suspended.
+      withContext(NonCancellable) {
+        val served =
+          lock.withLock {
+            val pool = poolsByParams.getOrPut(params) { PoolState() }
+            pool.refilling = false
+            val served = pool.offer(fetched, tokenValidityPredicate)
+            // The refill couldn't serve the remaining waiters, they fall back to their own fetch.
+            val unserved = pool.waiters.map { it to emptyList<T>() }
+            pool.waiters.clear()
+            served + unserved
+          }
+        wake(params, served)
       }
     }
+  }
 
-    // Update the pool
-    poolsByParams[params] = newPool
-    return result.toList()
+  /**
+   * Completes the waiters with their tokens. Tokens of waiters that were cancelled in the meantime
+   * go back to the pool.
+   */
+  private suspend fun wake(params: BsaTokenParams<T>, served: List<Pair<Waiter<T>, List<T>>>) {
+    val unclaimed = served.filterNot { (waiter, tokens) -> waiter.tokens.complete(tokens) }
+    if (unclaimed.isNotEmpty()) {
+      lock.withLock {
+        poolsByParams[params]?.tokens?.addAll(0, unclaimed.flatMap { (_, tokens) -> tokens })
+      }
+    }
   }
 
-  override suspend fun clear() = lock.withLock { poolsByParams.clear() }
+  private class PoolState<T : BsaToken> {
+    val tokens = ArrayDeque<T>()
+    val waiters = ArrayDeque<Waiter<T>>()
+    var refilling = false
 
-  override suspend fun refresh(refillSource: TokenPoolSource<T>) = lock.withLock {
-    poolsByParams.clear()
+    /**
+     * Hands the valid [fetched] tokens to the queued waiters in FIFO order, and adds the rest to
+     * the pool. Returns the waiters which were served along with their tokens.
+     */
+    fun offer(
+      fetched: List<T>,
+      predicate: TokenValidityPredicate<T>,
+    ): List<Pair<Waiter<T>, List<T>>> {
+      val available = ArrayDeque(fetched.filter(predicate))
+      val served = mutableListOf<Pair<Waiter<T>, List<T>>>()
+      while (waiters.isNotEmpty() && available.isNotEmpty()) {
+        val waiter = waiters.removeFirst()
+        served.add(waiter to List(minOf(waiter.count, available.size)) { available.removeFirst() })
+      }
+      tokens.addAll(available)
+      return served
+    }
 
-    // Consider parallelizing this.
-    for (params in refreshParams) {
-      poolsByParams[params] = refillSource(params, preferredPoolSize, tokenValidityPredicate)
+    /** Drops expired tokens at the head of the queue, where the oldest tokens are. */
+    fun dropExpiredTokens(predicate: TokenValidityPredicate<T>) {
+      while (tokens.isNotEmpty() && !predicate(tokens.first())) {
+        tokens.removeFirst()
+      }
     }
   }
+
+  private class Waiter<T : BsaToken>(val count: Int) {
+    val tokens = CompletableDeferred<List<T>>()
+
+    suspend fun await(): List<T> =
+      try {
+        tokens.await()
+      } catch (e: CancellationException) {
+        tokens.cancel()
+        throw e
+      }
+  }
+
+  companion object {
+    /** Maximum number of [refreshParams] refilled concurrently by [refresh]. */
+    @VisibleForTesting const val MAX_PARALLEL_REFRESHES = 4
+
+    private val logger = GoogleLogger.forEnclosingClass()
+  }
 }
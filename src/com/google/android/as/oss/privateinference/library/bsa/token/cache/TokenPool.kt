@@ -35,8 +35,8 @@ interface TokenPool<T : BsaToken> {
    * Draws [count] items from the pool.
    *
    * If there aren't enough items in the pool, or the pool would be below its low water mark after
-   * the draw, the [fallbackSource] will be used to make up the difference. After this call, it will
-   * be guaranteed that the pool will have at least its low-water mark of items again.
+   * the draw, the [fallbackSource] will be used to make up the difference. Implementations may top
+   * the pool back up to its low-water mark asynchronously, after this call returned.
    *
    * @param fallbackSource Callback used to fetch items when topping-up the pool after a draw drains
    *   it below the low-water mark. This callback should NOT call any other methods on the pool.
@@ -48,6 +48,16 @@ interface BsaTokenDao {
     return DrawTokensResponse(tokens, getPoolSize(tokenParams), itemsCleanedUp)
   }
 
+  /**
+   * Deletes all entities whose token params are one of [tokenParams] and inserts [entities] in
+   * their place, in a single transaction.
+   */
+  @Transaction
+  suspend fun replaceAll(tokenParams: List<BsaTokenParams<*>>, entities: List<BsaTokenEntity>) {
+    deleteAll(tokenParams)
+    insertAll(entities)
+  }
+
   /** Inserts all the provided [entities] into the database. */
   @Insert(entity = BsaTokenEntity::class, onConflict = IGNORE)
   suspend fun insertAll(entities: List<BsaTokenEntity>)
@@ -16,12 +16,14 @@
 
 package com.google.android.`as`.oss.privateinference.library.bsa.token.cache.db
 
+import androidx.annotation.VisibleForTesting
 import com.google.android.`as`.oss.common.time.TimeSource
 import com.google.android.`as`.oss.logging.PcsStatsEnums.ValueMetricId
 import com.google.android.`as`.oss.privateinference.library.bsa.token.ArateaToken
 import com.google.android.`as`.oss.privateinference.library.bsa.token.ArateaTokenParams
 import com.google.android.`as`.oss.privateinference.library.bsa.token.ArateaTokenWithoutChallenge
 import com.google.android.`as`.oss.privateinference.library.bsa.token.BsaToken
+import com.google.android.`as`.oss.privateinference.library.bsa.token.BsaTokenBytes
 import com.google.android.`as`.oss.privateinference.library.bsa.token.BsaTokenParams
 import com.google.android.`as`.oss.privateinference.library.bsa.token.CacheableArateaTokenParams
 import com.google.android.`as`.oss.privateinference.library.bsa.token.ProxyToken
@@ -44,7 +46,13 @@ import kotlinx.coroutines.sync.withLock
  *
  * Token cache refills will be performed asynchronously and will not block the calling thread.
  * However, any pending tokens needed while drawing from the pool on-demand will be fetched
- * synchronously and will block the calling thread.
+ * synchronously and will block the calling thread. The database lock is only held for the database
+ * transactions themselves, never while tokens are fetched, encrypted or decrypted, so a draw never
+ * waits on another caller's fetch. Tokens are encrypted and decrypted in batches.
+ *
+ * Each refill tops the pool up to [preferredPoolSize], plus the number of tokens which draws had to
+ * fetch on-demand since the previous refill, up to [MAX_REFILL_TARGET_MULTIPLIER] times
+ * [preferredPoolSize]. The pool thereby grows while it is drained faster than it is refilled.
  *
  * @param refreshParams List of [BsaTokenParams] to use when making requests to a [TokenPoolSource]
  *   when pre-filling the pool to the [preferredPoolSize].
@@ -78,22 +86,36 @@ class DatabaseTokenPool<T : BsaToken>(
   private val excessDrawCount = AtomicInteger(0)
   // The number of tokens that have been refilled in the cache within the refresh cycle.
   private val refilledTokens = AtomicInteger(0)
+  // The number of tokens drawn outside of the pool since the last refill started, used to grow the
+  // next refill.
+  private val missesSinceRefill = AtomicInteger(0)
 
   override suspend fun draw(
     params: BsaTokenParams<T>,
     count: Int,
     fallbackSource: TokenPoolSource<T>,
-  ): List<T> = dbLock.withLock {
-    val (dbTokens, poolSizePostFetch, _) = daoProvider().drawTokens(params, count, timeSource.now())
-    val resultTokens = dbTokens.mapNotNull { decrypt(it) }.toMutableList()
+  ): List<T> {
+    val (dbTokens, poolSizePostFetch, _) =
+      dbLock.withLock { daoProvider().drawTokens(params, count, timeSource.now()) }
+    val resultTokens = decryptAll(dbTokens).toMutableList()
 
     val resultTokensNeeded = count - resultTokens.size
-    val dbTokensNeeded =
-      if (poolSizePostFetch < minPoolSize) {
-        preferredPoolSize - poolSizePostFetch
-      } else {
-        0
+    if (resultTokensNeeded > 0) {
+      missesSinceRefill.addAndGet(resultTokensNeeded)
+    }
+    if (poolSizePostFetch < minPoolSize) {
+      // Asynchronously fetch tokens to refill the cache, if there isn't a refill already in
+      // progress.
+      coroutineScope.launch {
+        if (refillLock.tryLock()) {
+          try {
+            refill(params, poolSizePostFetch, fallbackSource)
+          } finally {
+            refillLock.unlock()
+          }
+        }
       }
+    }
 
     if (resultTokensNeeded > 0) {
       resultTokens.addAll(
@@ -101,38 +123,43 @@ class DatabaseTokenPool<T : BsaToken>(
       )
       excessDrawCount.addAndGet(resultTokensNeeded)
     }
-    // Asynchronously fetch tokens to refill the cache, if there isn't a refill already in
-    // progress.
-    coroutineScope.launch {
-      if (dbTokensNeeded > 0 && refillLock.tryLock()) {
-        try {
-          val newTokens =
-            fallbackSource(params, dbTokensNeeded, BsaTokenDao.tokenValidator(timeSource))
-          refilledTokens.addAndGet(dbTokensNeeded)
-          val encryptedEntities = newTokens.mapNotNull { encrypt(params, it) }
-          dbLock.withLock { daoProvider().insertAll(encryptedEntities) }
-        } finally {
-          refillLock.unlock()
-        }
-      }
-    }
-    return@withLock resultTokens
+    return resultTokens
   }
 
   override suspend fun clear() = dbLock.withLock { daoProvider().deleteAll(refreshParams) }
 
-  override suspend fun refresh(refillSource: TokenPoolSource<T>) = dbLock.withLock {
-    pcsStatsLogger.logEventValue(tokenUtilizationMetricId, calculateUtilizationRatio())
-    // Reset the counts during each refresh.
-    excessDrawCount.set(0)
-    refilledTokens.set(0)
-    daoProvider().deleteAll(refreshParams)
+  override suspend fun refresh(refillSource: TokenPoolSource<T>) {
     val toInsert = refreshParams.flatMap { params ->
-      refillSource(params, preferredPoolSize, BsaTokenDao.tokenValidator(timeSource)).mapNotNull {
-        encrypt(params, it)
-      }
+      encryptAll(
+        params,
+        refillSource(params, preferredPoolSize, BsaTokenDao.tokenValidator(timeSource)),
+      )
+    }
+    dbLock.withLock {
+      pcsStatsLogger.logEventValue(tokenUtilizationMetricId, calculateUtilizationRatio())
+      // Reset the counts during each refresh.
+      excessDrawCount.set(0)
+      refilledTokens.set(0)
+      daoProvider().replaceAll(refreshParams, toInsert)
     }
-    daoProvider().insertAll(toInsert)
+  }
+
+  private suspend fun refill(
+    params: BsaTokenParams<T>,
+    poolSize: Int,
+    fallbackSource: TokenPoolSource<T>,
+  ) {
+    val target =
+      minOf(
+        preferredPoolSize + missesSinceRefill.getAndSet(0),
+        preferredPoolSize * MAX_REFILL_TARGET_MULTIPLIER,
+      )
+    val dbTokensNeeded = target - poolSize
+    if (dbTokensNeeded <= 0) return
+    val newTokens = fallbackSource(params, dbTokensNeeded, BsaTokenDao.tokenValidator(timeSource))
+    refilledTokens.addAndGet(dbTokensNeeded)
+    val encryptedEntities = encryptAll(params, newTokens)
+    dbLock.withLock { daoProvider().insertAll(encryptedEntities) }
   }
 
   private suspend fun calculateUtilizationRatio(): Int {
@@ -146,22 +173,32 @@ class DatabaseTokenPool<T : BsaToken>(
     return if (totalCount == 0) 0 else (drawCount * 100) / totalCount
   }
 
-  private suspend fun encrypt(params: BsaTokenParams<T>, token: T): BsaTokenEntity? {
-    val expiration =
-      requireNotNull(token.expirationTime) {
-        "BsaTokens must have expiration values to be cached in the database."
+  private suspend fun encryptAll(params: BsaTokenParams<T>, tokens: List<T>): List<BsaTokenEntity> {
+    val expirations =
+      tokens.map { token ->
+        requireNotNull(token.expirationTime) {
+          "BsaTokens must have expiration values to be cached in the database."
+        }
       }
-    return BsaTokenEntity(
-      tokenParams = params,
-      encryptedTokenData = cipher.encrypt(token.bytes) ?: return null,
-      expiration = expiration,
-    )
+    return cipher.encryptAll(tokens.map { it.bytes }).zip(expirations).mapNotNull {
+      (encryptedTokenData, expiration) ->
+      BsaTokenEntity(
+        tokenParams = params,
+        encryptedTokenData = encryptedTokenData ?: return@mapNotNull null,
+        expiration = expiration,
+      )
+    }
   }
 
+  private suspend fun decryptAll(entities: List<BsaTokenEntity>): List<T> =
+    cipher.decryptAll(entities.map { it.encryptedTokenData }).zip(entities).mapNotNull {
+      (data, entity) ->
+      data?.let { toToken(entity, it) }
+    }
+
   @Suppress("UNCHECKED_CAST")
-  private suspend fun decrypt(entity: BsaTokenEntity): T? {
+  private fun toToken(entity: BsaTokenEntity, data: BsaTokenBytes): T {
     val params = entity.tokenParams
-    val data = cipher.decrypt(entity.encryptedTokenData) ?: return null
     return when (params) {
       is ArateaTokenParams -> ArateaToken(data)
       is ProxyTokenParams -> ProxyToken(data, entity.expiration)
@@ -169,4 +206,9 @@ class DatabaseTokenPool<T : BsaToken>(
     }
       as T
   }
+
+  companion object {
+    /** Upper bound of a refill's target pool size, as a multiple of the preferred pool size. */
+    @VisibleForTesting const val MAX_REFILL_TARGET_MULTIPLIER = 2
+  }
 }
@@ -33,4 +33,24 @@ interface BsaTokenCipher {
    * @return `null` if the provided [encryptedTokenBytes] cannot be decrypted.
    */
   suspend fun decrypt(encryptedTokenBytes: EncryptedBsaTokenBytes): BsaTokenBytes?
+
+  /**
+   * Encrypts each of the specified [tokenBytes], in a single operation if the implementation
+   * supports it.
+   *
+   * @return the encrypted values in the same order, with `null` for values which cannot be
+   *   encrypted.
+   */
+  suspend fun encryptAll(tokenBytes: List<BsaTokenBytes>): List<EncryptedBsaTokenBytes?> =
+    tokenBytes.map { encrypt(it) }
+
+  /**
+   * Decrypts each of the specified [encryptedTokenBytes], in a single operation if the
+   * implementation supports it.
+   *
+   * @return the decrypted values in the same order, with `null` for values which cannot be
+   *   decrypted.
+   */
+  suspend fun decryptAll(encryptedTokenBytes: List<EncryptedBsaTokenBytes>): List<BsaTokenBytes?> =
+    encryptedTokenBytes.map { decrypt(it) }
 }
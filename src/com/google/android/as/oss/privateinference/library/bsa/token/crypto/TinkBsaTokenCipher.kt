@@ -80,62 +80,78 @@ constructor(
     }
   }
 
-  override suspend fun encrypt(tokenBytes: BsaTokenBytes): EncryptedBsaTokenBytes? {
+  override suspend fun encrypt(tokenBytes: BsaTokenBytes): EncryptedBsaTokenBytes? =
+    encryptAll(listOf(tokenBytes)).single()
+
+  override suspend fun decrypt(encryptedTokenBytes: EncryptedBsaTokenBytes): BsaTokenBytes? =
+    decryptAll(listOf(encryptedTokenBytes)).single()
+
+  /** Encrypts all of the [tokenBytes] in a single task on the [executor]. */
+  override suspend fun encryptAll(tokenBytes: List<BsaTokenBytes>): List<EncryptedBsaTokenBytes?> {
+    if (tokenBytes.isEmpty()) return emptyList()
     val aead =
       try {
-        aeadState
-          .onEach { if (it is AeadState.Failed) throw it.error }
-          .mapNotNull { it as? AeadState.Initialized }
-          .first()
-          .aead
+        awaitAead()
       } catch (e: Throwable) {
         logger.atWarning().withCause(e).log("Could not encrypt BsaTokenBytes")
-        return null
+        return tokenBytes.map { null }
       }
     return executor
-      .submit<EncryptedBsaTokenBytes?> {
-        try {
-          EncryptedBsaTokenBytes(
-            encryptedData = aead.encrypt(tokenBytes.toByteArray(), TOKEN_ASSOCIATED_DATA),
-            associatedData = TOKEN_ASSOCIATED_DATA,
-          )
-        } catch (e: GeneralSecurityException) {
-          logger.atWarning().withCause(e).log("Could not encrypt BsaTokenBytes")
-          null
+      .submit<List<EncryptedBsaTokenBytes?>> {
+        tokenBytes.map { bytes ->
+          try {
+            EncryptedBsaTokenBytes(
+              encryptedData = aead.encrypt(bytes.toByteArray(), TOKEN_ASSOCIATED_DATA),
+              associatedData = TOKEN_ASSOCIATED_DATA,
+            )
+          } catch (e: GeneralSecurityException) {
+            logger.atWarning().withCause(e).log("Could not encrypt BsaTokenBytes")
+            null
+          }
         }
       }
       .await()
   }
 
-  override suspend fun decrypt(encryptedTokenBytes: EncryptedBsaTokenBytes): BsaTokenBytes? {
+  /** Decrypts all of the [encryptedTokenBytes] in a single task on the [executor]. */
+  override suspend fun decryptAll(
+    encryptedTokenBytes: List<EncryptedBsaTokenBytes>
+  ): List<BsaTokenBytes?> {
+    if (encryptedTokenBytes.isEmpty()) return emptyList()
     val aead =
       try {
-        aeadState
-          .onEach { if (it is AeadState.Failed) throw it.error }
-          .mapNotNull { it as? AeadState.Initialized }
-          .first()
-          .aead
+        awaitAead()
       } catch (e: Throwable) {
         logger.atWarning().withCause(e).log("Could not decrypt EncryptedBsaTokenBytes")
-        return null
+        return encryptedTokenBytes.map { null }
       }
     return executor
-      .submit<BsaTokenBytes?> {
-        try {
-          BsaTokenBytes(
-            aead.decrypt(
-              encryptedTokenBytes.encryptedData.toByteArray(),
-              encryptedTokenBytes.associatedData.toByteArray(),
+      .submit<List<BsaTokenBytes?>> {
+        encryptedTokenBytes.map { encrypted ->
+          try {
+            BsaTokenBytes(
+              aead.decrypt(
+                encrypted.encryptedData.toByteArray(),
+                encrypted.associatedData.toByteArray(),
+              )
             )
-          )
-        } catch (e: GeneralSecurityException) {
-          logger.atWarning().withCause(e).log("Could not decrypt BsaTokenBytes")
-          null
+          } catch (e: GeneralSecurityException) {
+            logger.atWarning().withCause(e).log("Could not decrypt BsaTokenBytes")
+            null
+          }
         }
       }
       .await()
   }
 
+  /** Waits for initialization to finish, throwing its error if it failed. */
+  private suspend fun awaitAead(): Aead =
+    aeadState
+      .onEach { if (it is AeadState.Failed) throw it.error }
+      .mapNotNull { it as? AeadState.Initialized }
+      .first()
+      .aead
+
   private fun getOrCreateEncryptedKeysetWithRetry(): KeysetHandle {
     // Add retry logic in case of transient Android Keystore errors.
     var retries = 3
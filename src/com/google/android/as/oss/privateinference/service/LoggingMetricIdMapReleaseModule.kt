@@ -158,4 +158,28 @@ internal object LoggingMetricIdMapReleaseModule {
   @ArateaTokenUtilizationMetricId
   fun provideArateaTokenUtilizationMetricId(): ValueMetricId =
     ValueMetricId.PCS_PI_ARATEA_TOKEN_UTILIZATION_RATIO
+
+  @Provides
+  @Singleton
+  @ProxyTokenRefillLatencyMetricId
+  fun provideProxyTokenRefillLatencyMetricId(): ValueMetricId =
+    ValueMetricId.PCS_PI_PROXY_TOKEN_REFILL_LATENCY_MS
+
+  @Provides
+  @Singleton
+  @ProxyTokenRefillTokensPerSecondMetricId
+  fun provideProxyTokenRefillTokensPerSecondMetricId(): ValueMetricId =
+    ValueMetricId.PCS_PI_PROXY_TOKEN_REFILL_TOKENS_PER_SECOND
+
+  @Provides
+  @Singleton
+  @ArateaTokenRefillLatencyMetricId
+  fun provideArateaTokenRefillLatencyMetricId(): ValueMetricId =
+    ValueMetricId.PCS_PI_ARATEA_TOKEN_REFILL_LATENCY_MS
+
+  @Provides
+  @Singleton
+  @ArateaTokenRefillTokensPerSecondMetricId
+  fun provideArateaTokenRefillTokensPerSecondMetricId(): ValueMetricId =
+    ValueMetricId.PCS_PI_ARATEA_TOKEN_REFILL_TOKENS_PER_SECOND
 }
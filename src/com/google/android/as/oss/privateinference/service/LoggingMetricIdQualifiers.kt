@@ -31,3 +31,11 @@ import kotlin.annotation.Retention
 @Qualifier @Retention(RUNTIME) annotation class ProxyTokenUtilizationMetricId
 
 @Qualifier @Retention(RUNTIME) annotation class ArateaTokenUtilizationMetricId
+
+@Qualifier @Retention(RUNTIME) annotation class ProxyTokenRefillLatencyMetricId
+
+@Qualifier @Retention(RUNTIME) annotation class ProxyTokenRefillTokensPerSecondMetricId
+
+@Qualifier @Retention(RUNTIME) annotation class ArateaTokenRefillLatencyMetricId
+
+@Qualifier @Retention(RUNTIME) annotation class ArateaTokenRefillTokensPerSecondMetricId
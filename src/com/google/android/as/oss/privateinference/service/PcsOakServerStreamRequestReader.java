@@ -22,6 +22,7 @@ import com.google.android.as.oss.common.flavor.BuildFlavor;
 import com.google.android.as.oss.logging.PcsStatsEnums.CountMetricId;
 import com.google.android.as.oss.privateinference.config.PrivateInferenceConfig;
 import com.google.android.as.oss.privateinference.library.BaseOakServerStreamRequestReader;
+import com.google.android.as.oss.privateinference.library.PfdBufferPool;
 import com.google.android.as.oss.privateinference.library.oakutil.PrivateInferenceOakAsyncClient;
 import com.google.android.as.oss.privateinference.logging.PcsStatsLogger;
 import com.google.android.as.oss.privateinference.service.api.proto.PcsPrivateInferenceFeatureName;
@@ -65,13 +66,15 @@ public class PcsOakServerStreamRequestReader extends BaseOakServerStreamRequestR
       AtomicLong totalRequestSize,
       AtomicReference<PcsPrivateInferenceFeatureName> featureName,
       PcsStatsLogger pcsStatsLogger,
-      LoggingMetricIdProvider loggingMetricIdProvider) {
+      LoggingMetricIdProvider loggingMetricIdProvider,
+      PfdBufferPool pfdBufferPool) {
     super(
         oakAsyncClient,
         oakServerStreamResponseObserver,
         directOakClientRequestObserver,
         parcelInputStream,
-        configReader.getConfig().enableTlsBasedSession());
+        configReader.getConfig().enableTlsBasedSession(),
+        configReader.getConfig().poolPfdRequestBuffers() ? pfdBufferPool : null);
     this.configReader = configReader;
     this.buildFlavor = buildFlavor;
     this.clientSessionResponseObserver = clientSessionResponseObserver;
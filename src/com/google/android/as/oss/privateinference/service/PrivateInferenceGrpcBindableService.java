@@ -23,6 +23,7 @@ import com.google.android.as.oss.common.flavor.BuildFlavor;
 import com.google.android.as.oss.logging.PcsStatsEnums.CountMetricId;
 import com.google.android.as.oss.networkusage.db.NetworkUsageLogUtils;
 import com.google.android.as.oss.privateinference.config.PrivateInferenceConfig;
+import com.google.android.as.oss.privateinference.library.PfdBufferPool;
 import com.google.android.as.oss.privateinference.library.PrivateInferenceRequestMetadata;
 import com.google.android.as.oss.privateinference.library.oakutil.AttestationVerificationException;
 import com.google.android.as.oss.privateinference.library.oakutil.PrivateInferenceOakAsyncClient;
@@ -68,6 +69,7 @@ public final class PrivateInferenceGrpcBindableService
   private final BuildFlavor buildFlavor;
   private final TimerSet timers;
   private final LoggingMetricIdProvider loggingMetricIdProvider;
+  private final PfdBufferPool pfdBufferPool;
 
   @Inject
   PrivateInferenceGrpcBindableService(
@@ -78,7 +80,8 @@ public final class PrivateInferenceGrpcBindableService
       PcsStatsLogger pcsStatsLogger,
       BuildFlavor buildFlavor,
       @PrivateInferenceServiceTimers TimerSet timers,
-      LoggingMetricIdProvider loggingMetricIdProvider) {
+      LoggingMetricIdProvider loggingMetricIdProvider,
+      PfdBufferPool pfdBufferPool) {
     this.context = context;
     this.oakAsyncClient = oakAsyncClient;
     this.configReader = configReader;
@@ -87,6 +90,7 @@ public final class PrivateInferenceGrpcBindableService
     this.buildFlavor = buildFlavor;
     this.timers = timers;
     this.loggingMetricIdProvider = loggingMetricIdProvider;
+    this.pfdBufferPool = pfdBufferPool;
   }
 
   @Override
@@ -143,7 +147,8 @@ public final class PrivateInferenceGrpcBindableService
         totalRequestSize,
         featureName,
         pcsStatsLogger,
-        loggingMetricIdProvider);
+        loggingMetricIdProvider,
+        pfdBufferPool);
   }
 
   @Override
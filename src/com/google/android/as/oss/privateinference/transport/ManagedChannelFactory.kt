@@ -36,6 +36,12 @@ interface ManagedChannelFactory {
     sessionConfiguration: SessionConfiguration = DEFAULT_SESSION_CONFIGURATION
   ): ManagedChannel
 
+  /**
+   * Creates the [ManagedChannel] for the [SessionConfiguration] ahead of its first use and starts
+   * connecting it, so the first call doesn't pay for the transport setup. Does nothing by default.
+   */
+  suspend fun warmUp(sessionConfiguration: SessionConfiguration = DEFAULT_SESSION_CONFIGURATION) {}
+
   companion object {
     val DEFAULT_SESSION_CONFIGURATION =
       SessionConfiguration.newBuilder()
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.`as`.oss.privateinference.transport.impl
+
+import android.os.Build
+import android.os.ext.SdkExtensions
+import com.google.android.`as`.oss.common.config.ConfigReader
+import com.google.android.`as`.oss.common.initializer.PcsInitializer
+import com.google.android.`as`.oss.privateinference.config.PrivateInferenceConfig
+import com.google.android.`as`.oss.privateinference.transport.ManagedChannelFactory
+import com.google.common.flogger.GoogleLogger
+import dagger.Lazy
+import kotlin.coroutines.cancellation.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.launch
+
+/**
+ * Warms up the Private Inference server channel at start-up, so the first inference request finds
+ * a connected channel. Only runs when [PrivateInferenceConfig.warmUpChannelOnStartup] is enabled.
+ */
+class ChannelWarmUpInitializer(
+  private val configReader: ConfigReader<PrivateInferenceConfig>,
+  private val managedChannelFactory: Lazy<ManagedChannelFactory>,
+  private val coroutineScope: CoroutineScope,
+) : PcsInitializer {
+
+  override fun getPriority(): Int = PcsInitializer.PRIORITY_LOW
+
+  override fun run() {
+    if (!configReader.config.warmUpChannelOnStartup() || !channelFactoryAvailable()) {
+      return
+    }
+    coroutineScope.launch {
+      try {
+        managedChannelFactory.get().warmUp()
+      } catch (e: CancellationException) {
+        throw e
+      } catch (e: Exception) {
+        // The channel is created again on the first request, warming up is best effort.
+        logger.atWarning().withCause(e).log("Failed to warm up the Private Inference channel")
+      }
+    }
+  }
+
+  companion object {
+    private val logger = GoogleLogger.forEnclosingClass()
+
+    /**
+     * The channel factory requires S extension version 7. @RequiresExtension is only a lint check,
+     * so the version is checked before the factory is loaded.
+     */
+    private fun channelFactoryAvailable(): Boolean =
+      // Protects the call against SdkExtensions, which was introduced in API level 30 (R)
+      Build.VERSION.SDK_INT >= Build.VERSION_CODES.R &&
+        SdkExtensions.getExtensionVersion(Build.VERSION_CODES.S) >= 7
+  }
+}
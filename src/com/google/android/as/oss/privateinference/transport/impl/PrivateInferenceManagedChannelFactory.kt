@@ -113,6 +113,24 @@ constructor(
     return getManagedChannelInstance(config)
   }
 
+  /**
+   * Builds the channel and requests a connection. Once the channel is idle for
+   * [channelIdleTimeoutMinutes], gRPC releases its connection again, so a warmed-up channel that
+   * isn't used doesn't keep the radio awake.
+   */
+  override suspend fun warmUp(sessionConfiguration: SessionConfiguration) {
+    if (forceIpTunnelCreationForEverySession) {
+      // The channel would be recreated by the first session anyway.
+      return
+    }
+    val channel = getInstance(sessionConfiguration)
+    if (channel is UnusableManagedChannel) {
+      return
+    }
+    val state = channel.getState(/* requestConnection= */ true)
+    logger.atInfo().log("Warmed up Private Inference channel, state: %s", state)
+  }
+
   private suspend fun getManagedChannelInstance(
     sessionConfiguration: SessionConfiguration
   ): ManagedChannel = mutex.withLock {
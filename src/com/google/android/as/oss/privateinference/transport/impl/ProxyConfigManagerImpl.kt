@@ -17,6 +17,7 @@
 package com.google.android.`as`.oss.privateinference.transport.impl
 
 import androidx.datastore.core.DataStore
+import com.google.android.`as`.oss.common.CoroutineQualifiers.ApplicationScope
 import com.google.android.`as`.oss.common.config.ConfigReader
 import com.google.android.`as`.oss.common.time.TimeSource
 import com.google.android.`as`.oss.logging.PcsStatsEnums.CountMetricId
@@ -43,10 +44,26 @@ import dagger.Lazy
 import io.grpc.ManagedChannel
 import java.time.Duration
 import javax.inject.Inject
+import javax.inject.Singleton
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
 import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 
+/**
+ * Provides the proxy configs, fetching them from the server and caching them in a [DataStore] when
+ * configured to.
+ *
+ * At most one server fetch is in flight at any time: concurrent callers that need fresh configs
+ * share it. Cached configs are refreshed in the background once they are within
+ * [PrivateInferenceConfig.proxyConfigEarlyRefreshMinutes] of expiring, and expired configs are
+ * still served for [PrivateInferenceConfig.proxyConfigStaleGraceMinutes] while the refresh runs.
+ */
+@Singleton
 class ProxyConfigManagerImpl
 @Inject
 internal constructor(
@@ -57,12 +74,16 @@ internal constructor(
   val networkUsageLogHelper: PrivateInferenceNetworkUsageLogHelper,
   @param:PrivateInferenceClientTimers private val timers: TimerSet,
   private val proxyConfigsDataStore: DataStore<TimestampedProxyConfigs>,
+  @param:ApplicationScope private val applicationScope: CoroutineScope,
 ) : ProxyConfigManager, ProxyConfigControlPlane {
 
   private val stub: ArateaIPBlindingServiceCoroutineStub by lazy {
     ArateaIPBlindingServiceCoroutineStub(phosphorChannelLazy.get())
   }
 
+  private val fetchLock = Mutex()
+  private var inFlightFetch: Deferred<List<ProxyConfiguration>>? = null
+
   override suspend fun getProxyConfig(): List<ProxyConfiguration> =
     timers.start(PrivateInferenceClientTimerNames.IPP_GET_PROXY_CONFIG).use {
       when (configReader.config.proxyConfigProviderType()) {
@@ -71,7 +92,7 @@ internal constructor(
         }
         ProxyConfigProviderType.Mode.SERVER_WITH_MEMORY_CACHE,
         ProxyConfigProviderType.Mode.SERVER_WITH_LOCAL_CACHE -> {
-          getProxyConfigFromDataStore() ?: fetchProxyConfigFromServerAndCache()
+          getProxyConfigFromDataStore() ?: sharedFetch().await()
         }
         else -> {
           throw IllegalArgumentException(
@@ -82,7 +103,7 @@ internal constructor(
     }
 
   override suspend fun refresh() {
-    val unused = fetchProxyConfigFromServerAndCache()
+    val unused = sharedFetch().await()
     logger.atInfo().log("Proxy config control plane refreshed successfully")
   }
 
@@ -145,6 +166,22 @@ internal constructor(
     }
   }
 
+  /**
+   * Returns the server fetch that is currently in flight, or starts a new one. The fetch runs in
+   * the application scope, so it isn't cancelled when one of the callers waiting on it is.
+   */
+  private suspend fun sharedFetch(): Deferred<List<ProxyConfiguration>> =
+    fetchLock.withLock {
+      inFlightFetch?.takeIf { it.isActive }
+        ?: applicationScope
+          .async { fetchProxyConfigFromServerAndCache() }
+          .also { inFlightFetch = it }
+    }
+
+  private fun refreshInBackground() {
+    applicationScope.launch { sharedFetch() }
+  }
+
   internal fun logNetworkUsage(isSuccess: Boolean, requestSize: Long, responseSize: Long) {
     networkUsageLogHelper.logIPProtectionRequest(
       IPProtectionRequestType.IPP_GET_PROXY_CONFIG,
@@ -162,21 +199,37 @@ internal constructor(
       return null
     }
 
-    val proxyConfigs = timestampedProxyConfigs.proxyConfigsList
+    val proxyConfigs =
+      timestampedProxyConfigs.proxyConfigsList.map { proxyConfig ->
+        ProxyConfiguration(proxyConfig.url, port = proxyConfig.port, authHeader = "")
+      }
     val timestamp = timestampedProxyConfigs.lastUpdated
     val now = timeSource.now()
     val timeDiff = Duration.between(timestamp.toJavaInstant(), now)
-    if (
-      timeDiff.compareTo(
-        Duration.ofMinutes(configReader.config.proxyConfigRefreshIntervalMinutes().toLong())
-      ) > 0
-    ) {
-      logger.atInfo().log("Proxy configs are expired, will fetch new configs from server")
-      return null
-    }
-    logger.atInfo().log("Proxy configs are not expired, returning cached configs")
-    return proxyConfigs.map { proxyConfig ->
-      ProxyConfiguration(proxyConfig.url, port = proxyConfig.port, authHeader = "")
+    val config = configReader.config
+    val refreshInterval = Duration.ofMinutes(config.proxyConfigRefreshIntervalMinutes().toLong())
+    val earlyRefreshAt =
+      refreshInterval.minusMinutes(config.proxyConfigEarlyRefreshMinutes().toLong())
+    val staleUntil = refreshInterval.plusMinutes(config.proxyConfigStaleGraceMinutes().toLong())
+    return when {
+      timeDiff <= earlyRefreshAt -> {
+        logger.atInfo().log("Proxy configs are not expired, returning cached configs")
+        proxyConfigs
+      }
+      timeDiff <= refreshInterval -> {
+        logger.atInfo().log("Proxy configs are about to expire, refreshing them in the background")
+        refreshInBackground()
+        proxyConfigs
+      }
+      timeDiff <= staleUntil -> {
+        logger.atInfo().log("Proxy configs are expired, returning them while refreshing")
+        refreshInBackground()
+        proxyConfigs
+      }
+      else -> {
+        logger.atInfo().log("Proxy configs are expired, will fetch new configs from server")
+        null
+      }
     }
   }
 
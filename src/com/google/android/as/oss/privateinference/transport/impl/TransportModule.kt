@@ -18,20 +18,27 @@ package com.google.android.`as`.oss.privateinference.transport.impl
 
 import android.os.Build
 import androidx.annotation.RequiresExtension
+import com.google.android.`as`.oss.common.CoroutineQualifiers
+import com.google.android.`as`.oss.common.config.ConfigReader
+import com.google.android.`as`.oss.common.initializer.PcsInitializer
 import com.google.android.`as`.oss.privateinference.Annotations.PrivateInferenceProxyConfiguration
 import com.google.android.`as`.oss.privateinference.Annotations.PrivateInferenceServerGrpcChannel
 import com.google.android.`as`.oss.privateinference.Annotations.TokenIssuanceServerGrpcChannel
+import com.google.android.`as`.oss.privateinference.config.PrivateInferenceConfig
 import com.google.android.`as`.oss.privateinference.transport.ManagedChannelFactory
 import com.google.android.`as`.oss.privateinference.transport.PhosphorManagedChannelFactory
 import com.google.android.`as`.oss.privateinference.transport.ProxyConfigManager
 import dagger.Binds
 import dagger.BindsOptionalOf
+import dagger.Lazy
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
 import dagger.hilt.components.SingletonComponent
+import dagger.multibindings.IntoSet
 import io.grpc.ManagedChannel
 import javax.inject.Singleton
+import kotlinx.coroutines.CoroutineScope
 
 /** Module that provides gRPC [io.grpc.ManagedChannel] for private inference service. */
 @Module
@@ -64,6 +71,21 @@ internal interface TransportModule {
     ): ManagedChannel {
       return phosphorManagedChannelFactory.create()
     }
+
+    @RequiresExtension(extension = Build.VERSION_CODES.S, version = 7)
+    @Provides
+    @Singleton
+    @IntoSet
+    fun provideChannelWarmUpInitializer(
+      configReader: ConfigReader<PrivateInferenceConfig>,
+      @PrivateInferenceServerGrpcChannel managedChannelFactory: Lazy<ManagedChannelFactory>,
+      @CoroutineQualifiers.ApplicationScope coroutineScope: CoroutineScope,
+    ): PcsInitializer =
+      ChannelWarmUpInitializer(
+        configReader = configReader,
+        managedChannelFactory = managedChannelFactory,
+        coroutineScope = coroutineScope,
+      )
   }
 }
 
@@ -22,4 +22,6 @@ data class SealedMemoryConfig(
   val isSealedMemoryServiceEnabled: Boolean,
   val managementAllowedApps: PackageSecurityInfoList,
   val accessAllowedApps: PackageSecurityInfoList,
+  /** How long decrypted secrets are cached per caller, or 0 to disable the cache. */
+  val secretCacheTtlMs: Long,
 )
@@ -42,6 +42,7 @@ class SealedMemoryConfigReader(private val flagManager: FlagManager) :
         flagManager.get(SealedMemoryFlags.ENABLE_SEALED_MEMORY_SERVICE),
       managementAllowedApps = flagManager.get(SealedMemoryFlags.MANAGEMENT_ALLOWED_APPS),
       accessAllowedApps = flagManager.get(SealedMemoryFlags.ACCESS_ALLOWED_APPS),
+      secretCacheTtlMs = flagManager.get(SealedMemoryFlags.SECRET_CACHE_TTL_MS),
     )
   }
 }
@@ -17,6 +17,7 @@
 package com.google.android.`as`.oss.sealedmemory.config
 
 import com.google.android.`as`.oss.common.config.FlagManager.BooleanFlag
+import com.google.android.`as`.oss.common.config.FlagManager.LongFlag
 import com.google.android.`as`.oss.common.config.FlagManager.ProtoFlag
 
 object SealedMemoryFlags {
@@ -40,4 +41,6 @@ object SealedMemoryFlags {
       // PackageSecurityInfoList.getDefaultInstance(),
       /* merge= */ false,
     )
+
+  val SECRET_CACHE_TTL_MS = LongFlag.create("${PREFIX}secret_cache_ttl_ms", 0L)
 }
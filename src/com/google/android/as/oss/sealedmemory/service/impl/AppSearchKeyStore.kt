@@ -16,6 +16,8 @@
 
 package com.google.android.`as`.oss.sealedmemory.service.impl
 
+import androidx.annotation.GuardedBy
+import androidx.annotation.VisibleForTesting
 import androidx.appsearch.app.AppSearchSession
 import androidx.appsearch.app.GetByDocumentIdRequest
 import androidx.appsearch.app.PutDocumentsRequest
@@ -31,25 +33,32 @@ import kotlinx.coroutines.guava.await
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
 
-/** AppSearch storage for keys. */
+/**
+ * AppSearch storage for keys.
+ *
+ * Reads don't take any lock and go through a bounded in-memory cache of key associations and keys,
+ * so concurrent reads proceed in parallel. Writes are serialized by [writeMutex] and invalidate the
+ * cache entries they touch once AppSearch has applied them. A read only fills the cache if no write
+ * completed while it was querying AppSearch, so it can't bring back a value that was just replaced.
+ */
 @Singleton
 class AppSearchKeyStore
 @Inject
 constructor(private val searchSessionProvider: AppSearchSessionProvider) {
-  private val mutex = Mutex()
-  @GuardedByMutex("mutex") private lateinit var searchSession: AppSearchSession
-  @GuardedByMutex("mutex") private var initialized = false
+  private val initMutex = Mutex()
+  private val writeMutex = Mutex()
+  @Volatile private var searchSession: AppSearchSession? = null
 
-  @GuardedByMutex("mutex")
-  private suspend fun ensureInitialized() {
-    if (!initialized) {
-      initialize()
-      initialized = true
-    }
-  }
+  private val cacheLock = Any()
+  @GuardedBy("cacheLock") private var writeGeneration = 0L
+  @GuardedBy("cacheLock") private val keyAssociationCache = lruCache<String>()
+  @GuardedBy("cacheLock") private val keyCache = lruCache<EncryptedKey>()
+
+  private suspend fun session(): AppSearchSession =
+    searchSession
+      ?: initMutex.withLock { searchSession ?: initialize().also { searchSession = it } }
 
-  @GuardedByMutex("mutex")
-  private suspend fun initialize() {
+  private suspend fun initialize(): AppSearchSession {
     try {
       val localSearchSession = searchSessionProvider.getAppSearchSession()
       val setSchemaRequest =
@@ -62,15 +71,15 @@ constructor(private val searchSessionProvider: AppSearchSessionProvider) {
           .setDocumentClassDisplayedBySystem(KeyAssociation::class.java, /* displayed= */ false)
           .build()
       localSearchSession.setSchemaAsync(setSchemaRequest).await()
-      searchSession = localSearchSession
+      return localSearchSession
     } catch (e: Exception) {
       throw logAndWrapException("Failed to initialize storage.", e)
     }
   }
 
   /** Stores [key] with the given [keyName]. */
-  suspend fun storeKey(keyName: String, key: EncryptedKey): Unit = mutex.withLock {
-    ensureInitialized()
+  suspend fun storeKey(keyName: String, key: EncryptedKey): Unit = writeMutex.withLock {
+    val session = session()
     try {
       val encryptedKeyDocument =
         EncryptedKeyDocument(
@@ -81,9 +90,11 @@ constructor(private val searchSessionProvider: AppSearchSessionProvider) {
           tagLengthBits = key.tagLengthBits,
         )
       val putRequest = PutDocumentsRequest.Builder().addDocuments(encryptedKeyDocument).build()
-      searchSession.putAsync(putRequest).await()
+      session.putAsync(putRequest).await()
     } catch (e: Exception) {
       throw logAndWrapException("Failed to store key.", e)
+    } finally {
+      invalidate { keyCache.remove(keyName) }
     }
   }
 
@@ -92,24 +103,12 @@ constructor(private val searchSessionProvider: AppSearchSessionProvider) {
    * false if it already exists.
    */
   suspend fun createKeyAssociation(keyAssociation: String, keyName: String): Boolean =
-    mutex.withLock {
-      ensureInitialized()
-      if (retrieveKeyAssociationLocked(keyAssociation) != null) {
+    writeMutex.withLock {
+      if (retrieveKeyAssociation(keyAssociation) != null) {
         return@withLock false
       }
-      try {
-        val association =
-          KeyAssociation(
-            namespace = KEY_ASSOCIATION_NAMESPACE,
-            id = keyAssociation,
-            keyName = keyName,
-          )
-        val putRequest = PutDocumentsRequest.Builder().addDocuments(association).build()
-        searchSession.putAsync(putRequest).await()
-        return@withLock true
-      } catch (e: Exception) {
-        throw logAndWrapException("Failed to create key association.", e)
-      }
+      putKeyAssociation(keyAssociation, keyName, "Failed to create key association.")
+      return@withLock true
     }
 
   /**
@@ -117,73 +116,112 @@ constructor(private val searchSessionProvider: AppSearchSessionProvider) {
    * doesn't exist.
    */
   suspend fun updateKeyAssociation(keyAssociation: String, keyName: String): Boolean =
-    mutex.withLock {
-      ensureInitialized()
-      if (retrieveKeyAssociationLocked(keyAssociation) == null) {
+    writeMutex.withLock {
+      if (retrieveKeyAssociation(keyAssociation) == null) {
         return@withLock false
       }
-      try {
-        val association =
-          KeyAssociation(
-            namespace = KEY_ASSOCIATION_NAMESPACE,
-            id = keyAssociation,
-            keyName = keyName,
-          )
-        val putRequest = PutDocumentsRequest.Builder().addDocuments(association).build()
-        searchSession.putAsync(putRequest).await()
-        return@withLock true
-      } catch (e: Exception) {
-        throw logAndWrapException("Failed to update key association.", e)
-      }
+      putKeyAssociation(keyAssociation, keyName, "Failed to update key association.")
+      return@withLock true
     }
 
-  /** Retrieves the key for [keyName] if it exists. */
-  suspend fun retrieveKey(keyName: String): EncryptedKey? = mutex.withLock {
-    ensureInitialized()
+  @GuardedByMutex("writeMutex")
+  private suspend fun putKeyAssociation(keyAssociation: String, keyName: String, errorMsg: String) {
+    val session = session()
     try {
-      val getRequest = GetByDocumentIdRequest.Builder(KEY_NAMESPACE).addIds(keyName).build()
-      val result = searchSession.getByDocumentIdAsync(getRequest).await()
-      val document = result.successes[keyName] ?: return null
-      val keyDocument = document.toDocumentClass(EncryptedKeyDocument::class.java)
-      return EncryptedKey(
-        encryptedData = ByteString.copyFrom(keyDocument.key),
-        ivLength = keyDocument.ivLength,
-        tagLengthBits = keyDocument.tagLengthBits,
-      )
+      val association =
+        KeyAssociation(
+          namespace = KEY_ASSOCIATION_NAMESPACE,
+          id = keyAssociation,
+          keyName = keyName,
+        )
+      val putRequest = PutDocumentsRequest.Builder().addDocuments(association).build()
+      session.putAsync(putRequest).await()
     } catch (e: Exception) {
-      throw logAndWrapException("Failed to retrieve key.", e)
+      throw logAndWrapException(errorMsg, e)
+    } finally {
+      invalidate { keyAssociationCache.remove(keyAssociation) }
     }
   }
 
-  /** Retrieves the key name used by [keyAssociation] if it exists. */
-  suspend fun retrieveKeyAssociation(keyAssociation: String): String? = mutex.withLock {
-    ensureInitialized()
-    retrieveKeyAssociationLocked(keyAssociation)
-  }
+  /** Retrieves the key for [keyName] if it exists. */
+  suspend fun retrieveKey(keyName: String): EncryptedKey? =
+    readThrough(keyCache, keyName) { session ->
+      try {
+        val getRequest = GetByDocumentIdRequest.Builder(KEY_NAMESPACE).addIds(keyName).build()
+        val result = session.getByDocumentIdAsync(getRequest).await()
+        val document = result.successes[keyName] ?: return@readThrough null
+        val keyDocument = document.toDocumentClass(EncryptedKeyDocument::class.java)
+        EncryptedKey(
+          encryptedData = ByteString.copyFrom(keyDocument.key),
+          ivLength = keyDocument.ivLength,
+          tagLengthBits = keyDocument.tagLengthBits,
+        )
+      } catch (e: Exception) {
+        throw logAndWrapException("Failed to retrieve key.", e)
+      }
+    }
 
-  @GuardedByMutex("mutex")
-  private suspend fun retrieveKeyAssociationLocked(keyAssociation: String): String? {
-    try {
-      val getRequest =
-        GetByDocumentIdRequest.Builder(KEY_ASSOCIATION_NAMESPACE).addIds(keyAssociation).build()
-      val result = searchSession.getByDocumentIdAsync(getRequest).await()
-      val document = result.successes[keyAssociation] ?: return null
-      val association = document.toDocumentClass(KeyAssociation::class.java)
-      return association.keyName
-    } catch (e: Exception) {
-      throw logAndWrapException("Failed to retrieve key association.", e)
+  /** Retrieves the key name used by [keyAssociation] if it exists. */
+  suspend fun retrieveKeyAssociation(keyAssociation: String): String? =
+    readThrough(keyAssociationCache, keyAssociation) { session ->
+      try {
+        val getRequest =
+          GetByDocumentIdRequest.Builder(KEY_ASSOCIATION_NAMESPACE).addIds(keyAssociation).build()
+        val result = session.getByDocumentIdAsync(getRequest).await()
+        val document = result.successes[keyAssociation] ?: return@readThrough null
+        document.toDocumentClass(KeyAssociation::class.java).keyName
+      } catch (e: Exception) {
+        throw logAndWrapException("Failed to retrieve key association.", e)
+      }
     }
-  }
 
-  /** Retrieves the key for the key name used by [keyAssociation] if it exists. */
+  /**
+   * Retrieves the key for the key name used by [keyAssociation] if it exists.
+   *
+   * AppSearch can't resolve the association and fetch the key in a single query since they live in
+   * different namespaces, but both lookups are served from the cache once they were read.
+   */
   suspend fun retrieveKeyByAssociation(keyAssociation: String): EncryptedKey? {
     val keyName = retrieveKeyAssociation(keyAssociation) ?: return null
     return retrieveKey(keyName)
   }
 
+  /**
+   * Returns the cached value of [id], or fetches it from AppSearch and caches it. Absent values are
+   * not cached.
+   */
+  private suspend fun <V : Any> readThrough(
+    cache: MutableMap<String, V>,
+    id: String,
+    fetch: suspend (AppSearchSession) -> V?,
+  ): V? {
+    val generation =
+      synchronized(cacheLock) {
+        cache[id]?.let {
+          return it
+        }
+        writeGeneration
+      }
+    val value = fetch(session()) ?: return null
+    synchronized(cacheLock) {
+      if (writeGeneration == generation) {
+        cache[id] = value
+      }
+    }
+    return value
+  }
+
+  /** Applies [block] to the cache after a write, and prevents in-flight reads from filling it. */
+  private inline fun invalidate(block: () -> Unit) {
+    synchronized(cacheLock) {
+      writeGeneration++
+      block()
+    }
+  }
+
   /** Retrieves a map of all keys with their names. */
-  suspend fun retrieveAllKeys(): Map<String, EncryptedKey> = mutex.withLock {
-    ensureInitialized()
+  suspend fun retrieveAllKeys(): Map<String, EncryptedKey> {
+    val searchSession = session()
     try {
       val searchSpec =
         SearchSpec.Builder()
@@ -217,8 +255,8 @@ constructor(private val searchSessionProvider: AppSearchSessionProvider) {
   }
 
   /** Retrieves a map of all key associations to key names. */
-  suspend fun retrieveAllKeyAssociations(): Map<String, String> = mutex.withLock {
-    ensureInitialized()
+  suspend fun retrieveAllKeyAssociations(): Map<String, String> {
+    val searchSession = session()
     try {
       val searchSpec =
         SearchSpec.Builder()
@@ -244,13 +282,15 @@ constructor(private val searchSessionProvider: AppSearchSessionProvider) {
   }
 
   /** Deletes the key for the given [keyName]. */
-  suspend fun deleteKey(keyName: String): Unit = mutex.withLock {
-    ensureInitialized()
+  suspend fun deleteKey(keyName: String): Unit = writeMutex.withLock {
+    val session = session()
     try {
       val request = RemoveByDocumentIdRequest.Builder(KEY_NAMESPACE).addIds(keyName).build()
-      searchSession.removeAsync(request).await()
+      session.removeAsync(request).await()
     } catch (e: Exception) {
       throw logAndWrapException("Failed to delete key.", e)
+    } finally {
+      invalidate { keyCache.remove(keyName) }
     }
   }
 
@@ -258,18 +298,20 @@ constructor(private val searchSessionProvider: AppSearchSessionProvider) {
    * Deletes the association for the given [keyAssociation]. Returns true if it was deleted, false
    * if it didn't exist.
    */
-  suspend fun deleteKeyAssociation(keyAssociation: String): Boolean = mutex.withLock {
-    ensureInitialized()
-    if (retrieveKeyAssociationLocked(keyAssociation) == null) {
+  suspend fun deleteKeyAssociation(keyAssociation: String): Boolean = writeMutex.withLock {
+    if (retrieveKeyAssociation(keyAssociation) == null) {
       return@withLock false
     }
+    val session = session()
     try {
       val request =
         RemoveByDocumentIdRequest.Builder(KEY_ASSOCIATION_NAMESPACE).addIds(keyAssociation).build()
-      searchSession.removeAsync(request).await()
+      session.removeAsync(request).await()
       return@withLock true
     } catch (e: Exception) {
       throw logAndWrapException("Failed to delete key association.", e)
+    } finally {
+      invalidate { keyAssociationCache.remove(keyAssociation) }
     }
   }
 
@@ -284,5 +326,14 @@ constructor(private val searchSessionProvider: AppSearchSessionProvider) {
     private const val KEY_NAMESPACE = "sm_key"
     private const val KEY_ASSOCIATION_NAMESPACE = "sm_key_association"
     private const val RESULTS_PER_PAGE = 100
+
+    /** Maximum number of entries kept by each of the in-memory caches. */
+    @VisibleForTesting const val MAX_CACHED_ENTRIES = 64
+
+    private fun <V> lruCache(): MutableMap<String, V> =
+      object : LinkedHashMap<String, V>(16, 0.75f, /* accessOrder= */ true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, V>): Boolean =
+          size > MAX_CACHED_ENTRIES
+      }
   }
 }
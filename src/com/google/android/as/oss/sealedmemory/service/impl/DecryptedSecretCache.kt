@@ -0,0 +1,198 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.`as`.oss.sealedmemory.service.impl
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import androidx.annotation.GuardedBy
+import androidx.annotation.VisibleForTesting
+import com.google.android.`as`.oss.common.config.ConfigReader
+import com.google.android.`as`.oss.sealedmemory.config.SealedMemoryConfig
+import com.google.common.flogger.GoogleLogger
+import com.google.protobuf.ByteString
+import dagger.hilt.android.qualifiers.ApplicationContext
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Memory-only cache of decrypted secrets, scoped to the uid of the calling app.
+ *
+ * Repeated reads of the same secret by the same caller skip the keystore operation while the entry
+ * is younger than [SealedMemoryConfig.secretCacheTtlMs]. Cached secrets are kept in arrays owned by
+ * the cache, which are zeroed when they expire or are evicted, when the screen turns off, and when
+ * the caller's package is stopped or removed. The cache is disabled while the TTL is 0.
+ */
+@Singleton
+class DecryptedSecretCache
+@Inject
+internal constructor(
+  @ApplicationContext private val context: Context,
+  private val configReader: ConfigReader<SealedMemoryConfig>,
+) {
+  private val lock = Any()
+  private val handler = Handler(Looper.getMainLooper())
+
+  @GuardedBy("lock")
+  private val entries =
+    object : LinkedHashMap<CacheKey, CachedSecret>(16, 0.75f, /* accessOrder= */ true) {
+      override fun removeEldestEntry(
+        eldest: MutableMap.MutableEntry<CacheKey, CachedSecret>
+      ): Boolean {
+        if (size <= MAX_ENTRIES) {
+          return false
+        }
+        eldest.value.zeroize()
+        return true
+      }
+    }
+
+  @GuardedBy("lock") private var receiversRegistered = false
+  @GuardedBy("lock") private var sweepScheduled = false
+
+  private val receiver =
+    object : BroadcastReceiver() {
+      override fun onReceive(context: Context, intent: Intent) {
+        val uid = intent.getIntExtra(Intent.EXTRA_UID, INVALID_UID)
+        if (intent.action == Intent.ACTION_SCREEN_OFF || uid == INVALID_UID) {
+          clear()
+        } else {
+          removeIf { key, _ -> key.callerUid == uid }
+        }
+      }
+    }
+
+  /**
+   * Returns the secret of [encryptedKey] for [callerUid], decrypting it with [decrypt] unless a
+   * fresh copy is cached. Nothing is cached if [callerUid] is unknown.
+   */
+  fun getOrDecrypt(
+    callerUid: Int?,
+    encryptedKey: EncryptedKey,
+    decrypt: (EncryptedKey) -> ByteString,
+  ): ByteString {
+    val ttlMs = configReader.config.secretCacheTtlMs
+    if (ttlMs <= 0 || callerUid == null) {
+      return decrypt(encryptedKey)
+    }
+
+    val key = CacheKey(callerUid, encryptedKey)
+    synchronized(lock) {
+      val cached = entries[key]
+      if (cached != null) {
+        if (!cached.isExpired(ttlMs)) {
+          return ByteString.copyFrom(cached.secret)
+        }
+        entries.remove(key)
+        cached.zeroize()
+      }
+    }
+
+    val secret = decrypt(encryptedKey)
+    synchronized(lock) {
+      if (registerReceiversIfNeeded()) {
+        entries.put(key, CachedSecret(secret.toByteArray(), SystemClock.elapsedRealtime()))
+          ?.zeroize()
+        scheduleSweepIfNeeded(ttlMs)
+      }
+    }
+    return secret
+  }
+
+  /** Zeroes and drops all cached secrets. */
+  fun clear() {
+    removeIf { _, _ -> true }
+  }
+
+  private fun removeIf(predicate: (CacheKey, CachedSecret) -> Boolean) {
+    synchronized(lock) {
+      val iterator = entries.entries.iterator()
+      while (iterator.hasNext()) {
+        val (key, cached) = iterator.next()
+        if (predicate(key, cached)) {
+          cached.zeroize()
+          iterator.remove()
+        }
+      }
+    }
+  }
+
+  /** Drops expired secrets, and schedules itself again while secrets remain cached. */
+  private fun sweep() {
+    val ttlMs = configReader.config.secretCacheTtlMs
+    removeIf { _, cached -> ttlMs <= 0 || cached.isExpired(ttlMs) }
+    synchronized(lock) {
+      sweepScheduled = false
+      val oldest = entries.values.minOfOrNull { it.cachedAtMs } ?: return
+      scheduleSweepIfNeeded(oldest + ttlMs - SystemClock.elapsedRealtime())
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun scheduleSweepIfNeeded(delayMs: Long) {
+    if (!sweepScheduled) {
+      sweepScheduled = true
+      handler.postDelayed(::sweep, maxOf(delayMs, 0L))
+    }
+  }
+
+  @GuardedBy("lock")
+  private fun registerReceiversIfNeeded(): Boolean {
+    if (receiversRegistered) {
+      return true
+    }
+    val packageFilter =
+      IntentFilter().apply {
+        addAction(Intent.ACTION_PACKAGE_RESTARTED)
+        addAction(Intent.ACTION_PACKAGE_REMOVED)
+        addDataScheme("package")
+      }
+    try {
+      context.registerReceiver(receiver, IntentFilter(Intent.ACTION_SCREEN_OFF))
+      context.registerReceiver(receiver, packageFilter)
+      receiversRegistered = true
+    } catch (e: RuntimeException) {
+      // Without these notifications secrets could outlive the interaction, don't cache them.
+      logger.atWarning().withCause(e).log("Failed to register receivers, not caching secrets")
+      runCatching { context.unregisterReceiver(receiver) }
+    }
+    return receiversRegistered
+  }
+
+  private data class CacheKey(val callerUid: Int, val encryptedKey: EncryptedKey)
+
+  private class CachedSecret(val secret: ByteArray, val cachedAtMs: Long) {
+    fun isExpired(ttlMs: Long): Boolean = SystemClock.elapsedRealtime() - cachedAtMs >= ttlMs
+
+    fun zeroize() {
+      secret.fill(0)
+    }
+  }
+
+  companion object {
+    /** Maximum number of secrets cached across all callers. */
+    @VisibleForTesting const val MAX_ENTRIES = 16
+
+    private const val INVALID_UID = -1
+
+    private val logger = GoogleLogger.forEnclosingClass()
+  }
+}
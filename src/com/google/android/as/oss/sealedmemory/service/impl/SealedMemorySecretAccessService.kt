@@ -25,13 +25,16 @@ import com.google.common.flogger.GoogleLogger
 import com.google.protobuf.ByteString
 import io.grpc.Status
 import io.grpc.StatusException
+import io.grpc.binder.PeerUids
 import javax.inject.Inject
 import javax.inject.Provider
 
 class SealedMemorySecretAccessService
 @Inject
-constructor(private val appSearchKeyStore: Provider<AppSearchKeyStore>) :
-  SealedMemorySecretAccessServiceCoroutineImplBase() {
+constructor(
+  private val appSearchKeyStore: Provider<AppSearchKeyStore>,
+  private val decryptedSecretCache: DecryptedSecretCache,
+) : SealedMemorySecretAccessServiceCoroutineImplBase() {
 
   /** Retrieves the secret for the given key. */
   override suspend fun getUserSecret(request: GetUserSecretRequest): GetUserSecretResponse {
@@ -40,7 +43,7 @@ constructor(private val appSearchKeyStore: Provider<AppSearchKeyStore>) :
       val encryptedKey = appSearchKeyStore.get().retrieveKey(keyName)
 
       if (encryptedKey != null) {
-        val secret = decryptSecret(encryptedKey)
+        val secret = decryptSecretCached(encryptedKey)
         return getUserSecretResponse { userSecret = secret }
       } else {
         logger.atFine().log("getUserSecret: Secret not found for provided key")
@@ -63,7 +66,7 @@ constructor(private val appSearchKeyStore: Provider<AppSearchKeyStore>) :
       val encryptedKey = appSearchKeyStore.get().retrieveKeyByAssociation(cujIdentifier)
 
       if (encryptedKey != null) {
-        val secret = decryptSecret(encryptedKey)
+        val secret = decryptSecretCached(encryptedKey)
         return getUserSecretResponse { userSecret = secret }
       } else {
         logger.atFine().log("getUserSecretByAssociation: Secret not found for provided CUJ")
@@ -78,6 +81,13 @@ constructor(private val appSearchKeyStore: Provider<AppSearchKeyStore>) :
     }
   }
 
+  private fun decryptSecretCached(encryptedKey: EncryptedKey): ByteString =
+    decryptedSecretCache.getOrDecrypt(
+      callerUid = PeerUids.REMOTE_PEER.get()?.uid,
+      encryptedKey = encryptedKey,
+      decrypt = ::decryptSecret,
+    )
+
   private fun decryptSecret(encryptedKey: EncryptedKey): ByteString {
     return when (val decryptionResult = KeyGenerationUtil.decrypt(encryptedKey)) {
       is EncryptionResult.Success -> decryptionResult.value
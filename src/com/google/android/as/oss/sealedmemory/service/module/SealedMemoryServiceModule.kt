@@ -37,6 +37,8 @@ import dagger.multibindings.ElementsIntoSet
 import dagger.multibindings.IntoMap
 import dagger.multibindings.StringKey
 import io.grpc.BindableService
+import io.grpc.ServerInterceptors
+import io.grpc.binder.PeerUids
 import io.grpc.binder.SecurityPolicies
 import io.grpc.binder.SecurityPolicy
 import javax.inject.Singleton
@@ -119,7 +121,12 @@ internal object SealedMemoryServiceModule {
     configReader: ConfigReader<SealedMemoryConfig>,
   ): Set<BindableService> {
     return if (configReader.config.isSealedMemoryServiceEnabled) {
-      setOf(impl)
+      // The caller uid scopes the decrypted secret cache.
+      setOf(
+        BindableService {
+          ServerInterceptors.intercept(impl, PeerUids.newPeerIdentifyingServerInterceptor())
+        }
+      )
     } else {
       emptySet()
     }
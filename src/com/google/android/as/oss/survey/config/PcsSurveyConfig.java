@@ -23,16 +23,23 @@ import com.google.auto.value.AutoValue;
 public abstract class PcsSurveyConfig {
 
   public static Builder builder() {
-    return new AutoValue_PcsSurveyConfig.Builder().setEnableSurvey(false);
+    return new AutoValue_PcsSurveyConfig.Builder()
+        .setEnableSurvey(false)
+        .setEnableStartupConfigCache(false);
   }
 
   public abstract boolean enableSurvey();
 
+  /** Whether startup config responses are cached on disk and revalidated. */
+  public abstract boolean enableStartupConfigCache();
+
   /** Builder for {@link PcsSurveyConfig} */
   @AutoValue.Builder
   public abstract static class Builder {
     public abstract Builder setEnableSurvey(boolean value);
 
+    public abstract Builder setEnableStartupConfigCache(boolean value);
+
     public abstract PcsSurveyConfig build();
   }
 }
@@ -28,6 +28,9 @@ class PcsSurveyConfigReader extends AbstractConfigReader<PcsSurveyConfig> {
 
   static final BooleanFlag ENABLE_SURVEY = BooleanFlag.create("PcsSurvey__enable_survey", false);
 
+  static final BooleanFlag ENABLE_STARTUP_CONFIG_CACHE =
+      BooleanFlag.create("PcsSurvey__enable_startup_config_cache", false);
+
   private final FlagManager flagManager;
 
   static PcsSurveyConfigReader create(FlagManager flagManager) {
@@ -48,7 +51,10 @@ class PcsSurveyConfigReader extends AbstractConfigReader<PcsSurveyConfig> {
 
   @Override
   protected PcsSurveyConfig computeConfig() {
-    return PcsSurveyConfig.builder().setEnableSurvey(flagManager.get(ENABLE_SURVEY)).build();
+    return PcsSurveyConfig.builder()
+        .setEnableSurvey(flagManager.get(ENABLE_SURVEY))
+        .setEnableStartupConfigCache(flagManager.get(ENABLE_STARTUP_CONFIG_CACHE))
+        .build();
   }
 
   private PcsSurveyConfigReader(FlagManager flagManager) {
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2025 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.as.oss.survey.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import android.content.Context;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.as.oss.survey.api.proto.HttpProperty;
+import com.google.android.as.oss.survey.api.proto.HttpSurveyResponse;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ExtensionRegistryLite;
+import dagger.hilt.android.qualifiers.ApplicationContext;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import okhttp3.CacheControl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Disk cache of survey startup config responses.
+ *
+ * <p>Startup configs are requested with a POST, which the OkHttp cache doesn't store, so responses
+ * are cached here by url, request headers and body. A response is served from disk until its
+ * Cache-Control max-age has elapsed. After that it is revalidated with If-None-Match or
+ * If-Modified-Since, and a 304 response serves it again. Responses marked no-store, and responses
+ * with neither a max-age nor a validator, are not cached.
+ */
+@Singleton
+class StartupConfigCache {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  private static final String CACHE_DIR = "survey_startup_config";
+  private static final String RESPONSE_FILE_SUFFIX = ".response";
+  private static final String STATE_FILE_SUFFIX = ".state";
+
+  @VisibleForTesting static final int MAX_ENTRIES = 8;
+
+  private final Context context;
+  private final Object lock = new Object();
+
+  @Inject
+  StartupConfigCache(@ApplicationContext Context context) {
+    this.context = context;
+  }
+
+  /** Looks up the cached response of a request. Does disk I/O, must not run on the main thread. */
+  Lookup lookup(String url, List<HttpProperty> httpPropertyList, byte[] requestBody) {
+    Hasher hasher = Hashing.sha256().newHasher().putString(url, UTF_8).putByte((byte) 0);
+    for (HttpProperty property : httpPropertyList) {
+      hasher.putString(property.getKey(), UTF_8).putByte((byte) 0);
+      for (String value : property.getValueList()) {
+        hasher.putString(value, UTF_8).putByte((byte) 0);
+      }
+    }
+    String key = hasher.putBytes(requestBody).hash().toString();
+    synchronized (lock) {
+      return new Lookup(key, read(key));
+    }
+  }
+
+  /** The cache entry of a single request, which may be empty. */
+  final class Lookup {
+    private final String key;
+    @Nullable private final CachedResponse cached;
+
+    private Lookup(String key, @Nullable CachedResponse cached) {
+      this.key = key;
+      this.cached = cached;
+    }
+
+    /** Returns the cached response if it doesn't need to be revalidated. */
+    @Nullable
+    HttpSurveyResponse freshResponse() {
+      return cached != null && cached.expiresAtMillis() > System.currentTimeMillis()
+          ? cached.response()
+          : null;
+    }
+
+    /** Adds the validators of the cached response to a request revalidating it. */
+    void addValidators(Request.Builder request) {
+      if (cached == null) {
+        return;
+      }
+      if (cached.etag() != null) {
+        request.header("If-None-Match", cached.etag());
+      }
+      if (cached.lastModified() != null) {
+        request.header("If-Modified-Since", cached.lastModified());
+      }
+    }
+
+    /**
+     * Returns the cached response if the server answered that it is still valid, and extends its
+     * freshness accordingly.
+     */
+    @Nullable
+    HttpSurveyResponse revalidated(Response response) {
+      if (cached == null || response.code() != 304) {
+        return null;
+      }
+      CachedResponse refreshed =
+          new CachedResponse(
+              cached.response(),
+              expiresAtMillis(response.cacheControl()),
+              firstNonNull(response.header("ETag"), cached.etag()),
+              firstNonNull(response.header("Last-Modified"), cached.lastModified()));
+      synchronized (lock) {
+        write(key, refreshed, /* writeResponse= */ false);
+      }
+      return cached.response();
+    }
+
+    /** Stores a successful response, unless it can't be cached. */
+    void store(Response response, HttpSurveyResponse httpSurveyResponse) {
+      CacheControl cacheControl = response.cacheControl();
+      String etag = response.header("ETag");
+      String lastModified = response.header("Last-Modified");
+      synchronized (lock) {
+        if (cacheControl.noStore()
+            || (cacheControl.maxAgeSeconds() <= 0 && etag == null && lastModified == null)) {
+          delete(key);
+          return;
+        }
+        write(
+            key,
+            new CachedResponse(
+                httpSurveyResponse, expiresAtMillis(cacheControl), etag, lastModified),
+            /* writeResponse= */ true);
+        evictOldEntries();
+      }
+    }
+  }
+
+  private static long expiresAtMillis(CacheControl cacheControl) {
+    if (cacheControl.noCache() || cacheControl.maxAgeSeconds() <= 0) {
+      return 0;
+    }
+    return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(cacheControl.maxAgeSeconds());
+  }
+
+  @Nullable
+  private static String firstNonNull(@Nullable String first, @Nullable String second) {
+    return first != null ? first : second;
+  }
+
+  private File dir() {
+    return new File(context.getCacheDir(), CACHE_DIR);
+  }
+
+  @Nullable
+  private CachedResponse read(String key) {
+    File stateFile = new File(dir(), key + STATE_FILE_SUFFIX);
+    File responseFile = new File(dir(), key + RESPONSE_FILE_SUFFIX);
+    if (!stateFile.exists() || !responseFile.exists()) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (InputStream stateStream = new FileInputStream(stateFile);
+        InputStream responseStream = new FileInputStream(responseFile)) {
+      properties.load(stateStream);
+      return new CachedResponse(
+          HttpSurveyResponse.parseFrom(
+              responseStream, ExtensionRegistryLite.getGeneratedRegistry()),
+          Long.parseLong(properties.getProperty(CachedResponse.KEY_EXPIRES_AT_MILLIS)),
+          properties.getProperty(CachedResponse.KEY_ETAG),
+          properties.getProperty(CachedResponse.KEY_LAST_MODIFIED));
+    } catch (IOException | RuntimeException e) {
+      logger.atWarning().withCause(e).log("Discarding unreadable startup config cache entry");
+      delete(key);
+      return null;
+    }
+  }
+
+  private void write(String key, CachedResponse cached, boolean writeResponse) {
+    File dir = dir();
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      logger.atWarning().log("Unable to create %s", dir);
+      return;
+    }
+    Properties properties = new Properties();
+    properties.setProperty(
+        CachedResponse.KEY_EXPIRES_AT_MILLIS, Long.toString(cached.expiresAtMillis()));
+    if (cached.etag() != null) {
+      properties.setProperty(CachedResponse.KEY_ETAG, cached.etag());
+    }
+    if (cached.lastModified() != null) {
+      properties.setProperty(CachedResponse.KEY_LAST_MODIFIED, cached.lastModified());
+    }
+    try {
+      if (writeResponse) {
+        try (OutputStream os = new FileOutputStream(new File(dir, key + RESPONSE_FILE_SUFFIX))) {
+          cached.response().writeTo(os);
+        }
+      }
+      try (OutputStream os = new FileOutputStream(new File(dir, key + STATE_FILE_SUFFIX))) {
+        properties.store(os, /* comments= */ null);
+      }
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Failed to write startup config cache entry");
+      delete(key);
+    }
+  }
+
+  private void delete(String key) {
+    new File(dir(), key + STATE_FILE_SUFFIX).delete();
+    new File(dir(), key + RESPONSE_FILE_SUFFIX).delete();
+  }
+
+  /** Deletes the least recently written entries above {@link #MAX_ENTRIES}. */
+  private void evictOldEntries() {
+    File[] stateFiles = dir().listFiles((unused, name) -> name.endsWith(STATE_FILE_SUFFIX));
+    if (stateFiles == null || stateFiles.length <= MAX_ENTRIES) {
+      return;
+    }
+    Arrays.sort(stateFiles, Comparator.comparingLong(File::lastModified));
+    for (int i = 0; i < stateFiles.length - MAX_ENTRIES; i++) {
+      String name = stateFiles[i].getName();
+      delete(name.substring(0, name.length() - STATE_FILE_SUFFIX.length()));
+    }
+  }
+
+  /** A cached response along with the state needed to revalidate it. */
+  private record CachedResponse(
+      HttpSurveyResponse response,
+      long expiresAtMillis,
+      @Nullable String etag,
+      @Nullable String lastModified) {
+    private static final String KEY_EXPIRES_AT_MILLIS = "expiresAtMillis";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+  }
+}
@@ -72,19 +72,21 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
-import com.google.protobuf.ByteString;
 import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.Status.Code;
 import io.grpc.stub.StreamObserver;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import javax.inject.Inject;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -110,6 +112,7 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
   private final PcsStatsLog pcsStatsLogger;
   private final ConfigReader<PcsSurveyConfig> surveyConfig;
   private final BuildFlavor buildFlavor;
+  private final StartupConfigCache startupConfigCache;
   private final Map<SurveyTriggerId, Session> surveySessionMap;
 
   @Inject
@@ -119,14 +122,17 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
       @IoExecutorQualifier Executor ioExecutor,
       PcsStatsLog pcsStatsLogger,
       ConfigReader<PcsSurveyConfig> surveyConfig,
-      BuildFlavor buildFlavor) {
+      BuildFlavor buildFlavor,
+      StartupConfigCache startupConfigCache) {
     this.client = client;
     this.networkUsageLogRepository = networkUsageLogRepository;
     this.pcsStatsLogger = pcsStatsLogger;
     this.surveyConfig = surveyConfig;
     this.buildFlavor = buildFlavor;
     this.ioExecutor = ioExecutor;
-    this.surveySessionMap = new HashMap<>();
+    this.startupConfigCache = startupConfigCache;
+    // Sessions are updated from OkHttp callback threads.
+    this.surveySessionMap = new ConcurrentHashMap<>();
   }
 
   /**
@@ -148,7 +154,8 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
             networkUsageLogRepository,
             pcsStatsLogger,
             buildFlavor,
-            client);
+            client,
+            /* cacheLookup= */ null);
 
     Futures.addCallback(
         requestSurveyFuture,
@@ -178,16 +185,38 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
   public void startupConfig(
       HttpSurveyStartupConfigRequest request, StreamObserver<HttpSurveyResponse> responseObserver) {
 
-    ListenableFuture<HttpSurveyResponse> startupConfigFuture =
-        handleSurveyRequestInternal(
-            request.getUrl(),
-            request.getRequestPropertyList(),
-            generateSurveyStartupConfigRequest(request),
-            surveyConfig,
-            networkUsageLogRepository,
-            pcsStatsLogger,
-            buildFlavor,
-            client);
+    byte[] requestBody = generateSurveyStartupConfigRequest(request);
+    ListenableFuture<HttpSurveyResponse> startupConfigFuture;
+    if (surveyConfig.getConfig().enableStartupConfigCache()) {
+      // The cache lookup reads from disk.
+      startupConfigFuture =
+          Futures.submitAsync(
+              () ->
+                  handleSurveyRequestInternal(
+                      request.getUrl(),
+                      request.getRequestPropertyList(),
+                      requestBody,
+                      surveyConfig,
+                      networkUsageLogRepository,
+                      pcsStatsLogger,
+                      buildFlavor,
+                      client,
+                      startupConfigCache.lookup(
+                          request.getUrl(), request.getRequestPropertyList(), requestBody)),
+              ioExecutor);
+    } else {
+      startupConfigFuture =
+          handleSurveyRequestInternal(
+              request.getUrl(),
+              request.getRequestPropertyList(),
+              requestBody,
+              surveyConfig,
+              networkUsageLogRepository,
+              pcsStatsLogger,
+              buildFlavor,
+              client,
+              /* cacheLookup= */ null);
+    }
 
     Futures.addCallback(
         startupConfigFuture,
@@ -227,19 +256,17 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
         requestList.getRequestsList().stream()
             .map(
                 request ->
-                    Futures.submitAsync(
-                        () ->
-                            handleSurveyRequestInternal(
-                                request.getUrl(),
-                                request.getRequestPropertyList(),
-                                generateSurveyRecordEventRequest(
-                                    request, surveySessionMap.get(surveyTriggerId)),
-                                surveyConfig,
-                                networkUsageLogRepository,
-                                pcsStatsLogger,
-                                buildFlavor,
-                                client),
-                        ioExecutor))
+                    handleSurveyRequestInternal(
+                        request.getUrl(),
+                        request.getRequestPropertyList(),
+                        generateSurveyRecordEventRequest(
+                            request, surveySessionMap.get(surveyTriggerId)),
+                        surveyConfig,
+                        networkUsageLogRepository,
+                        pcsStatsLogger,
+                        buildFlavor,
+                        client,
+                        /* cacheLookup= */ null))
             .collect(toImmutableList());
 
     ListenableFuture<List<HttpSurveyResponse>> futureList = Futures.allAsList(requestFutures);
@@ -268,6 +295,12 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
     return surveySessionMap.get(surveyTriggerId);
   }
 
+  /**
+   * Sends the request without blocking the calling thread. The returned future completes from the
+   * OkHttp callback.
+   *
+   * @param cacheLookup the cache entry of the request if its response should be cached, or null
+   */
   private static ListenableFuture<HttpSurveyResponse> handleSurveyRequestInternal(
       String url,
       List<HttpProperty> httpPropertyList,
@@ -276,7 +309,8 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
       NetworkUsageLogRepository networkUsageLogRepository,
       PcsStatsLog pcsStatsLogger,
       BuildFlavor buildFlavor,
-      OkHttpClient client) {
+      OkHttpClient client,
+      @Nullable StartupConfigCache.Lookup cacheLookup) {
 
     SettableFuture<HttpSurveyResponse> settableFuture = SettableFuture.create();
 
@@ -289,39 +323,71 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
       return settableFuture;
     }
 
-    Request okRequest = buildOkHttpRequest(url, httpPropertyList, requestBody);
-    Response response;
-    try {
-      response = client.newCall(okRequest).execute();
-
-      if (response.isSuccessful()) {
-
-        ResponseBody responseBody = response.body();
-        if (responseBody == null) {
-          insertNetworkUsageLogRow(networkUsageLogRepository, url, Status.FAILED, 0L);
-          settableFuture.setException(new Exception("Survey response is null"));
-        } else {
-          byte[] responseBytes = responseBody.bytes();
-          insertNetworkUsageLogRow(
-              networkUsageLogRepository, url, Status.SUCCEEDED, responseBytes.length);
-          settableFuture.set(
-              HttpSurveyResponse.newBuilder()
-                  .setResponseHeaders(buildResponseHeaders(response))
-                  .setResponseBodyChunk(
-                      ResponseBodyChunk.newBuilder()
-                          .setResponseBytes(ByteString.copyFrom(responseBytes))
-                          .build())
-                  .build());
-        }
-      } else {
-        insertNetworkUsageLogRow(networkUsageLogRepository, url, Status.FAILED, 0L);
-        settableFuture.setException(new Exception("Survey request failed"));
+    if (cacheLookup != null) {
+      HttpSurveyResponse freshResponse = cacheLookup.freshResponse();
+      if (freshResponse != null) {
+        logger.atFine().log("Serving survey response for %s from cache", url);
+        settableFuture.set(freshResponse);
+        return settableFuture;
       }
-
-    } catch (IOException e) {
-      insertNetworkUsageLogRow(networkUsageLogRepository, url, Status.FAILED, 0L);
-      settableFuture.setException(e);
     }
+
+    Request okRequest = buildOkHttpRequest(url, httpPropertyList, requestBody, cacheLookup);
+    client
+        .newCall(okRequest)
+        .enqueue(
+            new Callback() {
+              @Override
+              public void onFailure(Call call, IOException e) {
+                insertNetworkUsageLogRow(networkUsageLogRepository, url, Status.FAILED, 0L);
+                settableFuture.setException(e);
+              }
+
+              @Override
+              public void onResponse(Call call, Response response) {
+                try (response) {
+                  HttpSurveyResponse revalidatedResponse =
+                      cacheLookup != null ? cacheLookup.revalidated(response) : null;
+                  if (revalidatedResponse != null) {
+                    insertNetworkUsageLogRow(networkUsageLogRepository, url, Status.SUCCEEDED, 0L);
+                    settableFuture.set(revalidatedResponse);
+                    return;
+                  }
+                  if (!response.isSuccessful()) {
+                    insertNetworkUsageLogRow(networkUsageLogRepository, url, Status.FAILED, 0L);
+                    settableFuture.setException(new Exception("Survey request failed"));
+                    return;
+                  }
+
+                  ResponseBody responseBody = response.body();
+                  if (responseBody == null) {
+                    insertNetworkUsageLogRow(networkUsageLogRepository, url, Status.FAILED, 0L);
+                    settableFuture.setException(new Exception("Survey response is null"));
+                    return;
+                  }
+                  byte[] responseBytes = responseBody.bytes();
+                  HttpSurveyResponse httpSurveyResponse =
+                      HttpSurveyResponse.newBuilder()
+                          .setResponseHeaders(buildResponseHeaders(response))
+                          .setResponseBodyChunk(
+                              ResponseBodyChunk.newBuilder()
+                                  // The array is never modified after this point.
+                                  .setResponseBytes(UnsafeByteOperations.unsafeWrap(responseBytes))
+                                  .build())
+                          .build();
+                  if (cacheLookup != null) {
+                    cacheLookup.store(response, httpSurveyResponse);
+                  }
+                  insertNetworkUsageLogRow(
+                      networkUsageLogRepository, url, Status.SUCCEEDED, responseBytes.length);
+                  settableFuture.set(httpSurveyResponse);
+                } catch (IOException | RuntimeException e) {
+                  // Runtime failures must complete the future too, OkHttp only logs them.
+                  insertNetworkUsageLogRow(networkUsageLogRepository, url, Status.FAILED, 0L);
+                  settableFuture.setException(e);
+                }
+              }
+            });
     return settableFuture;
   }
 
@@ -399,7 +465,10 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
   }
 
   private static Request buildOkHttpRequest(
-      String url, List<HttpProperty> httpPropertyList, byte[] requestBody) {
+      String url,
+      List<HttpProperty> httpPropertyList,
+      byte[] requestBody,
+      @Nullable StartupConfigCache.Lookup cacheLookup) {
     Request.Builder okRequest =
         new Request.Builder()
             .url(url)
@@ -410,6 +479,9 @@ public class SurveyGrpcBindableService extends SurveyServiceGrpc.SurveyServiceIm
         okRequest.addHeader(property.getKey(), value);
       }
     }
+    if (cacheLookup != null) {
+      cacheLookup.addValidators(okRequest);
+    }
     return okRequest.build();
   }
 